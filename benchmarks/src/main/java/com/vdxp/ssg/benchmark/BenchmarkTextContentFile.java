@@ -0,0 +1,17 @@
+package com.vdxp.ssg.benchmark;
+
+import com.vdxp.ssg.content.TextContentFile;
+
+/** A text file that lives only in memory. */
+public class BenchmarkTextContentFile extends TextContentFile {
+
+	public BenchmarkTextContentFile(final String text, final String basename, final String... extensions) {
+		super(basename, extensions);
+		setText(text);
+	}
+
+	@Override
+	public String getSource() {
+		return "Benchmark file " + getName();
+	}
+}
@@ -0,0 +1,62 @@
+package com.vdxp.ssg.benchmark;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.processor.BlogPagesGeneratorProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Time to sort and paginate a whole blog. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlogPagesBenchmark {
+
+	@Param({"100", "1000", "10000"})
+	public int posts;
+
+	private String[] texts;
+	private ContentDirectory blog;
+
+	@Setup(Level.Trial)
+	public void generatePosts() {
+		texts = new String[posts];
+		for (int i = 0; i < posts; i++) {
+			texts[i] = Documents.html(1, i);
+		}
+	}
+
+	/** The processor adds the pages to the blog directory, so every invocation needs a fresh one. */
+	@Setup(Level.Invocation)
+	public void makeBlog() {
+		blog = new ContentDirectory("blog");
+		for (int i = 0; i < posts; i++) {
+			final ContentNode post = new BenchmarkTextContentFile(texts[i], "post" + i, "html");
+			post.putData("title", "Post " + i);
+			/* Posts are dated out of order, so sorting has something to do */
+			post.putData("date_raw", (long) ((i * 7919L) % posts));
+			blog.addChild(post);
+		}
+	}
+
+	@Benchmark
+	public ContentDirectory process() {
+		new BlogPagesGeneratorProcessor().process(blog);
+		return blog;
+	}
+}
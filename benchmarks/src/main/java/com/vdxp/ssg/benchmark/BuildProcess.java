@@ -0,0 +1,55 @@
+package com.vdxp.ssg.benchmark;
+
+import com.vdxp.ssg.Driver;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Runs one build in the current directory and prints what it cost on a line of its own, for
+ * {@link ScalingBenchmark} to read. The arguments are passed on to the Driver.
+ */
+public class BuildProcess {
+
+	static final String resultPrefix = "scaling-result ";
+
+	public static void main(final String[] args) throws IOException {
+		final HeapTracker heapTracker = new HeapTracker();
+		heapTracker.start();
+		final long startTime = System.nanoTime();
+		Driver.main(args);
+		final long millis = (System.nanoTime() - startTime) / 1000000;
+
+		long gcMillis = 0;
+		long gcCount = 0;
+		for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcMillis += Math.max(0, collector.getCollectionTime());
+			gcCount += Math.max(0, collector.getCollectionCount());
+		}
+
+		System.out.println(resultPrefix + "pages=" + countPages(Paths.get("target")) + " millis=" + millis
+				+ " peakHeap=" + heapTracker.getPeakUsed() + " liveHeap=" + heapTracker.getPeakUsedAfterGc() + " gcMillis=" + gcMillis + " gcCount=" + gcCount);
+	}
+
+	/** Counts the HTML files written, which is every post, every page and every page of the blog index. */
+	private static long countPages(final Path target) throws IOException {
+		final long[] pages = {0};
+		Files.walkFileTree(target, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+				if (file.getFileName().toString().endsWith(".html")) {
+					pages[0]++;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return pages[0];
+	}
+}
@@ -0,0 +1,89 @@
+package com.vdxp.ssg.benchmark;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups in a content tree of {@code files} files, spread over directories of {@code filesPerDirectory} files each
+ * under {@code root/section}. Lookups go to the last file of the last directory, which is the worst case for
+ * anything that scans children in order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentTreeBenchmark {
+
+	@Param({"100", "10000", "100000"})
+	public int files;
+
+	@Param({"10", "1000"})
+	public int filesPerDirectory;
+
+	private ContentDirectory root;
+	private ContentNode firstFile;
+	private ContentNode lastFile;
+	private String lastFilePath;
+
+	@Setup
+	public void makeTree() {
+		root = new ContentDirectory("root");
+		final ContentDirectory section = new ContentDirectory("section");
+		root.addChild(section);
+
+		final int directories = Math.max(1, files / filesPerDirectory);
+		for (int d = 0; d < directories; d++) {
+			final ContentDirectory directory = new ContentDirectory("directory" + d);
+			section.addChild(directory);
+			for (int f = 0; f < filesPerDirectory; f++) {
+				final ContentNode file = new BenchmarkTextContentFile("", "file" + f, "html");
+				file.putData("title", "File " + f);
+				file.putData("layout", "page.hbs");
+				file.putData("date_raw", (long) f);
+				directory.addChild(file);
+				if (firstFile == null) {
+					firstFile = file;
+				}
+				lastFile = file;
+			}
+		}
+		lastFilePath = "section/directory" + (directories - 1) + "/file" + (filesPerDirectory - 1) + ".html";
+	}
+
+	@Benchmark
+	public ContentNode getPath() {
+		return root.getPath(lastFilePath, false);
+	}
+
+	@Benchmark
+	public String getRelativePath() {
+		return firstFile.getRelativePath(lastFile);
+	}
+
+	@Benchmark
+	public Object getData() {
+		final Map<String, Object> data = lastFile.getData();
+		return data.get("title");
+	}
+
+	@Benchmark
+	public Long getTypedData() {
+		return lastFile.getData("date_raw", Long.class);
+	}
+}
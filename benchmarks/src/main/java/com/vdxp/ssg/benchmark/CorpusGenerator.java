@@ -0,0 +1,188 @@
+package com.vdxp.ssg.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes a synthetic {@code layout}, {@code site} and {@code blog} tree that the Driver can build. Everything is
+ * generated from a fixed seed, so a corpus of a given shape is the same every time it is generated.
+ *
+ * <ul>
+ *   <li>{@code blog} holds the posts, each with front matter, a date and a read-more marker.</li>
+ *   <li>{@code site} holds one page per ten posts, spread over directories nested {@code directoryDepth} deep with
+ *   ten entries at each level, and the binary assets in the same kind of tree under {@code site/assets}.</li>
+ *   <li>{@code layout} holds the blog, blog page and page layouts, each nested in a chain of wrapper layouts so that
+ *   every page passes through {@code layoutDepth} layouts.</li>
+ * </ul>
+ */
+public class CorpusGenerator {
+
+	private static final int fanOut = 10;
+	private static final String[] assetExtensions = {"png", "jpg", "pdf"};
+
+	private final Options options;
+
+	public CorpusGenerator() {
+		this(new Options());
+	}
+
+	public CorpusGenerator(final Options options) {
+		this.options = options;
+	}
+
+	public static void main(final String[] args) throws IOException {
+		final Options defaults = new Options();
+		File root = new File(".");
+		int posts = defaults.posts;
+		int directoryDepth = defaults.directoryDepth;
+		int markdownSections = defaults.markdownSections;
+		int frontMatterKeys = defaults.frontMatterKeys;
+		int assetsPerHundredPosts = defaults.assetsPerHundredPosts;
+		int layoutDepth = defaults.layoutDepth;
+		for (int i = 0; i < args.length; i++) {
+			if ("--posts".equals(args[i]) && i + 1 < args.length) {
+				posts = Integer.parseInt(args[++i]);
+			} else if ("--directory-depth".equals(args[i]) && i + 1 < args.length) {
+				directoryDepth = Integer.parseInt(args[++i]);
+			} else if ("--markdown-sections".equals(args[i]) && i + 1 < args.length) {
+				markdownSections = Integer.parseInt(args[++i]);
+			} else if ("--front-matter-keys".equals(args[i]) && i + 1 < args.length) {
+				frontMatterKeys = Integer.parseInt(args[++i]);
+			} else if ("--assets-per-hundred-posts".equals(args[i]) && i + 1 < args.length) {
+				assetsPerHundredPosts = Integer.parseInt(args[++i]);
+			} else if ("--layout-depth".equals(args[i]) && i + 1 < args.length) {
+				layoutDepth = Integer.parseInt(args[++i]);
+			} else if (!args[i].startsWith("--")) {
+				root = new File(args[i]);
+			} else {
+				throw new IllegalArgumentException("Unrecognized argument " + args[i]);
+			}
+		}
+
+		new CorpusGenerator(new Options(posts, directoryDepth, markdownSections, frontMatterKeys, assetsPerHundredPosts, layoutDepth)).generate(root);
+	}
+
+	/** Writes the corpus into {@code root}, which must not contain a corpus already. */
+	public void generate(final File root) throws IOException {
+		writeLayouts(new File(root, "layout"));
+		writePosts(new File(root, "blog"));
+		writePages(new File(root, "site"));
+		writeAssets(new File(root, "site/assets"));
+	}
+
+	private void writeLayouts(final File directory) throws IOException {
+		final String firstWrapper = options.layoutDepth > 1 ? "wrapper1.hbs" : null;
+		write(new File(directory, "blog.hbs"), withLayout(firstWrapper,
+				"<article><h1>{{title}}</h1><p>{{date_formatted}}</p>{{#each tags}}<span>{{this}}</span>{{/each}}{{{content}}}</article>\n"));
+		write(new File(directory, "blogPage.hbs"), withLayout(firstWrapper,
+				"{{#each blogPage.posts}}<section><a href=\"{{link}}\">{{title}}</a>{{{snippet}}}</section>{{/each}}\n"
+				+ "{{#if blogPage.previous}}<a href=\"{{blogPage.previous}}\">prev</a>{{/if}}{{#if blogPage.next}}<a href=\"{{blogPage.next}}\">next</a>{{/if}}\n"));
+		write(new File(directory, "page.hbs"), withLayout(firstWrapper,
+				"<div class=\"page\" data-root=\"{{rootPath}}\"><h1>{{title}}</h1>{{{content}}}</div>\n"));
+		for (int level = 1; level < options.layoutDepth; level++) {
+			final String nextWrapper = level + 1 < options.layoutDepth ? "wrapper" + (level + 1) + ".hbs" : null;
+			final String html = level + 1 < options.layoutDepth
+					? "<div class=\"wrapper" + level + "\">{{{content}}}</div>\n"
+					: "<html><head><title>{{title}}</title><link rel=\"stylesheet\" href=\"{{rootPath}}style.css\"></head><body>{{{content}}}</body></html>\n";
+			write(new File(directory, "wrapper" + level + ".hbs"), withLayout(nextWrapper, html));
+		}
+	}
+
+	private void writePosts(final File directory) throws IOException {
+		final int introSections = Math.max(1, options.markdownSections / 4);
+		for (int i = 0; i < options.posts; i++) {
+			final String body = Documents.markdown(introSections, i) + "\n<!--more-->\n\n"
+					+ Documents.markdown(Math.max(0, options.markdownSections - introSections), i + 1);
+			write(new File(directory, "post" + i + ".md"), Documents.withFrontMatter(options.frontMatterKeys, i, body));
+		}
+	}
+
+	private void writePages(final File directory) throws IOException {
+		final int pages = Math.max(1, options.posts / 10);
+		for (int i = 0; i < pages; i++) {
+			final String text = Documents.withFrontMatter(options.frontMatterKeys, i, "page.hbs", Documents.markdown(options.markdownSections, i));
+			write(new File(makeNestedDirectory(directory, i), "page" + i + ".md"), text);
+		}
+	}
+
+	private void writeAssets(final File directory) throws IOException {
+		final Random random = new Random(options.posts);
+		final int assets = options.posts * options.assetsPerHundredPosts / 100;
+		for (int i = 0; i < assets; i++) {
+			final byte[] contents = new byte[1024 + random.nextInt(63 * 1024)];
+			random.nextBytes(contents);
+			final File file = new File(makeNestedDirectory(directory, i), "asset" + i + "." + assetExtensions[i % assetExtensions.length]);
+			file.getParentFile().mkdirs();
+			Files.write(file.toPath(), contents);
+		}
+	}
+
+	/** Spreads files over {@code directoryDepth} levels of directories with ten entries each. */
+	private File makeNestedDirectory(final File root, final int index) {
+		final List<String> names = new ArrayList<String>();
+		int remaining = index;
+		for (int level = 0; level < options.directoryDepth; level++) {
+			names.add("d" + remaining % fanOut);
+			remaining /= fanOut;
+		}
+
+		File directory = root;
+		for (final String name : names) {
+			directory = new File(directory, name);
+		}
+		return directory;
+	}
+
+	private static String withLayout(final String layout, final String text) {
+		return layout == null ? text : "---\nlayout: " + layout + "\n---\n" + text;
+	}
+
+	private static void write(final File file, final String text) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static class Options {
+		public final int posts;
+		/** How deep site pages and assets are nested in directories */
+		public final int directoryDepth;
+		/** Sections of Markdown in each page and post; see {@link Documents#markdown} */
+		public final int markdownSections;
+		public final int frontMatterKeys;
+		public final int assetsPerHundredPosts;
+		/** How many layouts every page passes through */
+		public final int layoutDepth;
+
+		private static final int defaultPosts = 1000;
+		private static final int defaultDirectoryDepth = 2;
+		private static final int defaultMarkdownSections = 4;
+		private static final int defaultFrontMatterKeys = 6;
+		private static final int defaultAssetsPerHundredPosts = 10;
+		private static final int defaultLayoutDepth = 2;
+
+		public Options() {
+			this(defaultPosts);
+		}
+
+		public Options(final int posts) {
+			this(posts, defaultDirectoryDepth, defaultMarkdownSections, defaultFrontMatterKeys, defaultAssetsPerHundredPosts, defaultLayoutDepth);
+		}
+
+		public Options(final int posts, final int directoryDepth, final int markdownSections, final int frontMatterKeys, final int assetsPerHundredPosts, final int layoutDepth) {
+			if (layoutDepth < 1) {
+				throw new IllegalArgumentException("Every page needs at least one layout");
+			}
+			this.posts = posts;
+			this.directoryDepth = directoryDepth;
+			this.markdownSections = markdownSections;
+			this.frontMatterKeys = frontMatterKeys;
+			this.assetsPerHundredPosts = assetsPerHundredPosts;
+			this.layoutDepth = layoutDepth;
+		}
+	}
+}
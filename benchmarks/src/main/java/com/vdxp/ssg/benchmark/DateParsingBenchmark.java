@@ -0,0 +1,66 @@
+package com.vdxp.ssg.benchmark;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.processor.DateParsingProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per document to parse a date. The processor only adds derived keys, so the same tree is parsed over and over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateParsingBenchmark {
+
+	private static final int documents = 100;
+
+	/** "iso" is what the sample blog uses, "written" is a date in words and "relative" is natural language */
+	@Param({"iso", "written", "relative"})
+	public String format;
+
+	private ContentDirectory directory;
+
+	@Setup
+	public void makeDirectory() {
+		directory = new ContentDirectory("blog");
+		for (int i = 0; i < documents; i++) {
+			final ContentNode post = new BenchmarkTextContentFile("", "post" + i, "md");
+			post.putData("date", makeDate(i));
+			directory.addChild(post);
+		}
+	}
+
+	private String makeDate(final int seed) {
+		if ("written".equals(format)) {
+			return String.format("March %d, 2014 at %d:%02d pm", 1 + seed % 28, 1 + seed % 11, seed % 60);
+		}
+		if ("relative".equals(format)) {
+			return (1 + seed % 30) + " days ago";
+		}
+		return Documents.date(seed);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(documents)
+	public ContentDirectory process() {
+		new DateParsingProcessor("date").process(directory);
+		return directory;
+	}
+}
@@ -0,0 +1,112 @@
+package com.vdxp.ssg.benchmark;
+
+import java.util.Random;
+
+/**
+ * Representative source documents. Everything is generated from a fixed seed, so every run and every fork measures
+ * the same input.
+ */
+public final class Documents {
+
+	/** Needed by every benchmark that runs pegdown on Java 9 and later */
+	public static final String addOpens = "--add-opens=java.base/java.lang=ALL-UNNAMED";
+
+	private static final String[] words = {
+		"static", "site", "generator", "layout", "markdown", "page", "content", "blog", "post", "tree",
+		"directory", "template", "render", "build", "output", "source", "front", "matter", "date", "link"
+	};
+
+	private Documents() {
+	}
+
+	/** Front matter with {@code keys} entries, among them a title, a date and a list of tags, followed by {@code body}. */
+	public static String withFrontMatter(final int keys, final int seed, final String body) {
+		return withFrontMatter(keys, seed, null, body);
+	}
+
+	/** Like {@link #withFrontMatter(int, int, String)}, with a layout key as well unless {@code layout} is null. */
+	public static String withFrontMatter(final int keys, final int seed, final String layout, final String body) {
+		final Random random = new Random(seed);
+		final StringBuilder builder = new StringBuilder();
+		builder.append("---\n");
+		if (layout != null) {
+			builder.append("layout: ").append(layout).append('\n');
+		}
+		builder.append("title: ").append(sentence(random, 6)).append('\n');
+		builder.append("date: ").append(date(seed)).append('\n');
+		builder.append("tags:\n");
+		for (int i = 0; i < 3; i++) {
+			builder.append("  - ").append(word(random)).append('\n');
+		}
+		for (int i = 3; i < keys; i++) {
+			builder.append("key").append(i).append(": ").append(sentence(random, 4)).append('\n');
+		}
+		builder.append("---\n");
+		builder.append(body);
+		return builder.toString();
+	}
+
+	/**
+	 * Markdown with {@code sections} sections, each with a heading, paragraphs with emphasis and links, a list, a
+	 * fenced code block and a table.
+	 */
+	public static String markdown(final int sections, final int seed) {
+		final Random random = new Random(seed);
+		final StringBuilder builder = new StringBuilder();
+		for (int section = 0; section < sections; section++) {
+			builder.append("## ").append(sentence(random, 4)).append("\n\n");
+			for (int paragraph = 0; paragraph < 3; paragraph++) {
+				builder.append(sentence(random, 20)).append(" *").append(word(random)).append("* and **")
+						.append(word(random)).append("** with [a link](http://example.com/").append(word(random))
+						.append(".html) and http://example.com/").append(word(random)).append(".\n\n");
+			}
+			for (int item = 0; item < 4; item++) {
+				builder.append("- ").append(sentence(random, 6)).append('\n');
+			}
+			builder.append("\n```\n");
+			for (int line = 0; line < 5; line++) {
+				builder.append("final String ").append(word(random)).append(" = \"").append(word(random)).append("\";\n");
+			}
+			builder.append("```\n\n");
+			builder.append("| Name | Value |\n| ---- | ----- |\n");
+			for (int row = 0; row < 3; row++) {
+				builder.append("| ").append(word(random)).append(" | ").append(random.nextInt(1000)).append(" |\n");
+			}
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+
+	/** HTML of roughly the size that {@link #markdown} converts to. */
+	public static String html(final int sections, final int seed) {
+		final Random random = new Random(seed);
+		final StringBuilder builder = new StringBuilder();
+		for (int section = 0; section < sections; section++) {
+			builder.append("<h2>").append(sentence(random, 4)).append("</h2>\n");
+			for (int paragraph = 0; paragraph < 3; paragraph++) {
+				builder.append("<p>").append(sentence(random, 30)).append("</p>\n");
+			}
+		}
+		return builder.toString();
+	}
+
+	/** A date in the format the sample blog uses, a different day for every seed. */
+	public static String date(final int seed) {
+		return String.format("2014-%02d-%02d %02d:%02d", 1 + seed % 12, 1 + seed % 28, seed % 24, seed % 60);
+	}
+
+	private static String sentence(final Random random, final int length) {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				builder.append(' ');
+			}
+			builder.append(word(random));
+		}
+		return builder.toString();
+	}
+
+	private static String word(final Random random) {
+		return words[random.nextInt(words.length)];
+	}
+}
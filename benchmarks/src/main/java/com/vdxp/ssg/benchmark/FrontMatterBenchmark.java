@@ -0,0 +1,64 @@
+package com.vdxp.ssg.benchmark;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.processor.YamlFrontMatterProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Time per document to parse and strip YAML front matter. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontMatterBenchmark {
+
+	private static final int documents = 100;
+
+	@Param({"4", "32"})
+	public int frontMatterKeys;
+
+	@Param({"1", "10"})
+	public int bodySections;
+
+	private String[] texts;
+	private ContentDirectory directory;
+
+	@Setup(Level.Trial)
+	public void generateDocuments() {
+		texts = new String[documents];
+		for (int i = 0; i < documents; i++) {
+			texts[i] = Documents.withFrontMatter(frontMatterKeys, i, Documents.markdown(bodySections, i));
+		}
+	}
+
+	/** The processor strips the front matter it parses, so every invocation needs fresh files. */
+	@Setup(Level.Invocation)
+	public void makeDirectory() {
+		directory = new ContentDirectory("blog");
+		for (int i = 0; i < documents; i++) {
+			directory.addChild(new BenchmarkTextContentFile(texts[i], "post" + i, "md"));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(documents)
+	public ContentDirectory process() {
+		new YamlFrontMatterProcessor().process(directory);
+		return directory;
+	}
+}
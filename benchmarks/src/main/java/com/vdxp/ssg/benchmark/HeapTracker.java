@@ -0,0 +1,84 @@
+package com.vdxp.ssg.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Follows the total heap in use through garbage collection notifications. The heap is fullest just before a
+ * collection, so the largest total before any collection (or at the end) is the peak. The largest total after a
+ * collection is the most the heap held that the collector could not free, which is close to the live data at its
+ * largest.
+ *
+ * Adding up each pool's own peak, as {@link MemoryPoolMXBean#getPeakUsage} reports it, overstates both: the pools
+ * peak at different times.
+ */
+class HeapTracker implements NotificationListener {
+
+	private final Set<String> heapPools = new HashSet<String>();
+
+	private long peakUsed;
+	private long peakUsedAfterGc;
+
+	HeapTracker() {
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				heapPools.add(pool.getName());
+			}
+		}
+	}
+
+	/** Starts listening to every collector that sends notifications. */
+	void start() {
+		for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (collector instanceof NotificationEmitter) {
+				((NotificationEmitter) collector).addNotificationListener(this, null, null);
+			}
+		}
+	}
+
+	@Override
+	public void handleNotification(final Notification notification, final Object handback) {
+		if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+			return;
+		}
+		final GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+		final long usedBefore = getHeapUsed(info.getGcInfo().getMemoryUsageBeforeGc());
+		final long usedAfter = getHeapUsed(info.getGcInfo().getMemoryUsageAfterGc());
+		synchronized (this) {
+			peakUsed = Math.max(peakUsed, usedBefore);
+			peakUsedAfterGc = Math.max(peakUsedAfterGc, usedAfter);
+		}
+	}
+
+	/** The most heap in use at any collection, or now. */
+	synchronized long getPeakUsed() {
+		return Math.max(peakUsed, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+	}
+
+	/** The most heap still in use right after a collection. */
+	synchronized long getPeakUsedAfterGc() {
+		return peakUsedAfterGc;
+	}
+
+	private long getHeapUsed(final Map<String, MemoryUsage> usageByPool) {
+		long used = 0;
+		for (final Map.Entry<String, MemoryUsage> entry : usageByPool.entrySet()) {
+			if (heapPools.contains(entry.getKey())) {
+				used += entry.getValue().getUsed();
+			}
+		}
+		return used;
+	}
+}
@@ -0,0 +1,81 @@
+package com.vdxp.ssg.benchmark;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.processor.HandlebarsLayoutProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Time per page to apply a chain of nested Handlebars layouts, including compiling the layouts once per run. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark {
+
+	private static final int pages = 100;
+
+	@Param({"1", "3"})
+	public int layoutDepth;
+
+	@Param({"1", "10"})
+	public int sections;
+
+	private ContentDirectory layout;
+	private String[] texts;
+	private ContentDirectory target;
+
+	@Setup(Level.Trial)
+	public void makeLayouts() {
+		layout = new ContentDirectory("layout");
+		for (int i = 0; i < layoutDepth; i++) {
+			final ContentNode layoutFile = new BenchmarkTextContentFile(
+					"<div class=\"level" + i + "\"><h1>{{title}}</h1><p>{{date}}</p>{{#each tags}}<span>{{this}}</span>{{/each}}{{{content}}}</div>",
+					"layout" + i, "hbs");
+			if (i + 1 < layoutDepth) {
+				layoutFile.putData("layout", "layout" + (i + 1) + ".hbs");
+			}
+			layout.addChild(layoutFile);
+		}
+
+		texts = new String[pages];
+		for (int i = 0; i < pages; i++) {
+			texts[i] = Documents.html(sections, i);
+		}
+	}
+
+	/** The processor replaces the text of the pages it renders, so every invocation needs fresh pages. */
+	@Setup(Level.Invocation)
+	public void makeTarget() {
+		target = new ContentDirectory("target");
+		target.putData("layout", "layout0.hbs");
+		for (int i = 0; i < pages; i++) {
+			final ContentNode page = new BenchmarkTextContentFile(texts[i], "page" + i, "html");
+			page.putData("title", "Page " + i);
+			page.putData("date", Documents.date(i));
+			target.addChild(page);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(pages)
+	public ContentDirectory process() {
+		new HandlebarsLayoutProcessor().process(target, layout);
+		return target;
+	}
+}
@@ -0,0 +1,66 @@
+package com.vdxp.ssg.benchmark;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.processor.MarkdownProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Time per document to convert Markdown to HTML. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = Documents.addOpens)
+public class MarkdownBenchmark {
+
+	private static final int documents = 20;
+
+	@Param({"1", "10"})
+	public int sections;
+
+	@Param({"1", "4"})
+	public int threads;
+
+	private String[] texts;
+	private MarkdownProcessor processor;
+	private ContentDirectory directory;
+
+	@Setup(Level.Trial)
+	public void generateDocuments() {
+		texts = new String[documents];
+		for (int i = 0; i < documents; i++) {
+			texts[i] = Documents.markdown(sections, i);
+		}
+		processor = new MarkdownProcessor(new MarkdownProcessor.Options(threads));
+	}
+
+	/** The processor replaces the Markdown it converts, so every invocation needs fresh files. */
+	@Setup(Level.Invocation)
+	public void makeDirectory() {
+		directory = new ContentDirectory("site");
+		for (int i = 0; i < documents; i++) {
+			directory.addChild(new BenchmarkTextContentFile(texts[i], "page" + i, "md"));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(documents)
+	public ContentDirectory process() {
+		processor.process(directory);
+		return directory;
+	}
+}
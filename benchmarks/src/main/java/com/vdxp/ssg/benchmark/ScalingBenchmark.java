@@ -0,0 +1,129 @@
+package com.vdxp.ssg.benchmark;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds generated corpora of increasing size with the whole Driver pipeline and prints pages per second, peak heap,
+ * heap left after collections (see {@link HeapTracker}) and GC time for each. Every build runs in a JVM of its own
+ * with the same maximum heap, so one size cannot warm up or fill the heap for the next, and running out of heap shows
+ * up as a failed size instead of ending the run.
+ *
+ * Corpora are generated into the work directory once and reused by later runs; delete a corpus to regenerate it
+ * with different options. A million posts take several gigabytes of disk.
+ */
+public class ScalingBenchmark {
+
+	private static final String completeMarker = ".complete";
+
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		List<Integer> sizes = new ArrayList<Integer>();
+		sizes.add(1000);
+		sizes.add(10000);
+		sizes.add(100000);
+		sizes.add(1000000);
+		File workDirectory = new File("scaling");
+		String heap = "4g";
+		final List<String> driverArgs = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if ("--sizes".equals(args[i]) && i + 1 < args.length) {
+				sizes = new ArrayList<Integer>();
+				for (final String size : Splitter.on(',').trimResults().omitEmptyStrings().split(args[++i])) {
+					sizes.add(Integer.parseInt(size));
+				}
+			} else if ("--work".equals(args[i]) && i + 1 < args.length) {
+				workDirectory = new File(args[++i]);
+			} else if ("--heap".equals(args[i]) && i + 1 < args.length) {
+				heap = args[++i];
+			} else if ("--".equals(args[i])) {
+				for (i++; i < args.length; i++) {
+					driverArgs.add(args[i]);
+				}
+			} else {
+				throw new IllegalArgumentException("Unrecognized argument " + args[i]);
+			}
+		}
+
+		System.out.println(String.format("%10s %10s %10s %12s %12s %12s %10s %8s", "posts", "pages", "seconds", "pages/sec", "peak heap MB", "live heap MB", "GC ms", "GCs"));
+		for (final int size : sizes) {
+			final File corpus = prepareCorpus(workDirectory, size);
+			final Map<String, String> result = build(corpus, heap, driverArgs);
+			if (result == null) {
+				System.out.println(String.format("%10d failed, see %s", size, new File(corpus, "build.log")));
+				continue;
+			}
+
+			final long pages = Long.parseLong(result.get("pages"));
+			final long millis = Long.parseLong(result.get("millis"));
+			System.out.println(String.format("%10d %10d %10.1f %12.0f %12d %12d %10s %8s", size, pages, millis / 1000.0,
+					millis > 0 ? pages * 1000.0 / millis : 0.0, Long.parseLong(result.get("peakHeap")) / (1024 * 1024),
+					Long.parseLong(result.get("liveHeap")) / (1024 * 1024), result.get("gcMillis"), result.get("gcCount")));
+		}
+	}
+
+	private static File prepareCorpus(final File workDirectory, final int posts) throws IOException {
+		final File corpus = new File(workDirectory, "posts-" + posts);
+		final File marker = new File(corpus, completeMarker);
+		if (marker.exists()) {
+			return corpus;
+		}
+		if (corpus.exists()) {
+			throw new IllegalStateException(corpus + " holds an incomplete corpus, delete it first");
+		}
+
+		System.err.println("Generating " + posts + " posts in " + corpus);
+		new CorpusGenerator(new CorpusGenerator.Options(posts)).generate(corpus);
+		if (!marker.createNewFile()) {
+			throw new IOException("Could not create " + marker);
+		}
+		return corpus;
+	}
+
+	/** Runs {@link BuildProcess} in the corpus directory and returns what it measured, or null if it failed. */
+	private static Map<String, String> build(final File corpus, final String heap, final List<String> driverArgs) throws IOException, InterruptedException {
+		final List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.add("-Xms" + heap);
+		command.add("-Xmx" + heap);
+		if (!System.getProperty("java.specification.version").startsWith("1.")) {
+			command.add(Documents.addOpens);
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(BuildProcess.class.getName());
+		command.addAll(driverArgs);
+
+		final File log = new File(corpus, "build.log");
+		final Process process = new ProcessBuilder(command)
+				.directory(corpus)
+				.redirectErrorStream(true)
+				.redirectOutput(log)
+				.start();
+		if (process.waitFor() != 0) {
+			return null;
+		}
+
+		final String output = Files.toString(log, StandardCharsets.UTF_8);
+		for (final String line : Splitter.on('\n').split(output)) {
+			if (line.startsWith(BuildProcess.resultPrefix)) {
+				final Map<String, String> result = new HashMap<String, String>();
+				for (final String field : Splitter.on(' ').omitEmptyStrings().split(line.substring(BuildProcess.resultPrefix.length()))) {
+					final List<String> keyAndValue = Splitter.on('=').limit(2).splitToList(field);
+					result.put(keyAndValue.get(0), keyAndValue.get(1));
+				}
+				return result;
+			}
+		}
+		System.err.println("No result in " + log + " from " + Joiner.on(' ').join(command));
+		return null;
+	}
+}
@@ -1,48 +1,606 @@
 package com.vdxp.ssg;
 
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.vdxp.ssg.cache.StageCache;
 import com.vdxp.ssg.content.ContentDirectory;
 import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.content.PageStore;
+import com.vdxp.ssg.incremental.BuildManifest;
+import com.vdxp.ssg.incremental.IncrementalBuildPlanner;
+import com.vdxp.ssg.pipeline.Artifacts;
+import com.vdxp.ssg.pipeline.Pipeline;
+import com.vdxp.ssg.pipeline.Stage;
+import com.vdxp.ssg.preview.PreviewServer;
 import com.vdxp.ssg.processor.BlogPagesGeneratorProcessor;
 import com.vdxp.ssg.processor.DateParsingProcessor;
 import com.vdxp.ssg.processor.FileInputProcessor;
 import com.vdxp.ssg.processor.FileOutputProcessor;
 import com.vdxp.ssg.processor.HandlebarsLayoutProcessor;
 import com.vdxp.ssg.processor.MarkdownProcessor;
+import com.vdxp.ssg.processor.Precompressor;
 import com.vdxp.ssg.processor.RootPathProcessor;
 import com.vdxp.ssg.processor.SplitReadMoreProcessor;
 import com.vdxp.ssg.processor.YamlFrontMatterProcessor;
+import com.vdxp.ssg.report.BuildReport;
+import com.vdxp.ssg.watch.SourceWatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 public class Driver {
 
+	private static final Logger log = LoggerFactory.getLogger(Driver.class);
+
+	private static final List<String> contentRootNames = ImmutableList.of("layout", "site", "blog");
+
+	private final Options options;
+	private final File manifestFile;
+	/** Builds for the preview server are never incremental, since pages that are not rendered could not be served */
+	private final boolean incremental;
+
+	/** The layout tree is kept between watch mode rebuilds until a layout changes */
+	private ContentDirectory layout;
+	/** The manifest of the previous incremental build, kept between watch mode rebuilds */
+	private BuildManifest manifest;
+	/** The page store holding the pages that the preview server is serving */
+	private PageStore servedPageStore;
+
+	public Driver(final Options options) {
+		this.options = options;
+		this.manifestFile = new File(options.directory, "target.manifest");
+		this.incremental = options.incremental && options.previewServer == null;
+	}
+
 	public static void main(final String[] args) throws IOException {
-		final ContentDirectory layout = new FileInputProcessor().readContentRoot("layout");
-		new YamlFrontMatterProcessor().process(layout);
+		final Options.Builder options = new Options.Builder();
+		boolean watch = false;
+		int servePort = -1;
+		InetAddress serveAddress = null;
+		int precompressLevel = -1;
+		long precompressMinimumSize = -1;
+		for (int i = 0; i < args.length; i++) {
+			if ("--threads".equals(args[i]) && i + 1 < args.length) {
+				options.threads(Integer.parseInt(args[++i]));
+			} else if ("--link-binaries".equals(args[i])) {
+				options.linkBinaries(true);
+			} else if ("--incremental".equals(args[i])) {
+				options.incremental(true);
+			} else if ("--sync".equals(args[i])) {
+				options.sync(true);
+			} else if ("--atomic".equals(args[i])) {
+				options.atomic(true);
+			} else if ("--cache".equals(args[i]) && i + 1 < args.length) {
+				options.cache(new StageCache(new File(args[++i])));
+			} else if ("--watch".equals(args[i])) {
+				watch = true;
+			} else if ("--serve".equals(args[i]) && i + 1 < args.length) {
+				servePort = Integer.parseInt(args[++i]);
+			} else if ("--bind".equals(args[i]) && i + 1 < args.length) {
+				serveAddress = parseAddress(args[++i]);
+			} else if ("--report".equals(args[i]) && i + 1 < args.length) {
+				options.reportFile(new File(args[++i]));
+			} else if ("--report-pages".equals(args[i]) && i + 1 < args.length) {
+				options.reportOptions(new BuildReport.Options(Integer.parseInt(args[++i])));
+			} else if ("--page-store".equals(args[i]) && i + 1 < args.length) {
+				options.pageStoreOptions(new PageStore.Options(Long.parseLong(args[++i]) * 1024 * 1024));
+			} else if ("--precompress".equals(args[i]) && i + 1 < args.length) {
+				precompressLevel = parsePrecompressLevel(args[++i]);
+			} else if ("--precompress-min-size".equals(args[i]) && i + 1 < args.length) {
+				precompressMinimumSize = Long.parseLong(args[++i]);
+			} else {
+				throw new IllegalArgumentException("Unrecognized argument " + args[i]);
+			}
+		}
+
+		if (precompressLevel >= 0) {
+			options.precompressOptions(precompressMinimumSize >= 0
+					? new Precompressor.Options(options.threads, precompressLevel, precompressMinimumSize)
+					: new Precompressor.Options(options.threads, precompressLevel));
+		}
+
+		if (servePort >= 0) {
+			final PreviewServer previewServer = new PreviewServer(serveAddress != null
+					? new PreviewServer.Options(servePort, serveAddress)
+					: new PreviewServer.Options(servePort));
+			previewServer.start();
+			options.previewServer(previewServer);
+		} else if (serveAddress != null) {
+			throw new IllegalArgumentException("--bind only applies to --serve");
+		}
+
+		/* Watch mode always rebuilds incrementally, otherwise every edit would rebuild the whole site */
+		if (watch) {
+			options.incremental(true);
+		}
+		final Driver driver = new Driver(options.build());
+		driver.build();
+
+		if (watch) {
+			driver.watch();
+		}
+	}
+
+	private static InetAddress parseAddress(final String address) {
+		try {
+			return InetAddress.getByName(address);
+		} catch (final UnknownHostException e) {
+			throw new IllegalArgumentException("Unrecognized address " + address, e);
+		}
+	}
+
+	private static int parsePrecompressLevel(final String level) {
+		final int parsedLevel = Integer.parseInt(level);
+		if (parsedLevel < Deflater.BEST_SPEED || parsedLevel > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("--precompress takes a level from " + Deflater.BEST_SPEED + " to " + Deflater.BEST_COMPRESSION + ", not " + level);
+		}
+		return parsedLevel;
+	}
+
+	/** Rebuilds whenever the sources change, until the thread is interrupted. */
+	public void watch() throws IOException {
+		final List<String> rootPaths = new ArrayList<String>();
+		for (final String rootName : contentRootNames) {
+			rootPaths.add(resolve(rootName));
+		}
+		new SourceWatcher(new Rebuilder(), rootPaths).watch();
+	}
+
+	/**
+	 * Runs every processor once, then writes the output or hands it to the preview server. With a report file, every
+	 * stage is measured and the report is written to it, replacing the previous build's.
+	 */
+	public void build() throws IOException {
+		final Artifacts artifacts = new Artifacts();
+		if (layout != null) {
+			artifacts.put("layout", layout);
+		}
+
+		final BuildReport report = options.reportFile != null ? new BuildReport(options.reportOptions) : null;
+		final PageStore pageStore = options.pageStoreOptions != null ? new PageStore(options.pageStoreOptions) : null;
+		/* The stages and the processors they run all share one pool, so the build never runs on more threads than that */
+		final ForkJoinPool pool = options.threads > 1 ? new ForkJoinPool(options.threads) : null;
+		try {
+			createPipeline(layout == null, report, pageStore, pool).run(artifacts);
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+			if (pageStore != null && options.previewServer == null) {
+				pageStore.close();
+			}
+		}
+		layout = artifacts.get("layout", ContentDirectory.class);
+
+		if (report != null) {
+			report.logSummary();
+			report.writeJson(options.reportFile);
+		}
+
+		if (options.previewServer != null) {
+			options.previewServer.setContentRoot(artifacts.get("target", ContentDirectory.class));
+			/* The previous build's pages are no longer served, so their store can go */
+			if (servedPageStore != null) {
+				servedPageStore.close();
+			}
+			servedPageStore = pageStore;
+		}
+
+		if (options.cache != null) {
+			options.cache.logStatistics();
+			options.cache.evict();
+		}
+	}
+
+	/**
+	 * The stages of a build. The layout, site and blog trees are read and prepared independently of each other and
+	 * only come together when they are merged into the target tree. The incremental build planner is passed along
+	 * as an artifact (null for full builds) so that planning happens in a fixed order. Each processor runs in a stage
+	 * of its own, so that a build report shows what each one costs. The stages and the processors run on {@code pool},
+	 * which is null when building on one thread.
+	 */
+	private Pipeline createPipeline(final boolean readLayout, final BuildReport report, final PageStore pageStore, final ForkJoinPool pool) {
+		final FileInputProcessor.Options inputOptions = new FileInputProcessor.Options(options.threads, StandardCharsets.UTF_8, pool);
+		final YamlFrontMatterProcessor.Options frontMatterOptions = new YamlFrontMatterProcessor.Options(options.threads, options.cache, pool);
+		final MarkdownProcessor.Options markdownOptions = new MarkdownProcessor.Options(options.threads, options.cache, report, pageStore, pool);
+		final BlogPagesGeneratorProcessor.Options blogOptions = new BlogPagesGeneratorProcessor.Options(3);
+
+		final Pipeline pipeline = new Pipeline(new Pipeline.Options(options.threads, report, pool));
+
+		if (readLayout) {
+			pipeline.addStage(new Stage("read layout", ImmutableList.<String>of(), ImmutableList.of("layout.read")) {
+				@Override
+				public void run(final Artifacts artifacts) throws IOException {
+					artifacts.put("layout.read", new FileInputProcessor(inputOptions).readContentRoot(resolve("layout")));
+				}
+			});
+			pipeline.addStage(new Stage("layout front matter", ImmutableList.of("layout.read"), ImmutableList.of("layout")) {
+				@Override
+				public void run(final Artifacts artifacts) {
+					final ContentDirectory layout = artifacts.get("layout.read", ContentDirectory.class);
+					new YamlFrontMatterProcessor(frontMatterOptions).process(layout);
+					artifacts.put("layout", layout);
+				}
+			});
+		}
 
-		final ContentDirectory site = new FileInputProcessor().readContentRoot("site");
-		new YamlFrontMatterProcessor().process(site);
-		new MarkdownProcessor().process(site);
+		pipeline.addStage(new Stage("start planning", ImmutableList.of("layout"), ImmutableList.of("planner")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				IncrementalBuildPlanner planner = null;
+				if (incremental) {
+					if (manifest == null) {
+						manifest = BuildManifest.load(manifestFile);
+					}
+					planner = new IncrementalBuildPlanner(manifest, artifacts.get("layout", ContentDirectory.class));
+				}
+				artifacts.put("planner", planner);
+			}
+		});
 
-		final ContentDirectory blog = new FileInputProcessor().readContentRoot("blog");
+		pipeline.addStage(new Stage("read site", ImmutableList.<String>of(), ImmutableList.of("site.read")) {
+			@Override
+			public void run(final Artifacts artifacts) throws IOException {
+				artifacts.put("site.read", new FileInputProcessor(inputOptions).readContentRoot(resolve("site")));
+			}
+		});
+		pipeline.addStage(new Stage("site front matter", ImmutableList.of("site.read"), ImmutableList.of("site.frontMatter")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final ContentDirectory site = artifacts.get("site.read", ContentDirectory.class);
+				new YamlFrontMatterProcessor(frontMatterOptions).process(site);
+				artifacts.put("site.frontMatter", site);
+			}
+		});
+		pipeline.addStage(new Stage("plan site", ImmutableList.of("planner", "site.frontMatter"), ImmutableList.of("planner.site", "site.planned")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final IncrementalBuildPlanner planner = artifacts.get("planner", IncrementalBuildPlanner.class);
+				final ContentDirectory site = artifacts.get("site.frontMatter", ContentDirectory.class);
+				if (planner != null) {
+					planner.planContentRoot(site);
+				}
+				artifacts.put("planner.site", planner);
+				artifacts.put("site.planned", site);
+			}
+		});
+		pipeline.addStage(new Stage("site markdown", ImmutableList.of("planner", "site.planned"), ImmutableList.of("site")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final ContentDirectory site = artifacts.get("site.planned", ContentDirectory.class);
+				new MarkdownProcessor(markdownOptions).process(site, getMarkdownNodes(artifacts.get("planner", IncrementalBuildPlanner.class)));
+				artifacts.put("site", site);
+			}
+		});
 
-		for (final ContentNode node : blog.getChildren()) {
-			node.putData("layout", "blog.hbs");
+		pipeline.addStage(new Stage("read blog", ImmutableList.<String>of(), ImmutableList.of("blog.read")) {
+			@Override
+			public void run(final Artifacts artifacts) throws IOException {
+				final ContentDirectory blog = new FileInputProcessor(inputOptions).readContentRoot(resolve("blog"));
+				for (final ContentNode node : blog.getChildren()) {
+					node.putData("layout", "blog.hbs");
+				}
+				artifacts.put("blog.read", blog);
+			}
+		});
+		pipeline.addStage(new Stage("blog front matter", ImmutableList.of("blog.read"), ImmutableList.of("blog.frontMatter")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final ContentDirectory blog = artifacts.get("blog.read", ContentDirectory.class);
+				new YamlFrontMatterProcessor(frontMatterOptions).process(blog);
+				artifacts.put("blog.frontMatter", blog);
+			}
+		});
+		pipeline.addStage(new Stage("blog dates", ImmutableList.of("blog.frontMatter"), ImmutableList.of("blog.dated")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final ContentDirectory blog = artifacts.get("blog.frontMatter", ContentDirectory.class);
+				new DateParsingProcessor(new DateParsingProcessor.Options(options.threads, options.cache, pool), "date").process(blog);
+				artifacts.put("blog.dated", blog);
+			}
+		});
+		pipeline.addStage(new Stage("plan blog", ImmutableList.of("planner.site", "blog.dated"), ImmutableList.of("planner.blog", "blog.planned")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final IncrementalBuildPlanner planner = artifacts.get("planner.site", IncrementalBuildPlanner.class);
+				final ContentDirectory blog = artifacts.get("blog.dated", ContentDirectory.class);
+				if (planner != null) {
+					planner.planContentRoot(blog);
+					planner.planBlogPages(blog, blogOptions);
+				}
+				artifacts.put("planner.blog", planner);
+				artifacts.put("blog.planned", blog);
+			}
+		});
+		pipeline.addStage(new Stage("blog markdown", ImmutableList.of("planner.blog", "blog.planned"), ImmutableList.of("blog.html")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final ContentDirectory blog = artifacts.get("blog.planned", ContentDirectory.class);
+				new MarkdownProcessor(markdownOptions).process(blog, getMarkdownNodes(artifacts.get("planner.blog", IncrementalBuildPlanner.class)));
+				artifacts.put("blog.html", blog);
+			}
+		});
+		pipeline.addStage(new Stage("blog read more", ImmutableList.of("blog.html"), ImmutableList.of("blog.split")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final ContentDirectory blog = artifacts.get("blog.html", ContentDirectory.class);
+				new SplitReadMoreProcessor().process(blog);
+				artifacts.put("blog.split", blog);
+			}
+		});
+		pipeline.addStage(new Stage("blog pages", ImmutableList.of("blog.split"), ImmutableList.of("blog.paged")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final ContentDirectory blog = artifacts.get("blog.split", ContentDirectory.class);
+				new BlogPagesGeneratorProcessor(blogOptions).process(blog);
+				artifacts.put("blog.paged", blog);
+			}
+		});
+		pipeline.addStage(new Stage("attach blog pages", ImmutableList.of("planner.blog", "blog.paged"), ImmutableList.of("planner.attached", "blog")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final IncrementalBuildPlanner planner = artifacts.get("planner.blog", IncrementalBuildPlanner.class);
+				final ContentDirectory blog = artifacts.get("blog.paged", ContentDirectory.class);
+				if (planner != null) {
+					planner.attachBlogPages(blog);
+				}
+				artifacts.put("planner.attached", planner);
+				artifacts.put("blog", blog);
+			}
+		});
+
+		pipeline.addStage(new Stage("merge", ImmutableList.of("site", "blog"), ImmutableList.of("target.merged")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final ContentDirectory target = new ContentDirectory(resolve("target"));
+				target.merge(artifacts.get("site", ContentDirectory.class));
+				target.merge(artifacts.get("blog", ContentDirectory.class));
+				artifacts.put("target.merged", target);
+			}
+		});
+		pipeline.addStage(new Stage("root paths", ImmutableList.of("target.merged"), ImmutableList.of("target.rooted")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final ContentDirectory target = artifacts.get("target.merged", ContentDirectory.class);
+				new RootPathProcessor().process(target);
+				artifacts.put("target.rooted", target);
+			}
+		});
+		pipeline.addStage(new Stage("layouts", ImmutableList.of("target.rooted", "layout", "planner.attached"), ImmutableList.of("target")) {
+			@Override
+			public void run(final Artifacts artifacts) {
+				final IncrementalBuildPlanner planner = artifacts.get("planner.attached", IncrementalBuildPlanner.class);
+				final ContentDirectory target = artifacts.get("target.rooted", ContentDirectory.class);
+				/* Builds that are written out render the outermost layout straight into the output files */
+				new HandlebarsLayoutProcessor(new HandlebarsLayoutProcessor.Options(options.threads, report, options.previewServer == null, pageStore, pool)).process(target, artifacts.get("layout", ContentDirectory.class), getDirtyNodes(planner));
+				artifacts.put("target", target);
+			}
+		});
+
+		if (options.previewServer == null) {
+			pipeline.addStage(new Stage("write", ImmutableList.of("target", "planner.attached"), ImmutableList.<String>of()) {
+				@Override
+				public void run(final Artifacts artifacts) throws IOException {
+					final IncrementalBuildPlanner planner = artifacts.get("planner.attached", IncrementalBuildPlanner.class);
+					final ContentDirectory target = artifacts.get("target", ContentDirectory.class);
+					if (planner != null) {
+						manifest = planner.recordOutputs(target);
+					}
+
+					/* Syncing both skips unchanged outputs and prunes orphans */
+					final boolean skipUnchanged = options.sync;
+					final boolean pruneOrphans = options.sync;
+					final FileOutputProcessor.Options outputOptions = new FileOutputProcessor.Options(options.linkBinaries, skipUnchanged, pruneOrphans, options.atomic, getPrecompressOptions(pool));
+					final List<ContentNode> failedNodes = new FileOutputProcessor(outputOptions).writeContentRoot(target, getDirtyNodes(planner));
+
+					if (planner != null) {
+						planner.discardOutputs(failedNodes);
+						manifest.save(manifestFile);
+					}
+				}
+			});
+		}
+
+		return pipeline;
+	}
+
+	/** The precompression options, compressing on {@code pool} if there is one. */
+	private Precompressor.Options getPrecompressOptions(final ForkJoinPool pool) {
+		final Precompressor.Options precompressOptions = options.precompressOptions;
+		if (precompressOptions == null || pool == null) {
+			return precompressOptions;
 		}
+		return new Precompressor.Options(precompressOptions.threads, precompressOptions.level, precompressOptions.minimumSize, precompressOptions.extensions, pool);
+	}
+
+	private static Predicate<ContentNode> getMarkdownNodes(final IncrementalBuildPlanner planner) {
+		return planner != null ? planner.getMarkdownNodes() : Predicates.<ContentNode>alwaysTrue();
+	}
+
+	private static Predicate<ContentNode> getDirtyNodes(final IncrementalBuildPlanner planner) {
+		return planner != null ? planner.getDirtyNodes() : Predicates.<ContentNode>alwaysTrue();
+	}
+
+	/** The path of a content root or output in the site's directory. */
+	private String resolve(final String name) {
+		return new File(options.directory, name).getPath();
+	}
 
-		new YamlFrontMatterProcessor().process(blog);
-		new DateParsingProcessor("date").process(blog);
-		new MarkdownProcessor().process(blog);
-		new SplitReadMoreProcessor().process(blog);
-		new BlogPagesGeneratorProcessor(new BlogPagesGeneratorProcessor.Options(3)).process(blog);
+	/**
+	 * Rebuilds after the given paths changed. The layout tree and the manifest of the previous build are reused, so
+	 * only pages whose sources or layouts changed (and the blog pages listing changed posts) are converted, rendered
+	 * and written. The site and blog roots are still read and their front matter parsed again; {@link Options#cache} makes
+	 * that cheap.
+	 */
+	void rebuild(final Set<Path> changedPaths) {
+		final Path layoutRoot = Paths.get(resolve("layout"));
+		for (final Path changedPath : changedPaths) {
+			if (changedPath.startsWith(layoutRoot)) {
+				log.info("Layouts changed, reloading them");
+				layout = null;
+				break;
+			}
+		}
 
-		final ContentDirectory target = new ContentDirectory("target");
-		target.merge(site);
-		target.merge(blog);
+		final long startTime = System.nanoTime();
+		try {
+			build();
+			log.info("Rebuilt {} changed paths in {} ms", changedPaths.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+		} catch (final IOException e) {
+			log.error("Rebuild failed, waiting for the next change", e);
+		} catch (final RuntimeException e) {
+			log.error("Rebuild failed, waiting for the next change", e);
+		}
+	}
 
-		new RootPathProcessor().process(target);
-		new HandlebarsLayoutProcessor().process(target, layout);
-		new FileOutputProcessor().writeContentRoot(target);
+	/** Rebuilds after source changes, reusing what the previous build left in memory. */
+	private class Rebuilder implements SourceWatcher.Listener {
+		@Override
+		public void sourcesChanged(final Set<Path> changedPaths) {
+			rebuild(changedPaths);
+		}
 	}
 
+	/**
+	 * How to build. Everything but the thread count is off or missing by default. Options are set by name through
+	 * a {@link Builder}, since most of them are flags that would be easy to mix up by position.
+	 */
+	public static class Options {
+		/** The site's directory, holding {@code layout}, {@code site} and {@code blog}; null is the working directory */
+		public final File directory;
+		public final int threads;
+		/** Binaries are hard-linked into the output rather than copied */
+		public final boolean linkBinaries;
+		/** Only what changed since the last build, according to its manifest, is rebuilt */
+		public final boolean incremental;
+		/** Unchanged outputs are left alone and outputs without a source are deleted */
+		public final boolean sync;
+		/** Every build is written to a new directory and swapped in when it is complete */
+		public final boolean atomic;
+		/** Remembers expensive stages' results between builds; may be null */
+		public final StageCache cache;
+		/** Builds are handed to it instead of being written out; may be null */
+		public final PreviewServer previewServer;
+		/** Every stage is measured and the report is written here, replacing the previous build's; may be null */
+		public final File reportFile;
+		public final BuildReport.Options reportOptions;
+		/** Every build keeps its converted and rendered pages in a {@link PageStore} of its own; may be null */
+		public final PageStore.Options pageStoreOptions;
+		/** Text outputs get gzip-compressed copies next to them; may be null */
+		public final Precompressor.Options precompressOptions;
+
+		private static final int defaultThreads = 1;
+
+		public Options() {
+			this(new Builder());
+		}
+
+		private Options(final Builder builder) {
+			this.directory = builder.directory;
+			this.threads = builder.threads;
+			this.linkBinaries = builder.linkBinaries;
+			this.incremental = builder.incremental;
+			this.sync = builder.sync;
+			this.atomic = builder.atomic;
+			this.cache = builder.cache;
+			this.previewServer = builder.previewServer;
+			this.reportFile = builder.reportFile;
+			this.reportOptions = builder.reportOptions;
+			this.pageStoreOptions = builder.pageStoreOptions;
+			this.precompressOptions = builder.precompressOptions;
+		}
+
+		public static class Builder {
+			private File directory;
+			private int threads = defaultThreads;
+			private boolean linkBinaries;
+			private boolean incremental;
+			private boolean sync;
+			private boolean atomic;
+			private StageCache cache;
+			private PreviewServer previewServer;
+			private File reportFile;
+			private BuildReport.Options reportOptions = new BuildReport.Options();
+			private PageStore.Options pageStoreOptions;
+			private Precompressor.Options precompressOptions;
+
+			public Builder directory(final File directory) {
+				this.directory = directory;
+				return this;
+			}
+
+			public Builder threads(final int threads) {
+				this.threads = threads;
+				return this;
+			}
+
+			public Builder linkBinaries(final boolean linkBinaries) {
+				this.linkBinaries = linkBinaries;
+				return this;
+			}
+
+			public Builder incremental(final boolean incremental) {
+				this.incremental = incremental;
+				return this;
+			}
+
+			public Builder sync(final boolean sync) {
+				this.sync = sync;
+				return this;
+			}
+
+			public Builder atomic(final boolean atomic) {
+				this.atomic = atomic;
+				return this;
+			}
+
+			public Builder cache(final StageCache cache) {
+				this.cache = cache;
+				return this;
+			}
+
+			public Builder previewServer(final PreviewServer previewServer) {
+				this.previewServer = previewServer;
+				return this;
+			}
+
+			public Builder reportFile(final File reportFile) {
+				this.reportFile = reportFile;
+				return this;
+			}
+
+			public Builder reportOptions(final BuildReport.Options reportOptions) {
+				this.reportOptions = reportOptions;
+				return this;
+			}
+
+			public Builder pageStoreOptions(final PageStore.Options pageStoreOptions) {
+				this.pageStoreOptions = pageStoreOptions;
+				return this;
+			}
+
+			public Builder precompressOptions(final Precompressor.Options precompressOptions) {
+				this.precompressOptions = precompressOptions;
+				return this;
+			}
+
+			public Options build() {
+				return new Options(this);
+			}
+		}
+	}
 }
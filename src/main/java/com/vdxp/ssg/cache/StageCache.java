@@ -0,0 +1,294 @@
+package com.vdxp.ssg.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk cache for the results of expensive processing stages, shared between builds.
+ *
+ * Entries are keyed by a hash of everything the stage's result depends on (see {@link #key}), so an entry never
+ * needs to be invalidated; it is simply no longer asked for. Every entry is written to a temporary file and renamed
+ * into place, so concurrent builds sharing a cache directory only ever see complete entries. Reading an entry
+ * touches its modification time, and {@link #evict()} deletes the least recently used entries once the cache is
+ * larger than its size limit. Temporary files count towards the limit too; those left behind by a build that was
+ * killed are deleted once they are old enough that no build can still be writing them.
+ */
+public class StageCache {
+
+	private static final Logger log = LoggerFactory.getLogger(StageCache.class);
+
+	public static final long defaultMaximumSize = 512L * 1024 * 1024;
+
+	private static final String temporarySuffix = ".tmp";
+	/** Entries are written in one go, so a temporary file this old was left behind by a build that did not finish */
+	private static final long staleTemporaryFileAge = TimeUnit.HOURS.toMillis(1);
+
+	private final File directory;
+	private final long maximumSize;
+	private final ConcurrentMap<String, Statistics> statistics = new ConcurrentHashMap<String, Statistics>();
+
+	public StageCache(final File directory) {
+		this(directory, defaultMaximumSize);
+	}
+
+	public StageCache(final File directory, final long maximumSize) {
+		this.directory = directory;
+		this.maximumSize = maximumSize;
+	}
+
+	/** Hashes the given parts (typically the stage's configuration followed by its input) into a cache key. */
+	public static String key(final Object... parts) {
+		final Hasher hasher = Hashing.sha1().newHasher();
+		for (final Object part : parts) {
+			final String string = String.valueOf(part);
+			hasher.putInt(string.length());
+			hasher.putString(string, Charsets.UTF_8);
+		}
+		return hasher.hash().toString();
+	}
+
+	public byte[] get(final String stage, final String key) {
+		final File entry = getEntryFile(stage, key);
+		try {
+			final byte[] value = Files.readAllBytes(entry.toPath());
+			if (!entry.setLastModified(System.currentTimeMillis())) {
+				log.debug("Could not touch cache entry {}", entry);
+			}
+			getStatistics(stage).hits.incrementAndGet();
+			return value;
+		} catch (final NoSuchFileException e) {
+			getStatistics(stage).misses.incrementAndGet();
+			return null;
+		} catch (final IOException e) {
+			log.warn("Could not read cache entry {}", entry.getAbsolutePath(), e);
+			getStatistics(stage).misses.incrementAndGet();
+			return null;
+		}
+	}
+
+	public void put(final String stage, final String key, final byte[] value) {
+		final File entry = getEntryFile(stage, key);
+		try {
+			final Path directory = Files.createDirectories(entry.getParentFile().toPath());
+			final Path temporaryFile = Files.createTempFile(directory, key, temporarySuffix);
+			Files.write(temporaryFile, value);
+			Files.move(temporaryFile, entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			log.warn("Could not write cache entry {}", entry.getAbsolutePath(), e);
+		}
+	}
+
+	public String getString(final String stage, final String key) {
+		final byte[] value = get(stage, key);
+		return value == null ? null : new String(value, Charsets.UTF_8);
+	}
+
+	public void putString(final String stage, final String key, final String value) {
+		put(stage, key, value.getBytes(Charsets.UTF_8));
+	}
+
+	/**
+	 * Returns a cached object graph. Only plain collections, strings and numbers are ever read back, which is all the
+	 * front matter parser produces; anything else is treated as a miss.
+	 */
+	public Object getObject(final String stage, final String key) {
+		final byte[] value = get(stage, key);
+		if (value == null) {
+			return null;
+		}
+
+		try {
+			final ObjectInputStream input = new PlainObjectInputStream(new ByteArrayInputStream(value));
+			try {
+				return input.readObject();
+			} finally {
+				input.close();
+			}
+		} catch (final IOException e) {
+			log.warn("Ignoring unreadable cache entry {}", getEntryFile(stage, key).getAbsolutePath(), e);
+			return null;
+		} catch (final ClassNotFoundException e) {
+			log.warn("Ignoring unreadable cache entry {}", getEntryFile(stage, key).getAbsolutePath(), e);
+			return null;
+		}
+	}
+
+	public void putObject(final String stage, final String key, final Serializable value) {
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final ObjectOutputStream output = new ObjectOutputStream(bytes);
+			output.writeObject(value);
+			output.close();
+			put(stage, key, bytes.toByteArray());
+		} catch (final IOException e) {
+			log.warn("Could not serialize cache entry for {}", stage, e);
+		}
+	}
+
+	/**
+	 * Deletes stale temporary files, then the least recently used entries until the cache fits in its size limit.
+	 * Temporary files that may still be being written count towards the limit, but are left alone.
+	 */
+	public void evict() {
+		final List<File> entries = new ArrayList<File>();
+		final List<File> temporaryFiles = new ArrayList<File>();
+		collectEntries(directory, entries, temporaryFiles);
+
+		long totalSize = 0;
+		final long staleTime = System.currentTimeMillis() - staleTemporaryFileAge;
+		int deletedTemporaryFiles = 0;
+		for (final File temporaryFile : temporaryFiles) {
+			final long size = temporaryFile.length();
+			if (temporaryFile.lastModified() < staleTime && temporaryFile.delete()) {
+				deletedTemporaryFiles++;
+			} else {
+				totalSize += size;
+			}
+		}
+		if (deletedTemporaryFiles > 0) {
+			log.info("Deleted {} stale temporary files from cache {}", deletedTemporaryFiles, directory.getPath());
+		}
+
+		final List<CacheEntry> cacheEntries = new ArrayList<CacheEntry>();
+		for (final File entry : entries) {
+			final CacheEntry cacheEntry = new CacheEntry(entry, entry.length(), entry.lastModified());
+			cacheEntries.add(cacheEntry);
+			totalSize += cacheEntry.size;
+		}
+		if (totalSize <= maximumSize) {
+			return;
+		}
+
+		Collections.sort(cacheEntries, new Comparator<CacheEntry>() {
+			@Override
+			public int compare(final CacheEntry left, final CacheEntry right) {
+				return Long.compare(left.lastModified, right.lastModified);
+			}
+		});
+
+		int evicted = 0;
+		for (final CacheEntry cacheEntry : cacheEntries) {
+			if (totalSize <= maximumSize) {
+				break;
+			}
+			/* Another build may have evicted it already; either way it no longer counts */
+			if (cacheEntry.file.delete()) {
+				evicted++;
+			}
+			totalSize -= cacheEntry.size;
+		}
+		log.info("Evicted {} entries from cache {}", evicted, directory.getPath());
+	}
+
+	public void logStatistics() {
+		for (final Map.Entry<String, Statistics> entry : statistics.entrySet()) {
+			log.info("Cache for {}: {} hits, {} misses", entry.getKey(), entry.getValue().hits.get(), entry.getValue().misses.get());
+		}
+	}
+
+	public Map<String, Statistics> getStatistics() {
+		return Collections.unmodifiableMap(statistics);
+	}
+
+	private Statistics getStatistics(final String stage) {
+		Statistics stageStatistics = statistics.get(stage);
+		if (stageStatistics == null) {
+			statistics.putIfAbsent(stage, new Statistics());
+			stageStatistics = statistics.get(stage);
+		}
+		return stageStatistics;
+	}
+
+	private File getEntryFile(final String stage, final String key) {
+		return new File(new File(new File(directory, stage), key.substring(0, 2)), key);
+	}
+
+	private static void collectEntries(final File directory, final List<File> entries, final List<File> temporaryFiles) {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (final File file : files) {
+			if (file.isDirectory()) {
+				collectEntries(file, entries, temporaryFiles);
+			} else if (file.getName().endsWith(temporarySuffix)) {
+				temporaryFiles.add(file);
+			} else {
+				entries.add(file);
+			}
+		}
+	}
+
+	public static class Statistics {
+		public final AtomicLong hits = new AtomicLong();
+		public final AtomicLong misses = new AtomicLong();
+	}
+
+	private static class CacheEntry {
+		private final File file;
+		private final long size;
+		private final long lastModified;
+
+		public CacheEntry(final File file, final long size, final long lastModified) {
+			this.file = file;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+
+	private static class PlainObjectInputStream extends ObjectInputStream {
+
+		private static final List<String> allowedClassNames = Collections.unmodifiableList(Arrays.asList(
+				"java.util.HashMap",
+				"java.util.LinkedHashMap",
+				"java.util.ArrayList",
+				"java.lang.String",
+				"java.lang.Number",
+				"java.lang.Integer",
+				"java.lang.Long",
+				"java.lang.Double",
+				"java.lang.Boolean"
+		));
+
+		public PlainObjectInputStream(final InputStream input) throws IOException {
+			super(input);
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass description) throws IOException, ClassNotFoundException {
+			if (!allowedClassNames.contains(description.getName())) {
+				throw new InvalidClassException(description.getName(), "Not allowed in a cache entry");
+			}
+			return super.resolveClass(description);
+		}
+	}
+
+}
@@ -1,12 +1,14 @@
 package com.vdxp.ssg.content;
 
-import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ContentDirectory extends ContentNode {
 
@@ -14,15 +16,34 @@ public class ContentDirectory extends ContentNode {
 
 	private final List<ContentNode> children = new ArrayList<ContentNode>();
 
+	/**
+	 * Children by name, or null when a child may have been renamed since it was built. A rebuilt index is a new map,
+	 * so a finished tree can be read from several threads even if lookups rebuild it.
+	 */
+	private volatile Map<String, ContentNode> childIndex = new HashMap<String, ContentNode>();
+
 	private String name;
 
 	public ContentDirectory(final String name) {
 		this.name = name;
 	}
 
+	/**
+	 * Adds a child. A directory may hold more than one node with the same name, as it always could; lookups by name
+	 * find the first of them, and a warning is logged since only one of them can be written out.
+	 */
 	public void addChild(final ContentNode child) {
+		final String childName = child.getName();
+		final boolean duplicate = getChildByName(childName) != null;
+		if (duplicate) {
+			log.warn("Directory {} already contains a node named {}, adding {} anyway", name, childName, child);
+		}
+
 		child.setParent(this);
 		this.children.add(child);
+		if (!duplicate) {
+			childIndex.put(childName, child);
+		}
 	}
 
 	public void removeChild(final ContentNode child) {
@@ -36,32 +57,74 @@ public class ContentDirectory extends ContentNode {
 		}
 
 		child.clearParent();
+		invalidateChildIndex();
 	}
 
+	/** Returns a read-only view of the children, in the order they were added. */
 	public Collection<ContentNode> getChildren() {
-		return ImmutableList.copyOf(children);
+		return Collections.unmodifiableList(children);
 	}
 
+	/**
+	 * Moves the donor's children into this directory. Directories that exist in both are merged recursively. Any
+	 * other name that exists in both is logged and both nodes are kept, as {@link #addChild} does.
+	 */
 	public void merge(final ContentDirectory donor) {
 		if (donor.getParent() != null) {
 			throw new IllegalStateException("Donor ContentDirectory must not be attached to a content tree");
 		}
 
-		for (final ContentNode child : donor.children) {
-			child.clearParent();
-			child.setParent(this);
+		mergeChildren(donor);
+	}
+
+	private void mergeChildren(final ContentDirectory donor) {
+		for (final ContentNode donorChild : donor.children) {
+			donorChild.clearParent();
+
+			final ContentNode child = getChildByName(donorChild.getName());
+			if (child instanceof ContentDirectory && donorChild instanceof ContentDirectory) {
+				((ContentDirectory) child).mergeChildren((ContentDirectory) donorChild);
+			} else {
+				addChild(donorChild);
+			}
 		}
-		children.addAll(donor.children);
 		donor.children.clear();
+		donor.invalidateChildIndex();
 	}
 
+	/**
+	 * Children can be renamed without this directory being involved, so a hit is checked against the child's
+	 * current name before it is trusted.
+	 */
 	private ContentNode getChildByName(final String name) {
+		Map<String, ContentNode> index = childIndex;
+		if (index == null) {
+			index = rebuildChildIndex();
+		}
+
+		ContentNode child = index.get(name);
+		if (child != null && !name.equals(child.getName())) {
+			child = rebuildChildIndex().get(name);
+		}
+		return child;
+	}
+
+	private Map<String, ContentNode> rebuildChildIndex() {
+		final Map<String, ContentNode> index = new HashMap<String, ContentNode>();
 		for (final ContentNode child : children) {
-			if (name.equals(child.getName())) {
-				return child;
+			final String childName = child.getName();
+			if (index.containsKey(childName)) {
+				log.warn("Directory {} contains more than one node named {}", name, childName);
+			} else {
+				index.put(childName, child);
 			}
 		}
-		return null;
+		childIndex = index;
+		return index;
+	}
+
+	void invalidateChildIndex() {
+		childIndex = null;
 	}
 
 	public ContentNode getPath(final String path, final boolean makeMissingDirectories) {
@@ -98,14 +161,17 @@ public class ContentDirectory extends ContentNode {
 
 	@Override
 	protected void accept(final ContentVisitor visitor, final List<ContentNode> parents) {
-		visitor.visit(this, ImmutableList.copyOf(parents));
+		final ParentStack parentStack = parents instanceof ParentStack ? (ParentStack) parents : new ParentStack(parents);
 
-		List<ContentNode> childParents = new ArrayList<ContentNode>(parents);
-		childParents.add(this);
-		childParents = ImmutableList.copyOf(childParents);
+		visitor.visit(this, parentStack);
 
-		for (final ContentNode child : children) {
-			child.accept(visitor, childParents);
+		parentStack.push(this);
+		try {
+			for (final ContentNode child : children) {
+				child.accept(visitor, parentStack);
+			}
+		} finally {
+			parentStack.pop();
 		}
 	}
 
@@ -116,6 +182,7 @@ public class ContentDirectory extends ContentNode {
 
 	public void setName(final String name) {
 		this.name = name;
+		nameChanged();
 	}
 
 }
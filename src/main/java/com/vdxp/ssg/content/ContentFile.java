@@ -1,21 +1,22 @@
 package com.vdxp.ssg.content;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayDeque;
-import java.util.Arrays;
-import java.util.Deque;
+import java.util.List;
 
 public abstract class ContentFile extends ContentNode {
 
 	private String basename;
-	private Deque<String> extensions;
+	private List<String> extensions;
+	/** Cached result of getName, cleared whenever the basename or extensions may change */
+	private String name;
 
 	public ContentFile(final String basename, final String... extensions) {
 		this.basename = basename;
-		this.extensions = new ArrayDeque<String>(Arrays.asList(extensions));
+		this.extensions = ImmutableList.copyOf(extensions);
 	}
 
 	public abstract String getSource();
@@ -23,12 +24,15 @@ public abstract class ContentFile extends ContentNode {
 
 	@Override
 	public String getName() {
-		final StringBuilder sb = new StringBuilder(getBasename());
-		if (!extensions.isEmpty()) {
-			sb.append('.');
-			Joiner.on('.').appendTo(sb, extensions);
+		if (name == null) {
+			final StringBuilder sb = new StringBuilder(getBasename());
+			if (!extensions.isEmpty()) {
+				sb.append('.');
+				Joiner.on('.').appendTo(sb, extensions);
+			}
+			name = sb.toString();
 		}
-		return sb.toString();
+		return name;
 	}
 
 	public String getBasename() {
@@ -37,14 +41,22 @@ public abstract class ContentFile extends ContentNode {
 
 	public void setBasename(final String basename) {
 		this.basename = basename;
+		extensionsChanged();
 	}
 
-	public Deque<String> getExtensions() {
+	/** Returns the extensions, which cannot be modified; the file is renamed with {@link #setExtensions}. */
+	public List<String> getExtensions() {
 		return extensions;
 	}
 
-	public void setExtensions(final Deque<String> extensions) {
-		this.extensions = extensions;
+	public void setExtensions(final List<String> extensions) {
+		this.extensions = ImmutableList.copyOf(extensions);
+		extensionsChanged();
+	}
+
+	private void extensionsChanged() {
+		name = null;
+		nameChanged();
 	}
 
 	@Override
@@ -1,20 +1,28 @@
 package com.vdxp.ssg.content;
 
 import com.google.common.base.Joiner;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 
 public abstract class ContentNode {
 
 	private ContentNode parent;
 
+	/** Front matter repeats the same keys and values (layouts, tags, authors) across thousands of nodes */
+	private static final Interner<String> dataInterner = Interners.newWeakInterner();
+	/** Longer values, such as titles, snippets and page bodies, rarely repeat and are not worth hashing */
+	private static final int maximumInternedLength = 64;
+
 	private final Map<String, Object> data = new HashMap<String, Object>();
+	private final Map<String, Object> dataView = Collections.unmodifiableMap(data);
 
 	protected abstract void accept(final ContentVisitor visitor, List<ContentNode> parents);
 
@@ -36,21 +44,67 @@ public abstract class ContentNode {
 		this.parent = null;
 	}
 
+	/** Tells the parent directory that this node's name may have changed, so it can update its index of children */
+	protected void nameChanged() {
+		if (parent instanceof ContentDirectory) {
+			((ContentDirectory) parent).invalidateChildIndex();
+		}
+	}
+
 	public void putData(final Map<String, Object> data) {
-		this.data.putAll(data);
+		for (final Map.Entry<String, Object> entry : data.entrySet()) {
+			putData(entry.getKey(), entry.getValue());
+		}
 	}
 
 	public void putData(final String key, final Object value) {
-		this.data.put(key, value);
+		this.data.put(dataInterner.intern(key), internDataValue(value));
 	}
 
+	/** Returns a read-only view of this node's data, which reflects later changes. */
 	public Map<String, Object> getData() {
-		return ImmutableMap.copyOf(data);
+		return dataView;
+	}
+
+	/** Returns the value of {@code key} if it is present and of the given type, and null otherwise. */
+	public <T> T getData(final String key, final Class<T> type) {
+		final Object value = data.get(key);
+		return type.isInstance(value) ? type.cast(value) : null;
+	}
+
+	/**
+	 * Interns the strings in a list in place, so the list the caller passed in stays the node's value. Lists that
+	 * cannot be changed are kept as they are.
+	 */
+	private static Object internDataValue(final Object value) {
+		if (value instanceof List) {
+			@SuppressWarnings("unchecked")
+			final ListIterator<Object> elements = ((List<Object>) value).listIterator();
+			try {
+				while (elements.hasNext()) {
+					final Object element = elements.next();
+					final Object internedElement = internShortString(element);
+					if (internedElement != element) {
+						elements.set(internedElement);
+					}
+				}
+			} catch (final UnsupportedOperationException e) {
+				/* Keep a read-only list as it is */
+			}
+			return value;
+		}
+		return internShortString(value);
+	}
+
+	private static Object internShortString(final Object value) {
+		if (value instanceof String && ((String) value).length() <= maximumInternedLength) {
+			return dataInterner.intern((String) value);
+		}
+		return value;
 	}
 
 	public void accept(final ContentVisitor visitor) {
-		final List<ContentNode> parents = Collections.emptyList();
-		accept(visitor, parents);
+		accept(visitor, new ParentStack());
 	}
 
 	public String getRelativePath(final ContentNode target) {
@@ -2,6 +2,10 @@ package com.vdxp.ssg.content;
 
 import java.util.List;
 
+/**
+ * The {@code parents} list passed to each visit is the path from the root down to the node's parent. It is shared by
+ * the whole traversal and changes as the traversal moves on, so copy it if it is needed after the visit returns.
+ */
 public interface ContentVisitor {
 	/** Called by each content directory node. Do not modify the content tree structure. */
 	public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents);
@@ -0,0 +1,123 @@
+package com.vdxp.ssg.content;
+
+/**
+ * Where the YAML front matter of a text is: between a {@code ---} line at the very start of the text and the next
+ * {@code ---} line, with the whitespace after either fence skipped. The text is split exactly where
+ * {@code text.split("(?m)^---$\\s*", 3)} splits it, without a regular expression, and without looking past the
+ * closing fence.
+ */
+public final class FrontMatter {
+
+	/** What {@link #scan(CharSequence, boolean)} returns when the start of a text is not enough to tell */
+	public static final FrontMatter incomplete = new FrontMatter(null, -1, -1, -1);
+
+	private static final String fence = "---";
+
+	private final CharSequence text;
+	public final int yamlStart;
+	public final int yamlEnd;
+	public final int bodyStart;
+
+	private FrontMatter(final CharSequence text, final int yamlStart, final int yamlEnd, final int bodyStart) {
+		this.text = text;
+		this.yamlStart = yamlStart;
+		this.yamlEnd = yamlEnd;
+		this.bodyStart = bodyStart;
+	}
+
+	/** Returns the front matter of {@code text}, or null if it does not start with any. */
+	public static FrontMatter scan(final CharSequence text) {
+		return scan(text, true);
+	}
+
+	/**
+	 * Returns the front matter of a text that starts with {@code text}, or null if it does not start with any. Unless
+	 * {@code whole} is set, {@code text} may be followed by more, and {@link #incomplete} is returned if that could
+	 * still change the answer.
+	 */
+	public static FrontMatter scan(final CharSequence text, final boolean whole) {
+		final int opening = fenceAt(text, 0, whole);
+		if (opening <= 0) {
+			return opening == 0 ? null : incomplete;
+		}
+		final int yamlStart = skipWhitespace(text, fence.length());
+		if (!whole && yamlStart == text.length()) {
+			return incomplete;
+		}
+
+		for (int position = yamlStart; position < text.length(); position++) {
+			if (!isLineStart(text, position)) {
+				continue;
+			}
+			final int closing = fenceAt(text, position, whole);
+			if (closing < 0) {
+				return incomplete;
+			}
+			if (closing > 0) {
+				final int bodyStart = skipWhitespace(text, position + fence.length());
+				if (!whole && bodyStart == text.length()) {
+					return incomplete;
+				}
+				return new FrontMatter(text, yamlStart, position, bodyStart);
+			}
+		}
+		return whole ? null : incomplete;
+	}
+
+	public CharSequence getYaml() {
+		return text.subSequence(yamlStart, yamlEnd);
+	}
+
+	/** Returns the front matter with its fences, everything up to the body. */
+	public CharSequence getHeader() {
+		return text.subSequence(0, bodyStart);
+	}
+
+	/** Returns everything after the front matter; only meaningful if the whole text was scanned. */
+	public CharSequence getBody() {
+		return text.subSequence(bodyStart, text.length());
+	}
+
+	/** Returns 1 if a fence line starts at {@code position}, 0 if not, and -1 if the text ends too soon to tell. */
+	private static int fenceAt(final CharSequence text, final int position, final boolean whole) {
+		final int end = position + fence.length();
+		for (int i = position; i < end; i++) {
+			if (i == text.length()) {
+				return whole ? 0 : -1;
+			}
+			if (text.charAt(i) != '-') {
+				return 0;
+			}
+		}
+		if (end == text.length()) {
+			return whole ? 1 : -1;
+		}
+		return isLineTerminator(text.charAt(end)) ? 1 : 0;
+	}
+
+	/** Where {@code ^} matches in multiline mode: after a line terminator, but not between \r and \n. */
+	private static boolean isLineStart(final CharSequence text, final int position) {
+		if (position == 0) {
+			return true;
+		}
+		final char previous = text.charAt(position - 1);
+		return isLineTerminator(previous) && !(previous == '\r' && text.charAt(position) == '\n');
+	}
+
+	private static boolean isLineTerminator(final char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	/** Skips what {@code \s} matches. */
+	private static int skipWhitespace(final CharSequence text, final int start) {
+		int position = start;
+		while (position < text.length()) {
+			final char c = text.charAt(position);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\u000b' && c != '\f' && c != '\r') {
+				break;
+			}
+			position++;
+		}
+		return position;
+	}
+}
@@ -0,0 +1,203 @@
+package com.vdxp.ssg.content;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps page text off the Java heap. Text is encoded as UTF-8 into large direct buffers ("arenas"). Once the arenas
+ * add up to {@link Options#memoryBudget}, new arenas are mapped from a temporary file instead, and the operating
+ * system decides how much of that stays in memory. Each page keeps only a {@link Utf8Text} over its bytes, which is
+ * written to the output straight from the arena.
+ *
+ * Nothing is ever freed from an arena; the store is meant to live for one build. Closing it deletes the temporary
+ * file, but text that was already stored stays readable until it is garbage collected.
+ */
+public class PageStore implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(PageStore.class);
+
+	private static final ThreadLocal<CharsetEncoder> utf8Encoder = new ThreadLocal<CharsetEncoder>() {
+		@Override
+		protected CharsetEncoder initialValue() {
+			return StandardCharsets.UTF_8.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+	};
+
+	private final Options options;
+
+	private ByteBuffer arena;
+	private long directBytes = 0;
+	private long storedBytes = 0;
+	private int storedPages = 0;
+
+	private File spillFile;
+	private FileChannel spillChannel;
+	private long spillBytes = 0;
+
+	public PageStore() {
+		this(new Options());
+	}
+
+	public PageStore(final Options options) {
+		this.options = options;
+	}
+
+	/**
+	 * Copies the text into the store and returns it as it is stored. Text that is already off the heap, such as a
+	 * page stored by an earlier stage, is returned as it is. Null stays null.
+	 */
+	public Utf8Text store(final CharSequence text) throws IOException {
+		if (text == null) {
+			return null;
+		}
+		if (text instanceof Utf8Text) {
+			final Utf8Text utf8Text = (Utf8Text) text;
+			if (utf8Text.getBytes().isDirect()) {
+				return utf8Text;
+			}
+			final ByteBuffer region = allocate(utf8Text.byteLength());
+			region.duplicate().put(utf8Text.getBytes());
+			return utf8Text.withBytes(region);
+		}
+
+		final CharBuffer chars = CharBuffer.wrap(text);
+		final ByteBuffer region = allocate(encodedLength(text));
+		final CharsetEncoder encoder = utf8Encoder.get();
+		encoder.reset();
+		final ByteBuffer target = region.duplicate();
+		CoderResult result = encoder.encode(chars, target, true);
+		if (!result.isUnderflow()) {
+			result.throwException();
+		}
+		result = encoder.flush(target);
+		if (!result.isUnderflow()) {
+			result.throwException();
+		}
+		return Utf8Text.wrap(region);
+	}
+
+	/**
+	 * Reserves {@code size} bytes. Only this is done under the lock; the caller fills the region it gets back, which
+	 * no other caller can see.
+	 */
+	private synchronized ByteBuffer allocate(final int size) throws IOException {
+		if (arena == null || arena.remaining() < size) {
+			arena = newArena(size);
+		}
+		final ByteBuffer region = arena.slice();
+		region.limit(size);
+		arena.position(arena.position() + size);
+		storedBytes += size;
+		storedPages++;
+		return region;
+	}
+
+	/** Returns an arena of at least {@code size} bytes, of what is left of the memory budget if that is enough. */
+	private ByteBuffer newArena(final int size) throws IOException {
+		final int directSize = (int) Math.max(size, Math.min(options.arenaSize, options.memoryBudget - directBytes));
+		if (directBytes + directSize <= options.memoryBudget) {
+			try {
+				final ByteBuffer directArena = ByteBuffer.allocateDirect(directSize);
+				directBytes += directSize;
+				return directArena;
+			} catch (final OutOfMemoryError e) {
+				log.warn("Out of direct memory after {} MB, storing pages in a temporary file from now on", directBytes >> 20);
+				directBytes = options.memoryBudget;
+			}
+		}
+
+		if (spillChannel == null) {
+			spillFile = File.createTempFile("pages", ".store", options.spillDirectory);
+			spillChannel = new RandomAccessFile(spillFile, "rw").getChannel();
+			log.info("Memory budget of {} MB used up, storing pages in {}", options.memoryBudget >> 20, spillFile);
+		}
+		final int mappedSize = Math.max(size, options.arenaSize);
+		final ByteBuffer mappedArena = spillChannel.map(FileChannel.MapMode.READ_WRITE, spillBytes, mappedSize);
+		spillBytes += mappedSize;
+		return mappedArena;
+	}
+
+	public synchronized long getStoredBytes() {
+		return storedBytes;
+	}
+
+	public synchronized long getSpilledBytes() {
+		return spillBytes;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		log.info("Stored {} pages, {} MB, {} MB of it in memory and {} MB in a temporary file",
+				storedPages, storedBytes >> 20, directBytes >> 20, spillBytes >> 20);
+		arena = null;
+		if (spillChannel != null) {
+			spillChannel.close();
+			spillChannel = null;
+			if (!spillFile.delete()) {
+				log.debug("Could not delete {} yet, deleting it on exit", spillFile);
+				spillFile.deleteOnExit();
+			}
+		}
+	}
+
+	/** The number of bytes {@code text} takes as UTF-8, with unpaired surrogates replaced by one byte. */
+	private static int encodedLength(final CharSequence text) {
+		int length = 0;
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				length++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	public static class Options {
+		/** Bytes of direct memory to fill before pages go to a temporary file */
+		public final long memoryBudget;
+		/** Bytes in each arena; pages larger than this get an arena of their own */
+		public final int arenaSize;
+		/** Where the temporary file goes; null for the system's temporary directory */
+		public final File spillDirectory;
+
+		private static final long defaultMemoryBudget = 1024L * 1024 * 1024;
+		private static final int defaultArenaSize = 16 * 1024 * 1024;
+
+		public Options() {
+			this(defaultMemoryBudget);
+		}
+
+		public Options(final long memoryBudget) {
+			this(memoryBudget, defaultArenaSize, null);
+		}
+
+		public Options(final long memoryBudget, final int arenaSize, final File spillDirectory) {
+			this.memoryBudget = memoryBudget;
+			this.arenaSize = arenaSize;
+			this.spillDirectory = spillDirectory;
+		}
+	}
+}
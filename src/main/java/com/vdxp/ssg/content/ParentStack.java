@@ -0,0 +1,42 @@
+package com.vdxp.ssg.content;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The directories above the node being visited, outermost first. One stack is shared by a whole traversal: directories
+ * push themselves before visiting their children and pop themselves afterwards. Visitors see it as a read-only list.
+ */
+class ParentStack extends AbstractList<ContentNode> implements RandomAccess {
+
+	private final ArrayList<ContentNode> nodes;
+
+	public ParentStack() {
+		this.nodes = new ArrayList<ContentNode>();
+	}
+
+	public ParentStack(final List<ContentNode> initialNodes) {
+		this.nodes = new ArrayList<ContentNode>(initialNodes);
+	}
+
+	public void push(final ContentNode node) {
+		nodes.add(node);
+	}
+
+	public void pop() {
+		nodes.remove(nodes.size() - 1);
+	}
+
+	@Override
+	public ContentNode get(final int index) {
+		return nodes.get(index);
+	}
+
+	@Override
+	public int size() {
+		return nodes.size();
+	}
+
+}
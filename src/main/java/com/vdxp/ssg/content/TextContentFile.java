@@ -1,28 +1,224 @@
 package com.vdxp.ssg.content;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.ByteArrayInputStream;
+import java.io.CharArrayWriter;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+/**
+ * A file whose contents are held as text, and written out as UTF-8.
+ *
+ * The text may be any {@link CharSequence}. Processors that can keep it as {@link Utf8Text} do, so it takes a byte
+ * per ASCII character, parts of it can be sliced off without copying, and it is written out without being encoded
+ * again. {@link #getText} turns it into a string for libraries that need one.
+ *
+ * The last step of turning the text into its final form may be left to a {@link TextRenderer}, so that it writes
+ * straight to the output instead of building the whole result as another string first. {@link #writeTo} streams the
+ * rendered form without keeping it; {@link #getText} renders it into the text once and keeps it, so the file reads the
+ * same either way.
+ */
 public abstract class TextContentFile extends ContentFile {
 
-	private String text;
+	private static final Logger log = LoggerFactory.getLogger(TextContentFile.class);
+
+	private static final int bufferSize = 8192;
+
+	/** Encoders are not thread-safe and cost something to set up, so every writing thread keeps one */
+	private static final ThreadLocal<CharsetEncoder> utf8Encoder = new ThreadLocal<CharsetEncoder>() {
+		@Override
+		protected CharsetEncoder initialValue() {
+			return StandardCharsets.UTF_8.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+	};
+
+	private static final ThreadLocal<RenderBuffer> renderBuffers = new ThreadLocal<RenderBuffer>() {
+		@Override
+		protected RenderBuffer initialValue() {
+			return new RenderBuffer();
+		}
+	};
+
+	private static final ThreadLocal<ByteBuffer> encodeBuffer = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocate(bufferSize);
+		}
+	};
+
+	private CharSequence text;
+	private TextRenderer renderer;
 
 	public TextContentFile(final String basename, final String... extensions) {
 		super(basename, extensions);
 	}
 
+	/** Returns the text in its final form as a string, rendering it first if rendering was deferred. */
 	public String getText() {
+		return toString(getTextSequence());
+	}
+
+	/**
+	 * Returns the text in its final form as it is held, rendering it first if rendering was deferred. Unlike
+	 * {@link #getText}, this does not decode text held as {@link Utf8Text}.
+	 */
+	public synchronized CharSequence getTextSequence() {
+		if (renderer != null) {
+			final StringWriter writer = new StringWriter((text != null ? text.length() : 0) + bufferSize);
+			try {
+				renderer.render(toString(text), writer);
+				text = Utf8Text.encode(writer.getBuffer());
+			} catch (final IOException e) {
+				log.warn("Could not render {}", this, e);
+			}
+			renderer = null;
+		}
 		return text;
 	}
 
-	public void setText(final String text) {
+	/** Replaces the text, and drops any deferred rendering. */
+	public synchronized void setText(final CharSequence text) {
 		this.text = text;
+		this.renderer = null;
+	}
+
+	/**
+	 * Leaves the final rendering of the text to {@code renderer}, which runs when the text is written out. Rendering
+	 * that was already deferred is done first, so renderers apply in the order they were set.
+	 */
+	public synchronized void setRenderer(final TextRenderer renderer) {
+		getTextSequence();
+		this.renderer = renderer;
+	}
+
+	public synchronized boolean isRendered() {
+		return renderer == null;
+	}
+
+	/**
+	 * Finds the front matter at the start of the text. Returns null if there is none. Files that are read from
+	 * somewhere may find it without loading the rest of their text.
+	 */
+	public FrontMatter readFrontMatter() {
+		return FrontMatter.scan(getTextSequence());
+	}
+
+	/** Drops the front matter found by {@link #readFrontMatter()} from the text. */
+	public void skipFrontMatter(final FrontMatter frontMatter) {
+		setText(frontMatter.getBody());
 	}
 
 	@Override
 	public InputStream getContents() {
-		return new ByteArrayInputStream(text.getBytes());
+		final CharSequence contents = getTextSequence();
+		if (contents instanceof Utf8Text) {
+			return ((Utf8Text) contents).openStream();
+		}
+		return new ByteArrayInputStream(contents.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Writes the text in its final form, rendering it straight into {@code writer} if rendering was deferred. */
+	public void writeTo(final Writer writer) throws IOException {
+		final CharSequence deferredText;
+		final TextRenderer deferredRenderer;
+		synchronized (this) {
+			deferredText = text;
+			deferredRenderer = renderer;
+		}
+		if (deferredRenderer != null) {
+			deferredRenderer.render(toString(deferredText), writer);
+		} else {
+			writer.append(getTextSequence());
+		}
+	}
+
+	/**
+	 * Writes the text in its final form as UTF-8, without encoding all of it into one array first. Deferred rendering
+	 * goes into a character buffer that the writing thread reuses from file to file, so no string is made of the
+	 * rendered page. Text already held as {@link Utf8Text} is written as it is.
+	 */
+	public void writeTo(final WritableByteChannel channel) throws IOException {
+		if (isRendered()) {
+			final CharSequence renderedText = getTextSequence();
+			if (renderedText instanceof Utf8Text) {
+				((Utf8Text) renderedText).writeTo(channel);
+			} else {
+				encode(CharBuffer.wrap(renderedText), channel);
+			}
+			return;
+		}
+
+		final RenderBuffer renderBuffer = renderBuffers.get();
+		renderBuffer.reset();
+		try {
+			writeTo(renderBuffer);
+			encode(renderBuffer.getChars(), channel);
+		} finally {
+			renderBuffer.trim();
+		}
+	}
+
+	private static String toString(final CharSequence text) {
+		return text != null ? text.toString() : null;
+	}
+
+	private static void encode(final CharBuffer chars, final WritableByteChannel channel) throws IOException {
+		final CharsetEncoder encoder = utf8Encoder.get();
+		encoder.reset();
+		final ByteBuffer buffer = encodeBuffer.get();
+		buffer.clear();
+		CoderResult result;
+		do {
+			result = encoder.encode(chars, buffer, true);
+			drain(buffer, channel);
+		} while (result.isOverflow());
+		do {
+			result = encoder.flush(buffer);
+			drain(buffer, channel);
+		} while (result.isOverflow());
+	}
+
+	/** A character array writer whose contents can be read without copying them. */
+	private static class RenderBuffer extends CharArrayWriter {
+		/** Larger buffers are dropped after use rather than kept by the thread for good */
+		private static final int maximumRetainedSize = 1024 * 1024;
+
+		public RenderBuffer() {
+			super(bufferSize);
+		}
+
+		public CharBuffer getChars() {
+			return CharBuffer.wrap(buf, 0, count);
+		}
+
+		public void trim() {
+			reset();
+			if (buf.length > maximumRetainedSize) {
+				buf = new char[bufferSize];
+			}
+		}
+	}
+
+	private static void drain(final ByteBuffer buffer, final WritableByteChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
 	}
 
 	@Override
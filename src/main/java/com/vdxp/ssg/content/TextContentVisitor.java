@@ -0,0 +1,18 @@
+package com.vdxp.ssg.content;
+
+import java.util.List;
+
+/** Base class for visitors that only look at text content files. */
+public abstract class TextContentVisitor implements ContentVisitor {
+
+	@Override
+	public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
+		/* Do nothing */
+	}
+
+	@Override
+	public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
+		/* Do nothing */
+	}
+
+}
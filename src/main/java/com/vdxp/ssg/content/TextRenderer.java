@@ -0,0 +1,9 @@
+package com.vdxp.ssg.content;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/** Turns the text of a file into its final form, writing it out as it goes. */
+public interface TextRenderer {
+	public void render(final String text, final Writer writer) throws IOException;
+}
@@ -0,0 +1,351 @@
+package com.vdxp.ssg.content;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text kept as UTF-8 bytes, which can be read as a {@link CharSequence} without decoding it into a {@link String}.
+ * Slices share the bytes of the text they are taken from, so stripping a header or taking a snippet copies nothing,
+ * and the bytes can be written out as they are.
+ *
+ * Text that is all ASCII is indexed directly. Other text keeps the byte offset of every 64th character, so
+ * {@link #charAt} only ever decodes a short run of characters.
+ *
+ * The bytes must not be changed once they are wrapped.
+ */
+public final class Utf8Text implements CharSequence {
+
+	private static final int checkpointShift = 6;
+
+	/** Read-only, from position 0 to the end of the text */
+	private final ByteBuffer bytes;
+	private final int length;
+	/** Byte offset and character index of the character at or just before every 64th character; null for ASCII */
+	private final int[] checkpoints;
+
+	private Utf8Text(final ByteBuffer bytes, final int length, final int[] checkpoints) {
+		this.bytes = bytes;
+		this.length = length;
+		this.checkpoints = checkpoints;
+	}
+
+	/** Wraps the bytes between the buffer's position and limit, which must be well-formed UTF-8. */
+	public static Utf8Text wrap(final ByteBuffer buffer) throws CharacterCodingException {
+		final ByteBuffer bytes = buffer.slice().asReadOnlyBuffer();
+		final int byteLength = bytes.limit();
+
+		int offset = 0;
+		while (offset < byteLength && bytes.get(offset) >= 0) {
+			offset++;
+		}
+		if (offset == byteLength) {
+			return new Utf8Text(bytes, byteLength, null);
+		}
+
+		/* The characters before the first non-ASCII byte are one byte each */
+		int[] checkpoints = new int[2 * (byteLength >> checkpointShift) + 2];
+		int checkpointCount = 0;
+		for (int index = 0; index < offset; index += 1 << checkpointShift) {
+			checkpoints[checkpointCount++] = index;
+			checkpoints[checkpointCount++] = index;
+		}
+
+		int index = offset;
+		while (offset < byteLength) {
+			final int codePoint = decode(bytes, offset);
+			if (codePoint < 0) {
+				throw new CharacterCodingException();
+			}
+			final int chars = Character.charCount(codePoint);
+			if (index + chars - 1 >> checkpointShift == checkpointCount >> 1) {
+				if (checkpointCount == checkpoints.length) {
+					final int[] grown = new int[checkpoints.length * 2];
+					System.arraycopy(checkpoints, 0, grown, 0, checkpointCount);
+					checkpoints = grown;
+				}
+				checkpoints[checkpointCount++] = offset;
+				checkpoints[checkpointCount++] = index;
+			}
+			offset += encodedLength(codePoint);
+			index += chars;
+		}
+
+		final int[] trimmed = new int[checkpointCount];
+		System.arraycopy(checkpoints, 0, trimmed, 0, checkpointCount);
+		return new Utf8Text(bytes, index, trimmed);
+	}
+
+	/** Wraps the bytes, which must be well-formed UTF-8. */
+	public static Utf8Text wrap(final byte[] bytes) throws CharacterCodingException {
+		return wrap(ByteBuffer.wrap(bytes));
+	}
+
+	/** Encodes text as UTF-8, replacing unpaired surrogates as {@link String#getBytes} does. */
+	public static Utf8Text encode(final CharSequence text) {
+		if (text instanceof Utf8Text) {
+			return (Utf8Text) text;
+		}
+		try {
+			return wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (final CharacterCodingException e) {
+			throw new IllegalStateException("UTF-8 encoding produced malformed UTF-8", e);
+		}
+	}
+
+	/** Returns the same text over a copy of its bytes, without scanning them again. */
+	Utf8Text withBytes(final ByteBuffer copy) {
+		return new Utf8Text(copy.slice().asReadOnlyBuffer(), length, checkpoints);
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	public int byteLength() {
+		return bytes.limit();
+	}
+
+	/** Returns the bytes as a read-only buffer from position 0 to the end of the text. */
+	public ByteBuffer getBytes() {
+		return bytes.duplicate();
+	}
+
+	@Override
+	public char charAt(final int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index " + index + ", length " + length);
+		}
+		if (checkpoints == null) {
+			return (char) bytes.get(index);
+		}
+
+		final int checkpoint = 2 * (index >> checkpointShift);
+		int offset = checkpoints[checkpoint];
+		int current = checkpoints[checkpoint + 1];
+		while (true) {
+			final int codePoint = decode(bytes, offset);
+			if (Character.isBmpCodePoint(codePoint)) {
+				if (current == index) {
+					return (char) codePoint;
+				}
+				current++;
+			} else {
+				if (current == index) {
+					return Character.highSurrogate(codePoint);
+				}
+				if (current + 1 == index) {
+					return Character.lowSurrogate(codePoint);
+				}
+				current += 2;
+			}
+			offset += encodedLength(codePoint);
+		}
+	}
+
+	/**
+	 * Returns the characters from {@code start} to {@code end}. The slice shares these bytes, unless an end falls in
+	 * the middle of a surrogate pair, which has no UTF-8 bytes of its own; then the characters are copied into a
+	 * string.
+	 */
+	@Override
+	public CharSequence subSequence(final int start, final int end) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("Start " + start + ", end " + end + ", length " + length);
+		}
+		final int startOffset = byteOffset(start);
+		final int endOffset = byteOffset(end);
+		if (startOffset < 0 || endOffset < 0) {
+			return toString().substring(start, end);
+		}
+		return slice(startOffset, endOffset);
+	}
+
+	/** Returns the text between two byte offsets, which must not fall inside a character, sharing these bytes. */
+	public Utf8Text slice(final int startOffset, final int endOffset) {
+		final ByteBuffer sliceBytes = bytes.duplicate();
+		sliceBytes.position(startOffset);
+		sliceBytes.limit(endOffset);
+		if (checkpoints == null) {
+			return new Utf8Text(sliceBytes.slice(), endOffset - startOffset, null);
+		}
+		try {
+			return wrap(sliceBytes);
+		} catch (final CharacterCodingException e) {
+			throw new IllegalArgumentException("Slice " + startOffset + " to " + endOffset + " splits a character", e);
+		}
+	}
+
+	/** Returns the index of the first occurrence of {@code target}, or -1. */
+	public int indexOf(final String target) {
+		final byte[] targetBytes = target.getBytes(StandardCharsets.UTF_8);
+		final int lastStart = bytes.limit() - targetBytes.length;
+		for (int offset = 0; offset <= lastStart; offset++) {
+			int matched = 0;
+			while (matched < targetBytes.length && bytes.get(offset + matched) == targetBytes[matched]) {
+				matched++;
+			}
+			if (matched == targetBytes.length) {
+				return charIndex(offset);
+			}
+		}
+		return -1;
+	}
+
+	public void writeTo(final WritableByteChannel channel) throws IOException {
+		final ByteBuffer source = bytes.duplicate();
+		while (source.hasRemaining()) {
+			channel.write(source);
+		}
+	}
+
+	public InputStream openStream() {
+		final ByteBuffer source = bytes.duplicate();
+		return new InputStream() {
+			@Override
+			public int read() {
+				return source.hasRemaining() ? source.get() & 0xff : -1;
+			}
+
+			@Override
+			public int read(final byte[] buffer, final int offset, final int count) {
+				if (count == 0) {
+					return 0;
+				}
+				if (!source.hasRemaining()) {
+					return -1;
+				}
+				final int read = Math.min(count, source.remaining());
+				source.get(buffer, offset, read);
+				return read;
+			}
+
+			@Override
+			public int available() {
+				return source.remaining();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return StandardCharsets.UTF_8.decode(bytes.duplicate()).toString();
+	}
+
+	/** Texts are equal when their bytes are, so a Utf8Text never equals a String with the same characters. */
+	@Override
+	public boolean equals(final Object other) {
+		return other instanceof Utf8Text && bytes.equals(((Utf8Text) other).bytes);
+	}
+
+	@Override
+	public int hashCode() {
+		return bytes.hashCode();
+	}
+
+	/** Returns the byte offset of a character index, or -1 if it is the second half of a surrogate pair. */
+	private int byteOffset(final int index) {
+		if (checkpoints == null) {
+			return index;
+		}
+		if (index == length) {
+			return bytes.limit();
+		}
+
+		final int checkpoint = 2 * (index >> checkpointShift);
+		int offset = checkpoints[checkpoint];
+		int current = checkpoints[checkpoint + 1];
+		while (current < index) {
+			final int codePoint = decode(bytes, offset);
+			current += Character.charCount(codePoint);
+			offset += encodedLength(codePoint);
+		}
+		return current == index ? offset : -1;
+	}
+
+	/** Returns the character index of a byte offset at which a character starts. */
+	private int charIndex(final int offset) {
+		if (checkpoints == null) {
+			return offset;
+		}
+
+		int low = 0;
+		int high = checkpoints.length / 2 - 1;
+		while (low < high) {
+			final int middle = (low + high + 1) >>> 1;
+			if (checkpoints[2 * middle] <= offset) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		int current = checkpoints[2 * low];
+		int index = checkpoints[2 * low + 1];
+		while (current < offset) {
+			final int codePoint = decode(bytes, current);
+			index += Character.charCount(codePoint);
+			current += encodedLength(codePoint);
+		}
+		return index;
+	}
+
+	/** Decodes the code point starting at {@code offset}, or returns -1 if the bytes there are not well-formed. */
+	private static int decode(final ByteBuffer bytes, final int offset) {
+		final int first = bytes.get(offset) & 0xff;
+		if (first < 0x80) {
+			return first;
+		}
+
+		final int continuationBytes;
+		final int minimum;
+		int codePoint;
+		if ((first & 0xe0) == 0xc0) {
+			continuationBytes = 1;
+			minimum = 0x80;
+			codePoint = first & 0x1f;
+		} else if ((first & 0xf0) == 0xe0) {
+			continuationBytes = 2;
+			minimum = 0x800;
+			codePoint = first & 0x0f;
+		} else if ((first & 0xf8) == 0xf0) {
+			continuationBytes = 3;
+			minimum = 0x10000;
+			codePoint = first & 0x07;
+		} else {
+			return -1;
+		}
+		if (offset + continuationBytes >= bytes.limit()) {
+			return -1;
+		}
+
+		for (int i = 1; i <= continuationBytes; i++) {
+			final int next = bytes.get(offset + i) & 0xff;
+			if ((next & 0xc0) != 0x80) {
+				return -1;
+			}
+			codePoint = codePoint << 6 | next & 0x3f;
+		}
+		if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT
+				|| codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+			return -1;
+		}
+		return codePoint;
+	}
+
+	private static int encodedLength(final int codePoint) {
+		if (codePoint < 0x80) {
+			return 1;
+		}
+		if (codePoint < 0x800) {
+			return 2;
+		}
+		if (codePoint < 0x10000) {
+			return 3;
+		}
+		return 4;
+	}
+}
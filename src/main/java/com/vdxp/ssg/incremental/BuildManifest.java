@@ -0,0 +1,153 @@
+package com.vdxp.ssg.incremental;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records what the previous build read and wrote, so the next build can tell which outputs are out of date.
+ *
+ * Inputs are keyed by source file path and outputs by the content node that produced them (for example
+ * {@code site/about.md} or {@code blog/page/2/index}). The manifest is a tab-separated text file.
+ */
+public class BuildManifest {
+
+	private static final Logger log = LoggerFactory.getLogger(BuildManifest.class);
+
+	private static final String header = "ssg-manifest\t1";
+
+	private final Map<String, InputRecord> inputs = new TreeMap<String, InputRecord>();
+	private final Map<String, OutputRecord> outputs = new TreeMap<String, OutputRecord>();
+
+	public static BuildManifest load(final File file) {
+		final BuildManifest manifest = new BuildManifest();
+		if (!file.isFile()) {
+			log.info("No build manifest at {}, everything will be built", file.getPath());
+			return manifest;
+		}
+
+		final List<String> lines;
+		try {
+			lines = Files.readAllLines(file.toPath(), Charsets.UTF_8);
+		} catch (final IOException e) {
+			log.warn("Could not read build manifest {}, everything will be built", file.getAbsolutePath(), e);
+			return manifest;
+		}
+
+		if (lines.isEmpty() || !header.equals(lines.get(0))) {
+			log.warn("Ignoring build manifest {} in an unknown format", file.getAbsolutePath());
+			return manifest;
+		}
+
+		for (final String line : lines.subList(1, lines.size())) {
+			final String[] fields = line.split("\t");
+			try {
+				if ("input".equals(fields[0]) && fields.length == 5) {
+					manifest.putInput(fields[1], new InputRecord(Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4]));
+				} else if ("output".equals(fields[0]) && fields.length >= 4) {
+					final List<String> dependencies = Arrays.asList(fields).subList(4, fields.length);
+					manifest.putOutput(fields[1], new OutputRecord(fields[2], fields[3], dependencies));
+				} else {
+					log.warn("Ignoring unexpected line in build manifest {}: {}", file.getPath(), line);
+				}
+			} catch (final NumberFormatException e) {
+				log.warn("Ignoring unexpected line in build manifest {}: {}", file.getPath(), line);
+			}
+		}
+
+		return manifest;
+	}
+
+	/** Writes the manifest to a temporary file first, so an interrupted build never leaves a truncated manifest. */
+	public void save(final File file) throws IOException {
+		final File temporaryFile = new File(file.getPath() + ".tmp");
+		final Writer writer = Files.newBufferedWriter(temporaryFile.toPath(), Charsets.UTF_8);
+		try {
+			writer.write(header);
+			writer.write('\n');
+			for (final Map.Entry<String, InputRecord> input : inputs.entrySet()) {
+				final InputRecord record = input.getValue();
+				Joiner.on('\t').appendTo(writer, "input", input.getKey(), record.size, record.lastModified, record.hash);
+				writer.write('\n');
+			}
+			for (final Map.Entry<String, OutputRecord> output : outputs.entrySet()) {
+				final OutputRecord record = output.getValue();
+				Joiner.on('\t').appendTo(writer, "output", output.getKey(), record.outputPath, record.fingerprint);
+				for (final String dependency : record.dependencies) {
+					writer.write('\t');
+					writer.write(dependency);
+				}
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+
+		Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public InputRecord getInput(final String path) {
+		return inputs.get(path);
+	}
+
+	public void putInput(final String path, final InputRecord record) {
+		inputs.put(path, record);
+	}
+
+	public OutputRecord getOutput(final String key) {
+		return outputs.get(key);
+	}
+
+	public void putOutput(final String key, final OutputRecord record) {
+		outputs.put(key, record);
+	}
+
+	public void removeOutput(final String key) {
+		outputs.remove(key);
+	}
+
+	public Collection<OutputRecord> getOutputs() {
+		return outputs.values();
+	}
+
+	public static class InputRecord {
+		public final long size;
+		public final long lastModified;
+		public final String hash;
+
+		public InputRecord(final long size, final long lastModified, final String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+
+	public static class OutputRecord {
+		/** Path of the written file, relative to the working directory */
+		public final String outputPath;
+		/** Hash over everything the output was rendered from */
+		public final String fingerprint;
+		/** Paths of the inputs the output was rendered from: its source, its layouts and any embedded posts */
+		public final List<String> dependencies;
+
+		public OutputRecord(final String outputPath, final String fingerprint, final List<String> dependencies) {
+			this.outputPath = outputPath;
+			this.fingerprint = fingerprint;
+			this.dependencies = ImmutableList.copyOf(dependencies);
+		}
+	}
+
+}
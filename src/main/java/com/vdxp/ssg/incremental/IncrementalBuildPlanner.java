@@ -0,0 +1,377 @@
+package com.vdxp.ssg.incremental;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Predicate;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.vdxp.ssg.content.BinaryContentFile;
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentFile;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.content.ContentVisitor;
+import com.vdxp.ssg.content.TextContentFile;
+import com.vdxp.ssg.processor.BlogPagesGeneratorProcessor;
+import com.vdxp.ssg.processor.FileInputProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Works out which content nodes need to be rendered and written again, by comparing what each output is rendered
+ * from against the previous build's {@link BuildManifest}.
+ *
+ * An output is out of date when its fingerprint changed or its file is missing. The fingerprint of a page covers
+ * its source file and every layout in its layout chain. The fingerprint of a blog index page covers its position,
+ * its layout chain and the source of every post it shows, so a change to a post's date or snippet invalidates the
+ * pages it appears on (or moves to). Data that does not come from a source file, such as the layouts assigned in
+ * the Driver, is assumed not to change between builds.
+ *
+ * Typical use: {@link #planContentRoot} each content root once its front matter and dates are parsed,
+ * {@link #planBlogPages} before Markdown runs on the blog, {@link #attachBlogPages} once the blog pages exist,
+ * then run the remaining processors with {@link #getMarkdownNodes()} and {@link #getDirtyNodes()} as filters
+ * and finish with {@link #recordOutputs}, then {@link #discardOutputs} whatever could not be written.
+ */
+public class IncrementalBuildPlanner {
+
+	private static final Logger log = LoggerFactory.getLogger(IncrementalBuildPlanner.class);
+
+	private final BuildManifest previous;
+	private final BuildManifest current = new BuildManifest();
+	private final ContentDirectory layoutContentTree;
+
+	/*
+	 * Content nodes compare by identity. These are concurrent because the predicates below may be consulted by one
+	 * content root's processors while another content root is being planned.
+	 */
+	private final Map<ContentNode, PlannedOutput> plannedOutputs = new ConcurrentHashMap<ContentNode, PlannedOutput>();
+	private final Set<ContentNode> dirtyNodes = Collections.newSetFromMap(new ConcurrentHashMap<ContentNode, Boolean>());
+	private final Set<ContentNode> markdownNodes = Collections.newSetFromMap(new ConcurrentHashMap<ContentNode, Boolean>());
+	private final List<PlannedOutput> pendingBlogPages = new ArrayList<PlannedOutput>();
+
+	public IncrementalBuildPlanner(final BuildManifest previous, final ContentDirectory layoutContentTree) {
+		this.previous = previous;
+		this.layoutContentTree = layoutContentTree;
+	}
+
+	/** Fingerprints every file under a content root that was read by {@link FileInputProcessor}. */
+	public void planContentRoot(final ContentDirectory contentRoot) {
+		contentRoot.accept(new PlanningVisitor());
+	}
+
+	/** Fingerprints the blog index pages that {@link BlogPagesGeneratorProcessor} is about to generate. */
+	public void planBlogPages(final ContentDirectory blogContentRoot, final BlogPagesGeneratorProcessor.Options options) {
+		final List<List<TextContentFile>> pageSlices = new BlogPagesGeneratorProcessor(options).paginate(blogContentRoot);
+		final List<String> layoutChain = getLayoutChain(options.layout);
+
+		for (int pageNumber = 1; pageNumber <= pageSlices.size(); pageNumber++) {
+			final String pagePath = options.getPagePath(pageNumber) + ".html";
+			final String key = blogContentRoot.getName() + "/" + pagePath;
+			final List<String> dependencies = new ArrayList<String>(layoutChain);
+
+			final Hasher hasher = Hashing.sha1().newHasher();
+			hasher.putString(key, Charsets.UTF_8);
+			hasher.putInt(pageNumber);
+			hasher.putInt(pageSlices.size());
+			for (final TextContentFile post : pageSlices.get(pageNumber - 1)) {
+				final File sourceFile = getSourceFile(post);
+				hasher.putString(getKey(post), Charsets.UTF_8);
+				if (sourceFile != null) {
+					hasher.putString(hashInput(sourceFile), Charsets.UTF_8);
+					dependencies.add(sourceFile.getPath());
+				}
+			}
+			for (final String layoutPath : layoutChain) {
+				hasher.putString(hashInput(new File(layoutPath)), Charsets.UTF_8);
+			}
+
+			final PlannedOutput page = new PlannedOutput(key, hasher.hash().toString(), dependencies);
+			page.pagePath = pagePath;
+			pendingBlogPages.add(page);
+
+			if (page.isDirty()) {
+				log.debug("Blog page {} is out of date", key);
+				markdownNodes.addAll(pageSlices.get(pageNumber - 1));
+			}
+		}
+	}
+
+	/** Associates the blog pages planned in {@link #planBlogPages} with the nodes that were generated for them. */
+	public void attachBlogPages(final ContentDirectory blogContentRoot) {
+		for (final PlannedOutput page : pendingBlogPages) {
+			final ContentNode pageNode = blogContentRoot.getPath(page.pagePath, false);
+			if (pageNode == null) {
+				log.warn("Planned blog page {} was not generated", page.key);
+				continue;
+			}
+			plan(pageNode, page);
+		}
+		pendingBlogPages.clear();
+	}
+
+	/** Accepts nodes that must be rendered and written. Nodes the planner does not know about are always accepted. */
+	public Predicate<ContentNode> getDirtyNodes() {
+		return new Predicate<ContentNode>() {
+			@Override
+			public boolean apply(final ContentNode contentNode) {
+				return !plannedOutputs.containsKey(contentNode) || dirtyNodes.contains(contentNode);
+			}
+		};
+	}
+
+	/** Accepts the dirty nodes plus any clean posts whose text is shown on a dirty blog page. */
+	public Predicate<ContentNode> getMarkdownNodes() {
+		return new Predicate<ContentNode>() {
+			@Override
+			public boolean apply(final ContentNode contentNode) {
+				return !plannedOutputs.containsKey(contentNode) || dirtyNodes.contains(contentNode) || markdownNodes.contains(contentNode);
+			}
+		};
+	}
+
+	/**
+	 * Records where every planned node is written, and returns the manifest describing this build. Call this once
+	 * the content tree has its final shape and names, before it is written out.
+	 *
+	 * Clean files are renamed to the name they were last written under, since the processors that would have
+	 * renamed them (such as Markdown's {@code .md} to {@code .html}) skipped them. This keeps the tree an accurate
+	 * picture of the output directory, which the output processor relies on to prune and stage files.
+	 */
+	public BuildManifest recordOutputs(final ContentDirectory outputRoot) {
+		outputRoot.accept(new RecordingVisitor());
+		log.info("Incremental build: {} of {} outputs were out of date", dirtyNodes.size(), plannedOutputs.size());
+		return current;
+	}
+
+	/**
+	 * Drops the outputs that could not be written from the manifest returned by {@link #recordOutputs}, so the next
+	 * build writes them again even though the previous file may still be there.
+	 */
+	public void discardOutputs(final Collection<? extends ContentNode> failedNodes) {
+		for (final ContentNode contentNode : failedNodes) {
+			final PlannedOutput plannedOutput = plannedOutputs.get(contentNode);
+			if (plannedOutput != null) {
+				log.warn("{} was not written, it will be built again", plannedOutput.key);
+				current.removeOutput(plannedOutput.key);
+			}
+		}
+	}
+
+	private void plan(final ContentNode contentNode, final PlannedOutput plannedOutput) {
+		plannedOutputs.put(contentNode, plannedOutput);
+		if (plannedOutput.isDirty()) {
+			dirtyNodes.add(contentNode);
+		}
+	}
+
+	private void planContentFile(final ContentFile contentFile, final boolean hasLayout) {
+		final File sourceFile = getSourceFile(contentFile);
+		if (sourceFile == null) {
+			return;
+		}
+
+		final String key = getKey(contentFile);
+		final List<String> dependencies = new ArrayList<String>();
+		final Hasher hasher = Hashing.sha1().newHasher();
+
+		hasher.putString(key, Charsets.UTF_8);
+		hasher.putString(hashInput(sourceFile), Charsets.UTF_8);
+		dependencies.add(sourceFile.getPath());
+
+		if (hasLayout) {
+			for (final String layoutPath : getLayoutChain(computeLayoutForContent(contentFile))) {
+				hasher.putString(hashInput(new File(layoutPath)), Charsets.UTF_8);
+				dependencies.add(layoutPath);
+			}
+		}
+
+		plan(contentFile, new PlannedOutput(key, hasher.hash().toString(), dependencies));
+	}
+
+	/** Returns the source paths of the named layout and every layout it is nested in, innermost first. */
+	private List<String> getLayoutChain(final String layoutPath) {
+		final List<String> layoutChain = new ArrayList<String>();
+
+		String nextLayoutPath = layoutPath;
+		while (nextLayoutPath != null) {
+			final ContentNode layoutNode = layoutContentTree.getPath(nextLayoutPath, false);
+			final File sourceFile = layoutNode instanceof ContentFile ? getSourceFile((ContentFile) layoutNode) : null;
+			if (sourceFile == null || layoutChain.contains(sourceFile.getPath())) {
+				break;
+			}
+			layoutChain.add(sourceFile.getPath());
+			nextLayoutPath = computeLayoutForContent(layoutNode);
+		}
+
+		return layoutChain;
+	}
+
+	/** Mirrors the layout lookup in HandlebarsLayoutProcessor: the nearest {@code layout} key up the tree. */
+	private static String computeLayoutForContent(final ContentNode contentNode) {
+		ContentNode nextNode = contentNode;
+		while (nextNode != null) {
+			final String nextLayout = nextNode.getData("layout", String.class);
+			if (nextLayout != null) {
+				return nextLayout;
+			}
+			nextNode = nextNode.getParent();
+		}
+		return null;
+	}
+
+	/** Hashes a source file, trusting the previous build's hash when the size and modification time match. */
+	private String hashInput(final File file) {
+		final String path = file.getPath();
+		final BuildManifest.InputRecord known = current.getInput(path);
+		if (known != null) {
+			return known.hash;
+		}
+
+		final long size = file.length();
+		final long lastModified = file.lastModified();
+		final BuildManifest.InputRecord previousRecord = previous.getInput(path);
+
+		final String hash;
+		if (previousRecord != null && previousRecord.size == size && previousRecord.lastModified == lastModified) {
+			hash = previousRecord.hash;
+		} else {
+			try {
+				log.debug("Hashing {}", path);
+				hash = hash(file);
+			} catch (final IOException e) {
+				log.warn("Could not hash {}, treating it as changed", file.getAbsolutePath(), e);
+				return "unreadable-" + System.nanoTime();
+			}
+		}
+
+		current.putInput(path, new BuildManifest.InputRecord(size, lastModified, hash));
+		return hash;
+	}
+
+	private static String hash(final File file) throws IOException {
+		final Hasher hasher = Hashing.sha1().newHasher();
+		final InputStream in = Files.newInputStream(file.toPath());
+		try {
+			ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+		} finally {
+			in.close();
+		}
+		return hasher.hash().toString();
+	}
+
+	private static void renameContentFile(final ContentFile contentFile, final String name) {
+		final String[] nameParts = name.split("\\.");
+		contentFile.setBasename(nameParts[0]);
+		contentFile.setExtensions(Arrays.asList(nameParts).subList(1, nameParts.length));
+	}
+
+	private static File getSourceFile(final ContentFile contentFile) {
+		if (contentFile instanceof FileInputProcessor.FileInputTextContentFile) {
+			return ((FileInputProcessor.FileInputTextContentFile) contentFile).getSourceFile();
+		}
+		if (contentFile instanceof FileInputProcessor.FileInputBinaryContentFile) {
+			return ((FileInputProcessor.FileInputBinaryContentFile) contentFile).getSourceFile();
+		}
+		return null;
+	}
+
+	private static String getKey(final ContentNode contentNode) {
+		final List<String> names = new ArrayList<String>();
+		for (final ContentNode node : contentNode.getAllParents()) {
+			names.add(node.getName());
+		}
+		return Joiner.on('/').join(names);
+	}
+
+	private class PlannedOutput {
+		private final String key;
+		private final String fingerprint;
+		private final List<String> dependencies;
+		private final BuildManifest.OutputRecord previousRecord;
+		private String pagePath;
+
+		public PlannedOutput(final String key, final String fingerprint, final List<String> dependencies) {
+			this.key = key;
+			this.fingerprint = fingerprint;
+			this.dependencies = dependencies;
+			this.previousRecord = previous.getOutput(key);
+		}
+
+		public boolean isDirty() {
+			return previousRecord == null
+					|| !previousRecord.fingerprint.equals(fingerprint)
+					|| !new File(previousRecord.outputPath).isFile();
+		}
+	}
+
+	private class PlanningVisitor implements ContentVisitor {
+		@Override
+		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
+			/* Do nothing */
+		}
+
+		@Override
+		public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
+			planContentFile(contentFile, false);
+		}
+
+		@Override
+		public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
+			planContentFile(contentFile, true);
+		}
+	}
+
+	private class RecordingVisitor implements ContentVisitor {
+		@Override
+		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
+			/* Do nothing */
+		}
+
+		@Override
+		public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
+			record(contentFile, parents);
+		}
+
+		@Override
+		public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
+			record(contentFile, parents);
+		}
+
+		private void record(final ContentNode contentNode, final List<ContentNode> parents) {
+			final PlannedOutput plannedOutput = plannedOutputs.get(contentNode);
+			if (plannedOutput == null) {
+				return;
+			}
+
+			final String outputPath;
+			if (dirtyNodes.contains(contentNode)) {
+				final List<String> names = new ArrayList<String>();
+				for (final ContentNode parent : parents) {
+					names.add(parent.getName());
+				}
+				names.add(contentNode.getName());
+				outputPath = Joiner.on(File.separatorChar).join(names);
+			} else {
+				outputPath = plannedOutput.previousRecord.outputPath;
+				renameContentFile((ContentFile) contentNode, new File(outputPath).getName());
+			}
+
+			current.putOutput(plannedOutput.key, new BuildManifest.OutputRecord(outputPath, plannedOutput.fingerprint, plannedOutput.dependencies));
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.vdxp.ssg.pipeline;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The named values that pipeline stages pass to each other. Values may be null. */
+public class Artifacts {
+
+	private final Map<String, Object> values = Collections.synchronizedMap(new HashMap<String, Object>());
+
+	/** The artifacts of the whole pipeline, when these are the ones a single stage is putting; otherwise null */
+	private final Artifacts pipelineArtifacts;
+
+	public Artifacts() {
+		this(null);
+	}
+
+	/**
+	 * Keeps what a stage puts apart from the pipeline's artifacts, which it reads through, until {@link #publish} is
+	 * called. Other stages cannot start on a stage's outputs while the stage is still working on them.
+	 */
+	Artifacts(final Artifacts pipelineArtifacts) {
+		this.pipelineArtifacts = pipelineArtifacts;
+	}
+
+	public <T> T get(final String name, final Class<T> type) {
+		if (!values.containsKey(name)) {
+			if (pipelineArtifacts != null) {
+				return pipelineArtifacts.get(name, type);
+			}
+			throw new IllegalStateException("No artifact named " + name);
+		}
+		return type.cast(values.get(name));
+	}
+
+	public void put(final String name, final Object value) {
+		values.put(name, value);
+	}
+
+	public boolean contains(final String name) {
+		return values.containsKey(name) || pipelineArtifacts != null && pipelineArtifacts.contains(name);
+	}
+
+	/** Adds the artifacts put by the stage to the pipeline's artifacts. */
+	void publish() {
+		pipelineArtifacts.values.putAll(values);
+	}
+
+}
@@ -0,0 +1,282 @@
+package com.vdxp.ssg.pipeline;
+
+import com.vdxp.ssg.content.BinaryContentFile;
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.content.ContentVisitor;
+import com.vdxp.ssg.content.TextContentFile;
+import com.vdxp.ssg.report.BuildReport;
+import com.vdxp.ssg.report.StageTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link Stage}s once their inputs are available. With one thread, stages run one at a time in the order they
+ * were added (as far as their inputs allow), so a pipeline whose stages were added in dependency order behaves
+ * exactly like calling them in sequence. With more threads, stages whose inputs are ready run concurrently.
+ *
+ * If a stage fails, no further stages are started, the running ones are waited for and the first failure is
+ * rethrown.
+ *
+ * Given a {@link BuildReport}, every stage is timed on the thread that runs it, and the nodes in the content trees it
+ * outputs (or, for a stage without outputs, takes as input) are counted. Without one, stages are still timed as
+ * Flight Recorder events when the JVM has Flight Recorder.
+ */
+public class Pipeline {
+
+	private static final Logger log = LoggerFactory.getLogger(Pipeline.class);
+
+	private final Options options;
+	private final List<Stage> stages = new ArrayList<Stage>();
+
+	public Pipeline() {
+		this(new Options());
+	}
+
+	public Pipeline(final Options options) {
+		this.options = options;
+	}
+
+	public Pipeline addStage(final Stage stage) {
+		stages.add(stage);
+		return this;
+	}
+
+	public Artifacts run() throws IOException {
+		return run(new Artifacts());
+	}
+
+	/** Runs every stage, starting from the given artifacts, and returns them with every stage's outputs added. */
+	public Artifacts run(final Artifacts artifacts) throws IOException {
+		validate(artifacts);
+
+		final List<Stage> pendingStages = new ArrayList<Stage>(stages);
+		if (options.threads <= 1) {
+			while (!pendingStages.isEmpty()) {
+				final Stage stage = takeReadyStage(pendingStages, artifacts);
+				runStage(stage, artifacts);
+			}
+		} else {
+			runConcurrently(pendingStages, artifacts);
+		}
+		return artifacts;
+	}
+
+	private void runConcurrently(final List<Stage> pendingStages, final Artifacts artifacts) throws IOException {
+		final ExecutorService executor = options.executor != null ? options.executor : Executors.newFixedThreadPool(options.threads);
+		final CompletionService<Stage> completionService = new ExecutorCompletionService<Stage>(executor);
+		Throwable failure = null;
+		int runningStages = 0;
+		try {
+			while (true) {
+				if (failure == null) {
+					for (final Stage stage : takeReadyStages(pendingStages, artifacts)) {
+						completionService.submit(new Callable<Stage>() {
+							@Override
+							public Stage call() throws IOException {
+								runStage(stage, artifacts);
+								return stage;
+							}
+						});
+						runningStages++;
+					}
+				}
+				if (runningStages == 0) {
+					break;
+				}
+
+				try {
+					completionService.take().get();
+				} catch (final ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+				runningStages--;
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running the pipeline", e);
+		} finally {
+			if (executor != options.executor) {
+				executor.shutdownNow();
+			}
+		}
+
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		if (failure != null) {
+			throw new IllegalStateException("Pipeline stage failed", failure);
+		}
+		if (!pendingStages.isEmpty()) {
+			throw new IllegalStateException("Pipeline stages could not run: " + pendingStages);
+		}
+	}
+
+	/**
+	 * Runs a stage and only then publishes its outputs, so the stages waiting for them cannot start while its nodes
+	 * are still being counted.
+	 */
+	private void runStage(final Stage stage, final Artifacts artifacts) throws IOException {
+		log.debug("Running stage {}", stage);
+		final long startTime = System.nanoTime();
+		final StageTimer timer = StageTimer.start(options.report, stage.getName());
+		final Artifacts stageArtifacts = new Artifacts(artifacts);
+		stage.run(stageArtifacts);
+		for (final String output : stage.getOutputs()) {
+			if (!stageArtifacts.contains(output)) {
+				throw new IllegalStateException("Stage " + stage + " did not produce " + output);
+			}
+		}
+		if (timer != null) {
+			timer.stop(countNodes(stage.getOutputs().isEmpty() ? stage.getInputs() : stage.getOutputs(), stageArtifacts));
+		}
+		stageArtifacts.publish();
+		log.debug("Stage {} took {} ms", stage, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+	}
+
+	/** Counts the nodes in the content trees among the given artifacts, counting a tree listed twice only once. */
+	private static long countNodes(final List<String> names, final Artifacts artifacts) {
+		final Set<ContentNode> roots = Collections.newSetFromMap(new IdentityHashMap<ContentNode, Boolean>());
+		for (final String name : names) {
+			final Object artifact = artifacts.get(name, Object.class);
+			if (artifact instanceof ContentNode) {
+				roots.add((ContentNode) artifact);
+			}
+		}
+		final NodeCountingVisitor visitor = new NodeCountingVisitor();
+		for (final ContentNode root : roots) {
+			root.accept(visitor);
+		}
+		return visitor.nodes;
+	}
+
+	private static Stage takeReadyStage(final List<Stage> pendingStages, final Artifacts artifacts) {
+		final Iterator<Stage> iterator = pendingStages.iterator();
+		while (iterator.hasNext()) {
+			final Stage stage = iterator.next();
+			if (isReady(stage, artifacts)) {
+				iterator.remove();
+				return stage;
+			}
+		}
+		throw new IllegalStateException("Pipeline stages could not run: " + pendingStages);
+	}
+
+	private static List<Stage> takeReadyStages(final List<Stage> pendingStages, final Artifacts artifacts) {
+		final List<Stage> readyStages = new ArrayList<Stage>();
+		final Iterator<Stage> iterator = pendingStages.iterator();
+		while (iterator.hasNext()) {
+			final Stage stage = iterator.next();
+			if (isReady(stage, artifacts)) {
+				iterator.remove();
+				readyStages.add(stage);
+			}
+		}
+		return readyStages;
+	}
+
+	private static boolean isReady(final Stage stage, final Artifacts artifacts) {
+		for (final String input : stage.getInputs()) {
+			if (!artifacts.contains(input)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Checks that every input has exactly one source, so a mistake shows up before anything runs. */
+	private void validate(final Artifacts artifacts) {
+		final Map<String, Stage> producers = new HashMap<String, Stage>();
+		for (final Stage stage : stages) {
+			for (final String output : stage.getOutputs()) {
+				if (producers.containsKey(output) || artifacts.contains(output)) {
+					throw new IllegalArgumentException("More than one source for artifact " + output + " (stage " + stage + ")");
+				}
+				producers.put(output, stage);
+			}
+		}
+		for (final Stage stage : stages) {
+			for (final String input : stage.getInputs()) {
+				if (!producers.containsKey(input) && !artifacts.contains(input)) {
+					throw new IllegalArgumentException("Nothing produces artifact " + input + " needed by stage " + stage);
+				}
+			}
+		}
+	}
+
+	public static class Options {
+		public final int threads;
+		/** Receives a record of every stage if not null */
+		public final BuildReport report;
+		/**
+		 * Runs the stages on this executor rather than on a pool of {@link #threads} threads of its own, so that they
+		 * can share it with the processors they run; may be null
+		 */
+		public final ExecutorService executor;
+
+		private static final int defaultThreads = 1;
+
+		public Options() {
+			this(defaultThreads);
+		}
+
+		public Options(final int threads) {
+			this(threads, null);
+		}
+
+		public Options(final int threads, final BuildReport report) {
+			this(threads, report, null);
+		}
+
+		public Options(final int threads, final BuildReport report, final ExecutorService executor) {
+			this.threads = threads;
+			this.report = report;
+			this.executor = executor;
+		}
+	}
+
+	private static class NodeCountingVisitor implements ContentVisitor {
+		private long nodes = 0;
+
+		@Override
+		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
+			nodes++;
+		}
+
+		@Override
+		public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
+			nodes++;
+		}
+
+		@Override
+		public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
+			nodes++;
+		}
+	}
+
+}
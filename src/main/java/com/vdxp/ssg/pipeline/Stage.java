@@ -0,0 +1,44 @@
+package com.vdxp.ssg.pipeline;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * One step of a {@link Pipeline}. A stage reads the artifacts named by its inputs and must put every artifact named
+ * by its outputs. Stages that modify a content tree in place pass it on under a new name, so the stages that need
+ * the modified tree wait for them.
+ */
+public abstract class Stage {
+
+	private final String name;
+	private final List<String> inputs;
+	private final List<String> outputs;
+
+	public Stage(final String name, final List<String> inputs, final List<String> outputs) {
+		this.name = name;
+		this.inputs = ImmutableList.copyOf(inputs);
+		this.outputs = ImmutableList.copyOf(outputs);
+	}
+
+	public abstract void run(final Artifacts artifacts) throws IOException;
+
+	public String getName() {
+		return name;
+	}
+
+	public List<String> getInputs() {
+		return inputs;
+	}
+
+	public List<String> getOutputs() {
+		return outputs;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
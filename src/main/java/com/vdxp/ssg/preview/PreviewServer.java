@@ -0,0 +1,283 @@
+package com.vdxp.ssg.preview;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentFile;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.content.TextContentFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves a rendered content tree over HTTP straight from memory, without writing it out.
+ *
+ * The tree being served is replaced with {@link #setContentRoot} after every rebuild; requests already in progress
+ * finish against the tree they started with. A served tree must not be modified. Responses carry an
+ * {@code ETag} derived from the content, so browsers revalidate with {@code If-None-Match} and get a
+ * {@code 304} for unchanged pages, and compressible responses are gzipped for clients that accept it.
+ */
+public class PreviewServer {
+
+	private static final Logger log = LoggerFactory.getLogger(PreviewServer.class);
+
+	private static final Map<String, String> contentTypes = ImmutableMap.<String, String>builder()
+			.put("html", "text/html")
+			.put("htm", "text/html")
+			.put("css", "text/css")
+			.put("js", "application/javascript")
+			.put("json", "application/json")
+			.put("xml", "application/xml")
+			.put("txt", "text/plain")
+			.put("svg", "image/svg+xml")
+			.put("png", "image/png")
+			.put("jpg", "image/jpeg")
+			.put("jpeg", "image/jpeg")
+			.put("gif", "image/gif")
+			.put("ico", "image/x-icon")
+			.put("woff", "font/woff")
+			.build();
+
+	private static final String defaultContentType = "application/octet-stream";
+
+	private final Options options;
+
+	private volatile ServedTree servedTree;
+	private HttpServer httpServer;
+	private ExecutorService executor;
+
+	public PreviewServer(final Options options) {
+		this.options = options;
+		this.servedTree = new ServedTree(new ContentDirectory("preview"));
+	}
+
+	/** Starts serving; until a content root is set, every request is answered with a 404. */
+	public void start() throws IOException {
+		httpServer = HttpServer.create(new InetSocketAddress(options.address, options.port), 0);
+		executor = Executors.newFixedThreadPool(options.threads);
+		httpServer.setExecutor(executor);
+		httpServer.createContext("/", new PreviewHandler());
+		httpServer.start();
+		log.info("Serving a preview at http://{}:{}/", options.address.getHostAddress(), httpServer.getAddress().getPort());
+	}
+
+	public void stop() {
+		httpServer.stop(0);
+		executor.shutdownNow();
+	}
+
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+
+	public InetSocketAddress getAddress() {
+		return httpServer.getAddress();
+	}
+
+	/** Serves {@code contentRoot} from now on; the root itself maps to {@code /}. */
+	public void setContentRoot(final ContentDirectory contentRoot) {
+		servedTree = new ServedTree(contentRoot);
+	}
+
+	private class PreviewHandler implements HttpHandler {
+		@Override
+		public void handle(final HttpExchange exchange) throws IOException {
+			try {
+				final String method = exchange.getRequestMethod();
+				if (!"GET".equals(method) && !"HEAD".equals(method)) {
+					sendStatus(exchange, 405);
+					return;
+				}
+
+				final URI uri = exchange.getRequestURI();
+				final ServedTree tree = servedTree;
+				final ContentNode node = tree.getNode(uri.getPath());
+
+				if (node instanceof ContentDirectory) {
+					exchange.getResponseHeaders().set("Location", uri.getPath() + "/");
+					sendStatus(exchange, 301);
+					return;
+				}
+				if (!(node instanceof ContentFile)) {
+					log.debug("Not found: {}", uri);
+					sendStatus(exchange, 404);
+					return;
+				}
+
+				final Response response = tree.getResponse((ContentFile) node);
+				byte[] body = response.body;
+				String etag = response.etag;
+				if (response.gzippedBody != null) {
+					exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+					final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+					if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+						exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+						body = response.gzippedBody;
+						etag = response.etag.substring(0, response.etag.length() - 1) + "-gzip\"";
+					}
+				}
+
+				exchange.getResponseHeaders().set("ETag", etag);
+				exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+				final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+				if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+					sendStatus(exchange, 304);
+					return;
+				}
+				exchange.getResponseHeaders().set("Content-Type", response.contentType);
+
+				if ("HEAD".equals(method)) {
+					exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+					exchange.sendResponseHeaders(200, -1);
+				} else {
+					exchange.sendResponseHeaders(200, body.length);
+					final OutputStream output = exchange.getResponseBody();
+					output.write(body);
+					output.close();
+				}
+			} catch (final IOException e) {
+				log.warn("Could not serve {}", exchange.getRequestURI(), e);
+				throw e;
+			} catch (final RuntimeException e) {
+				log.error("Could not serve {}", exchange.getRequestURI(), e);
+				sendStatus(exchange, 500);
+			} finally {
+				exchange.close();
+			}
+		}
+
+		private void sendStatus(final HttpExchange exchange, final int status) throws IOException {
+			exchange.sendResponseHeaders(status, -1);
+		}
+	}
+
+	/** A content tree and the responses rendered from it so far. */
+	private class ServedTree {
+		private final ContentDirectory contentRoot;
+		private final ConcurrentMap<ContentFile, Response> responses = new ConcurrentHashMap<ContentFile, Response>();
+
+		public ServedTree(final ContentDirectory contentRoot) {
+			this.contentRoot = contentRoot;
+		}
+
+		public ContentNode getNode(final String requestPath) {
+			String path = requestPath.startsWith("/") ? requestPath.substring(1) : requestPath;
+			if (path.isEmpty() || path.endsWith("/")) {
+				path += "index.html";
+			}
+			return contentRoot.getPath(path, false);
+		}
+
+		public Response getResponse(final ContentFile contentFile) throws IOException {
+			Response response = responses.get(contentFile);
+			if (response == null) {
+				response = makeResponse(contentFile);
+				responses.putIfAbsent(contentFile, response);
+			}
+			return response;
+		}
+
+		private Response makeResponse(final ContentFile contentFile) throws IOException {
+			final byte[] body;
+			if (contentFile instanceof TextContentFile) {
+				body = ((TextContentFile) contentFile).getText().getBytes(Charsets.UTF_8);
+			} else {
+				final InputStream input = contentFile.getContents();
+				try {
+					body = ByteStreams.toByteArray(input);
+				} finally {
+					input.close();
+				}
+			}
+
+			final String name = contentFile.getName();
+			String contentType = contentTypes.get(name.substring(name.lastIndexOf('.') + 1));
+			if (contentType == null) {
+				contentType = contentFile instanceof TextContentFile ? "text/plain" : defaultContentType;
+			}
+			final boolean textual = contentType.startsWith("text/") || contentType.equals("image/svg+xml")
+					|| (contentType.startsWith("application/") && !contentType.equals(defaultContentType));
+			if (contentFile instanceof TextContentFile) {
+				contentType += "; charset=utf-8";
+			}
+
+			final byte[] gzippedBody = options.gzip && textual ? gzip(body) : null;
+			final String etag = "\"" + Hashing.sha1().hashBytes(body).toString() + "\"";
+			return new Response(contentType, etag, body, gzippedBody);
+		}
+
+		private byte[] gzip(final byte[] body) throws IOException {
+			final ByteArrayOutputStream gzipped = new ByteArrayOutputStream(body.length / 2 + 64);
+			final GZIPOutputStream output = new GZIPOutputStream(gzipped);
+			output.write(body);
+			output.close();
+			return gzipped.toByteArray();
+		}
+	}
+
+	private static class Response {
+		private final String contentType;
+		private final String etag;
+		private final byte[] body;
+		private final byte[] gzippedBody;
+
+		public Response(final String contentType, final String etag, final byte[] body, final byte[] gzippedBody) {
+			this.contentType = contentType;
+			this.etag = etag;
+			this.body = body;
+			this.gzippedBody = gzippedBody;
+		}
+	}
+
+	public static class Options {
+		public final int port;
+		public final int threads;
+		/** Whether to gzip text responses for clients that accept it */
+		public final boolean gzip;
+		/** The address to listen on; only this machine can connect to the default, the loopback address */
+		public final InetAddress address;
+
+		private static final int defaultThreads = 4;
+		private static final boolean defaultGzip = true;
+		private static final InetAddress defaultAddress = InetAddress.getLoopbackAddress();
+
+		public Options(final int port) {
+			this(port, defaultAddress);
+		}
+
+		public Options(final int port, final InetAddress address) {
+			this(port, defaultThreads, defaultGzip, address);
+		}
+
+		public Options(final int port, final int threads, final boolean gzip) {
+			this(port, threads, gzip, defaultAddress);
+		}
+
+		public Options(final int port, final int threads, final boolean gzip, final InetAddress address) {
+			this.port = port;
+			this.threads = threads;
+			this.gzip = gzip;
+			this.address = address;
+		}
+	}
+
+}
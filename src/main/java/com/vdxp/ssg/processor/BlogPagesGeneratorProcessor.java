@@ -1,19 +1,21 @@
 package com.vdxp.ssg.processor;
 
-import com.google.common.collect.ImmutableList;
-import com.vdxp.ssg.content.BinaryContentFile;
+import com.google.common.collect.ImmutableSet;
 import com.vdxp.ssg.content.ContentDirectory;
 import com.vdxp.ssg.content.ContentNode;
-import com.vdxp.ssg.content.ContentVisitor;
 import com.vdxp.ssg.content.TextContentFile;
+import com.vdxp.ssg.content.TextContentVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class BlogPagesGeneratorProcessor {
 
@@ -30,22 +32,17 @@ public class BlogPagesGeneratorProcessor {
 	}
 
 	public void process(final ContentDirectory contentTree) {
-		final List<TextContentFile> contentPages = getPages(contentTree);
-		final List<BlogPageContentFile> blogPages = generateBlogPages(contentPages, options);
+		final List<BlogPageContentFile> blogPages = generateBlogPages(paginate(contentTree));
 
 		insertBlogPages(blogPages, contentTree, options);
 		generateNavigationLinks(blogPages);
 		populatePageDataMap(blogPages, options);
 	}
 
-	private static List<TextContentFile> getPages(final ContentNode contentTree) {
-		final BlogPageCollectionVisitor visitor = new BlogPageCollectionVisitor();
-		contentTree.accept(visitor);
-		return visitor.getPages();
-	}
-
-	private static List<BlogPageContentFile> generateBlogPages(final List<TextContentFile> contentPages, final Options options) {
-		final ArrayList<BlogPageContentFile> blogPages = new ArrayList<BlogPageContentFile>();
+	/** Returns the posts that will appear on each blog page, in page order, without modifying the content tree. */
+	public List<List<TextContentFile>> paginate(final ContentDirectory contentTree) {
+		final List<TextContentFile> contentPages = getPages(contentTree);
+		final List<List<TextContentFile>> pageSlices = new ArrayList<List<TextContentFile>>();
 
 		Collections.sort(contentPages, new ContentNodeDateComparator());
 
@@ -54,8 +51,23 @@ public class BlogPagesGeneratorProcessor {
 			/* pageNum is 1=indexed for human consumption */
 			final int minIndex = (pageNumber - 1) * options.numberOfPostsPerPage;
 			final int maxIndex = Math.min(pageNumber * options.numberOfPostsPerPage, contentPages.size());
-			final List<TextContentFile> pageSlice = contentPages.subList(minIndex, maxIndex);
-			blogPages.add(new BlogPageContentFile(pageNumber, pageSlice));
+			pageSlices.add(contentPages.subList(minIndex, maxIndex));
+		}
+
+		return pageSlices;
+	}
+
+	private static List<TextContentFile> getPages(final ContentNode contentTree) {
+		final BlogPageCollectionVisitor visitor = new BlogPageCollectionVisitor();
+		contentTree.accept(visitor);
+		return visitor.getPages();
+	}
+
+	private static List<BlogPageContentFile> generateBlogPages(final List<List<TextContentFile>> pageSlices) {
+		final ArrayList<BlogPageContentFile> blogPages = new ArrayList<BlogPageContentFile>();
+
+		for (int pageNumber = 1; pageNumber <= pageSlices.size(); pageNumber++) {
+			blogPages.add(new BlogPageContentFile(pageNumber, pageSlices.get(pageNumber - 1)));
 		}
 
 		return blogPages;
@@ -103,13 +115,9 @@ public class BlogPagesGeneratorProcessor {
 			pageData.put("blogPage", blogData);
 			pageData.put("layout", options.layout);
 
-			final List<HashMap<String, Object>> blogPagePostsList = new ArrayList<HashMap<String, Object>>();
+			final List<Map<String, Object>> blogPagePostsList = new ArrayList<Map<String, Object>>();
 			for (final TextContentFile post : page.getContentPages()) {
-				final HashMap<String, Object> postData = new HashMap<String, Object>();
-				postData.put("content", post.getText());
-				postData.put("link", page.getRelativePath(post));
-				postData.putAll(post.getData());
-				blogPagePostsList.add(postData);
+				blogPagePostsList.add(new BlogPostView(page, post));
 			}
 			blogData.put("posts", blogPagePostsList);
 			blogData.put("next", page.getNextUrl());
@@ -119,7 +127,7 @@ public class BlogPagesGeneratorProcessor {
 		}
 	}
 
-	private static class BlogPageCollectionVisitor implements ContentVisitor {
+	private static class BlogPageCollectionVisitor extends TextContentVisitor {
 		private final List<TextContentFile> pages = new ArrayList<TextContentFile>();
 
 		@Override
@@ -128,16 +136,6 @@ public class BlogPagesGeneratorProcessor {
 			pages.add(contentFile);
 		}
 
-		@Override
-		public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
-			/* Do nothing */
-		}
-
-		@Override
-		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
-			/* Do nothing */
-		}
-
 		public List<TextContentFile> getPages() {
 			return pages;
 		}
@@ -177,7 +175,7 @@ public class BlogPagesGeneratorProcessor {
 			this.layout = layout;
 		}
 
-		private String getPagePath(final int pageNumber) {
+		public String getPagePath(final int pageNumber) {
 			if (pageNumber == 1) {
 				return String.format(firstPagePattern, pageNumber);
 			} else {
@@ -208,7 +206,7 @@ public class BlogPagesGeneratorProcessor {
 		}
 
 		public List<TextContentFile> getContentPages() {
-			return ImmutableList.copyOf(contentPages);
+			return Collections.unmodifiableList(contentPages);
 		}
 
 		public String getNextUrl() {
@@ -228,14 +226,70 @@ public class BlogPagesGeneratorProcessor {
 		}
 	}
 
+	/**
+	 * What a blog page's template sees of one of its posts: the post's data, plus its {@code content} and a
+	 * {@code link} to it from the page. Nothing is copied; the data is read from the post when the page is rendered
+	 * and the link is worked out when it is asked for. The content is the post's text at pagination time, since
+	 * rendering the post's own layout later replaces its text.
+	 *
+	 * Data that is relative to where the post is, such as {@code rootPath}, is left out, so that the template finds
+	 * the page's own value instead.
+	 */
+	private static class BlogPostView extends AbstractMap<String, Object> {
+		private static final Set<String> postRelativeKeys = ImmutableSet.of("rootPath");
+
+		private final BlogPageContentFile page;
+		private final TextContentFile post;
+		private final CharSequence content;
+
+		public BlogPostView(final BlogPageContentFile page, final TextContentFile post) {
+			this.page = page;
+			this.post = post;
+			this.content = post.getTextSequence();
+		}
+
+		@Override
+		public Object get(final Object key) {
+			if (postRelativeKeys.contains(key)) {
+				return null;
+			}
+			final Object value = post.getData().get(key);
+			if (value != null) {
+				return value;
+			}
+			if ("content".equals(key)) {
+				return content;
+			}
+			if ("link".equals(key)) {
+				return page.getRelativePath(post);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean containsKey(final Object key) {
+			return "content".equals(key) || "link".equals(key) || (post.getData().containsKey(key) && !postRelativeKeys.contains(key));
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			final Map<String, Object> entries = new HashMap<String, Object>();
+			entries.put("content", content);
+			entries.put("link", page.getRelativePath(post));
+			entries.putAll(post.getData());
+			entries.keySet().removeAll(postRelativeKeys);
+			return Collections.unmodifiableMap(entries).entrySet();
+		}
+	}
+
 	private static class ContentNodeDateComparator implements Comparator<ContentNode> {
 		@Override
 		public int compare(final ContentNode left, final ContentNode right) {
-			final Object leftDateObject = left.getData().get("date_raw");
-			final Object rightDateObject = right.getData().get("date_raw");
-			final Long leftDate = leftDateObject instanceof Long ? (Long) leftDateObject : Long.MAX_VALUE;
-			final Long rightDate = rightDateObject instanceof Long ? (Long) rightDateObject : Long.MAX_VALUE;
-			return rightDate.compareTo(leftDate);
+			final Long leftDateObject = left.getData("date_raw", Long.class);
+			final Long rightDateObject = right.getData("date_raw", Long.class);
+			final long leftDate = leftDateObject != null ? leftDateObject : Long.MAX_VALUE;
+			final long rightDate = rightDateObject != null ? rightDateObject : Long.MAX_VALUE;
+			return Long.compare(rightDate, leftDate);
 		}
 	}
 
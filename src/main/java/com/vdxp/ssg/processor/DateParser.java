@@ -0,0 +1,163 @@
+package com.vdxp.ssg.processor;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.joestelmach.natty.DateGroup;
+import com.joestelmach.natty.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Parses dates as Natty does, but quickly for the formats that dates are usually written in. Those are parsed with
+ * {@code java.time} formatters, to the same instant that Natty gives them; anything else, such as "yesterday" or a
+ * date without a time, which Natty completes with the current time, goes to Natty. Results are remembered for the
+ * rest of the day in a cache that all threads share. Everything here is thread-safe.
+ */
+public final class DateParser {
+
+	private static final Logger log = LoggerFactory.getLogger(DateParser.class);
+
+	private static final int cacheSize = 100000;
+
+	/** Year, month and day, a time with or without seconds and their fraction, and maybe an offset */
+	private static final DateTimeFormatter numericFormat = new DateTimeFormatterBuilder()
+			.optionalStart().appendPattern("uuuu-M-d").optionalEnd()
+			.optionalStart().appendPattern("uuuu/M/d").optionalEnd()
+			.optionalStart().appendLiteral('T').optionalEnd()
+			.optionalStart().appendLiteral(' ').optionalEnd()
+			.appendPattern("H:mm")
+			.optionalStart().appendPattern(":ss")
+			.optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 1, 9, true).optionalEnd()
+			.optionalEnd()
+			.optionalStart().appendLiteral(' ').optionalEnd()
+			.optionalStart().appendOffset("+HH:MM", "Z").optionalEnd()
+			.optionalStart().appendOffset("+HHMM", "Z").optionalEnd()
+			.toFormatter(Locale.ENGLISH)
+			.withResolverStyle(ResolverStyle.STRICT);
+
+	/** "March 7, 2014 10:00" and the like, including the format that {@link DateParsingProcessor} writes */
+	private static final DateTimeFormatter monthNameFormat = new DateTimeFormatterBuilder()
+			.parseCaseInsensitive()
+			.optionalStart().appendPattern("MMMM").optionalEnd()
+			.optionalStart().appendPattern("MMM").optionalEnd()
+			.appendPattern(" d, uuuu H:mm")
+			.optionalStart().appendPattern(":ss").optionalEnd()
+			.optionalStart().appendLiteral(' ').appendOffset("+HHMM", "Z").optionalEnd()
+			.toFormatter(Locale.ENGLISH)
+			.withResolverStyle(ResolverStyle.STRICT);
+
+	private static final DateTimeFormatter[] formats = {
+			numericFormat,
+			monthNameFormat,
+			DateTimeFormatter.RFC_1123_DATE_TIME,
+	};
+
+	private static final Cache<String, Optional<Long>> parsedDates = CacheBuilder.newBuilder()
+			.maximumSize(cacheSize)
+			.build();
+
+	/** Natty's parser is not thread-safe, so every thread that needs it gets its own */
+	private static final ThreadLocal<Parser> natty = new ThreadLocal<Parser>() {
+		@Override
+		protected Parser initialValue() {
+			return new Parser();
+		}
+	};
+
+	private DateParser() {
+	}
+
+	/** Returns the time in milliseconds that {@code inputDate} stands for, or null if it is not a date. */
+	public static Long parse(final String inputDate) {
+		/* Relative dates mean something else tomorrow */
+		final String cacheKey = LocalDate.now() + " " + inputDate;
+		try {
+			return parsedDates.get(cacheKey, new Callable<Optional<Long>>() {
+				@Override
+				public Optional<Long> call() {
+					return Optional.fromNullable(parseUncached(inputDate));
+				}
+			}).orNull();
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException("Could not parse date " + inputDate, e.getCause());
+		}
+	}
+
+	static Long parseUncached(final String inputDate) {
+		final Long fastDate = parseFormatted(inputDate.trim());
+		if (fastDate != null) {
+			return fastDate;
+		}
+		return parseNatural(inputDate);
+	}
+
+	/**
+	 * Tries each format in turn. Like Natty, fractions of a second are dropped, and dates without an offset are in
+	 * the default time zone; local times that a daylight saving change makes ambiguous are left to Natty.
+	 */
+	private static Long parseFormatted(final String inputDate) {
+		if (inputDate.isEmpty() || !Character.isLetterOrDigit(inputDate.charAt(0))) {
+			return null;
+		}
+
+		for (final DateTimeFormatter format : formats) {
+			final TemporalAccessor parsed;
+			try {
+				parsed = format.parse(inputDate);
+			} catch (final DateTimeParseException e) {
+				continue;
+			}
+			if (!parsed.isSupported(ChronoField.EPOCH_DAY)) {
+				continue;
+			}
+
+			final LocalDateTime localDate = LocalDateTime.from(parsed).withNano(0);
+			final ZoneOffset offset;
+			if (parsed.isSupported(ChronoField.OFFSET_SECONDS)) {
+				offset = ZoneOffset.ofTotalSeconds(parsed.get(ChronoField.OFFSET_SECONDS));
+			} else {
+				final List<ZoneOffset> offsets = ZoneId.systemDefault().getRules().getValidOffsets(localDate);
+				if (offsets.size() != 1) {
+					return null;
+				}
+				offset = offsets.get(0);
+			}
+			return localDate.toInstant(offset).toEpochMilli();
+		}
+		return null;
+	}
+
+	private static Long parseNatural(final String inputDate) {
+		final List<DateGroup> parsedDateGroups = natty.get().parse(inputDate);
+		if (parsedDateGroups.isEmpty()) {
+			return null;
+		}
+
+		final DateGroup parsedDateGroup = parsedDateGroups.get(0);
+		final List<Date> parsedDates = parsedDateGroup.getDates();
+		if (parsedDates.isEmpty()) {
+			return null;
+		}
+
+		final Date parsedDate = parsedDates.get(0);
+		log.debug("Date {} parsed by Natty as {}", inputDate, parsedDate);
+		return parsedDate.getTime();
+	}
+}
@@ -1,7 +1,7 @@
 package com.vdxp.ssg.processor;
 
-import com.joestelmach.natty.DateGroup;
-import com.joestelmach.natty.Parser;
+import com.google.common.base.Function;
+import com.vdxp.ssg.cache.StageCache;
 import com.vdxp.ssg.content.BinaryContentFile;
 import com.vdxp.ssg.content.ContentDirectory;
 import com.vdxp.ssg.content.ContentNode;
@@ -10,20 +10,32 @@ import com.vdxp.ssg.content.TextContentFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public class DateParsingProcessor {
 
 	private static final Logger log = LoggerFactory.getLogger(DateParsingProcessor.class);
 
-	private final Parser natty = new Parser();
-	private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d, yyyy HH:mm Z");
+	private static final String cacheStage = "dates";
+
+	/** Formatters are immutable, so one is shared by every thread */
+	private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("MMM d, yyyy HH:mm Z");
 
 	private final String[] dataKeyNames;
+	private final Options options;
 
 	public DateParsingProcessor(final String... dataKeyNames) {
+		this(new Options(), dataKeyNames);
+	}
+
+	public DateParsingProcessor(final Options options, final String... dataKeyNames) {
+		this.options = options;
 		if (dataKeyNames.length > 0) {
 			this.dataKeyNames = dataKeyNames;
 		} else {
@@ -32,67 +44,120 @@ public class DateParsingProcessor {
 	}
 
 	public void process(final ContentNode contentNode) {
-		contentNode.accept(new DateParsingVisitor());
+		final DateParsingVisitor visitor = new DateParsingVisitor();
+		contentNode.accept(visitor);
+
+		/* Every node only has its own data changed, so nodes can be parsed in any order and on any thread */
+		ParallelTasks.map(visitor.getNodes(), new Function<ContentNode, Void>() {
+			@Override
+			public Void apply(final ContentNode node) {
+				parseDates(node);
+				return null;
+			}
+		}, options.threads, options.executor, log, "Could not parse dates in {}");
 	}
 
-	private class DateParsingVisitor implements ContentVisitor {
+	private void parseDates(final ContentNode contentNode) {
+		for (final String key : dataKeyNames) {
+			final Object value = contentNode.getData().get(key);
+			if (value == null) {
+				continue;
+			}
 
-		private void visit(final ContentNode contentNode, final List<ContentNode> parents) {
-			for (final String key : dataKeyNames) {
-				final Object value = contentNode.getData().get(key);
-				if (value == null) {
-					continue;
-				}
+			final Long rawDate = parseDateString(value);
+			if (rawDate == null) {
+				log.debug("Could not parse {} in {} as a date", value, contentNode);
+				continue;
+			}
 
-				final Date parsedDate = parseDateString(value);
-				if (parsedDate == null) {
-					log.debug("Could not parse {} in {} as a date", value, contentNode);
-					continue;
-				}
+			final String formattedDate = dateFormat.format(Instant.ofEpochMilli(rawDate).atZone(ZoneId.systemDefault()));
+			log.debug("Parsed {} in {} as {}", value, contentNode, formattedDate);
+			contentNode.putData(key + "_raw", rawDate);
+			contentNode.putData(key + "_formatted", formattedDate);
+		}
+	}
 
-				final long rawDate = parsedDate.getTime();
-				final String formattedDate = dateFormat.format(parsedDate);
-				log.debug("Parsed {} in {} as {}", value, contentNode, formattedDate);
-				contentNode.putData(key + "_raw", rawDate);
-				contentNode.putData(key + "_formatted", formattedDate);
-			}
+	private Long parseDateString(final Object inputDate) {
+		if (!(inputDate instanceof String)) {
+			return null;
 		}
 
-		private Date parseDateString(final Object inputDate) {
-			if (!(inputDate instanceof String)) {
-				return null;
+		final String cacheKey = options.cache != null ? StageCache.key(inputDate, LocalDate.now()) : null;
+		if (cacheKey != null) {
+			final String cachedDate = options.cache.getString(cacheStage, cacheKey);
+			if (cachedDate != null) {
+				try {
+					return Long.parseLong(cachedDate);
+				} catch (final NumberFormatException e) {
+					log.warn("Ignoring unexpected cached date {} for {}", cachedDate, inputDate);
+				}
 			}
+		}
 
-			final List<DateGroup> parsedDateGroups = natty.parse((String) inputDate);
-			if (parsedDateGroups.isEmpty()) {
-				return null;
-			}
+		final Long parsedDate = DateParser.parse((String) inputDate);
+		if (cacheKey != null && parsedDate != null) {
+			options.cache.putString(cacheStage, cacheKey, Long.toString(parsedDate));
+		}
+		return parsedDate;
+	}
 
-			final DateGroup parsedDateGroup = parsedDateGroups.get(0);
-			final List<Date> parsedDates = parsedDateGroup.getDates();
-			if (parsedDates.isEmpty()) {
-				return null;
-			}
+	/** Collects the nodes to parse, so that they can be parsed on more than one thread */
+	private static class DateParsingVisitor implements ContentVisitor {
+
+		private final List<ContentNode> nodes = new ArrayList<ContentNode>();
 
-			final Date parsedDate = parsedDates.get(0);
-			log.debug("Date {} parsed as {}", inputDate, parsedDate);
-			return parsedDate;
+		public List<ContentNode> getNodes() {
+			return nodes;
 		}
 
 		@Override
 		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
-			visit((ContentNode) contentDirectory, parents);
+			nodes.add(contentDirectory);
 		}
 
 		@Override
 		public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
-			visit((ContentNode) contentFile, parents);
+			nodes.add(contentFile);
 		}
 
 		@Override
 		public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
-			visit((ContentNode) contentFile, parents);
+			nodes.add(contentFile);
 		}
 	}
-}
 
+	public static class Options {
+		/** With more than one thread, the nodes are split between the threads */
+		public final int threads;
+		/**
+		 * Parsed dates are looked up in and stored to this cache, which may be null. Relative dates such as
+		 * "yesterday" depend on when they are parsed, so cached dates are only reused on the day they were parsed.
+		 */
+		public final StageCache cache;
+		/**
+		 * Runs the threads besides the calling one on this executor, shared with the rest of the build, rather than
+		 * on a pool of their own; may be null
+		 */
+		public final ExecutorService executor;
+
+		private static final int defaultThreads = 1;
+
+		public Options() {
+			this(defaultThreads);
+		}
+
+		public Options(final int threads) {
+			this(threads, null);
+		}
+
+		public Options(final int threads, final StageCache cache) {
+			this(threads, cache, null);
+		}
+
+		public Options(final int threads, final StageCache cache, final ExecutorService executor) {
+			this.threads = threads;
+			this.cache = cache;
+			this.executor = executor;
+		}
+	}
+}
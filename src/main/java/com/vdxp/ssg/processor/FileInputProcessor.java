@@ -5,22 +5,49 @@ import com.vdxp.ssg.content.ContentDirectory;
 import com.vdxp.ssg.content.ContentFile;
 import com.vdxp.ssg.content.ContentNode;
 import com.vdxp.ssg.content.ContentVisitor;
+import com.vdxp.ssg.content.FrontMatter;
 import com.vdxp.ssg.content.TextContentFile;
+import com.vdxp.ssg.content.Utf8Text;
+import com.vdxp.ssg.report.IoStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class FileInputProcessor {
 
 	private static final Logger log = LoggerFactory.getLogger(FileInputProcessor.class);
 
+	/** How much of a file is read first when looking for its front matter; most front matter fits */
+	private static final int headerReadSize = 4096;
+	/** Front matter that does not end within this many bytes is looked for in the whole text instead */
+	private static final int maxHeaderReadSize = 1 << 20;
+
 	private static final String[] textFileExtensions = {
 			".hbs",
 			".html",
@@ -28,10 +55,25 @@ public class FileInputProcessor {
 			".txt",
 	};
 
+	private final Options options;
+
+	public FileInputProcessor() {
+		this.options = new Options();
+	}
+
+	public FileInputProcessor(final Options options) {
+		this.options = options;
+	}
+
 	public ContentDirectory readContentRoot(final String contentRootPath) throws IOException {
 		final File contentRootFile = new File(contentRootPath);
 		if (contentRootFile.isDirectory()) {
-			final ContentDirectory contentRoot = readDirectory(contentRootFile);
+			final ContentDirectory contentRoot;
+			if (options.parallelism > 1) {
+				contentRoot = scanDirectory(contentRootFile.toPath());
+			} else {
+				contentRoot = readDirectory(contentRootFile);
+			}
 			contentRoot.accept(new ContentRootAnnotatingVisitor(contentRootPath));
 			return contentRoot;
 		}
@@ -51,6 +93,7 @@ public class FileInputProcessor {
 			return contentDirectory;
 		}
 
+		Arrays.sort(directoryEntries, new FileNameComparator());
 		for (final File entry : directoryEntries) {
 			if (entry.isFile()) {
 				if (entry.getName().startsWith(".")) {
@@ -70,6 +113,24 @@ public class FileInputProcessor {
 		return contentDirectory;
 	}
 
+	/**
+	 * Reads a directory the same way as {@link #readDirectory(File)}, but fans subdirectories out to
+	 * {@link Options#pool}, or to a fork-join pool of {@link Options#parallelism} threads. Each entry is stat'ed
+	 * exactly once.
+	 */
+	public ContentDirectory scanDirectory(final Path directory) {
+		if (options.pool != null) {
+			return options.pool.invoke(new ScanDirectoryTask(directory));
+		}
+
+		final ForkJoinPool pool = new ForkJoinPool(options.parallelism);
+		try {
+			return pool.invoke(new ScanDirectoryTask(directory));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
 	public ContentFile makeContentFile(final File file) {
 		if (fileHasTextExtension(file)) {
 			return new FileInputTextContentFile(file);
@@ -136,13 +197,28 @@ public class FileInputProcessor {
 		}
 	}
 
+	/**
+	 * A text file whose contents are only read from disk the first time {@link #getTextSequence()} is called. The
+	 * file is mapped rather than streamed, and the mapping is dropped as soon as the text has been read. UTF-8 files
+	 * are kept as {@link Utf8Text}, so their bytes are only copied; files in other charsets, or that are not valid
+	 * UTF-8, are decoded with {@link Options#charset}.
+	 *
+	 * The front matter of a UTF-8 file can be read on its own, reading no more of the file than it takes to find the
+	 * end of the front matter. Once it has been dealt with, the rest of the file is read from where it ends, if it is
+	 * needed at all.
+	 */
 	public class FileInputTextContentFile extends TextContentFile {
 		private final File sourceFile;
+		private boolean loaded = false;
+		/** Where the text starts in the file, after front matter that was read on its own */
+		private long textOffset = 0;
+		/** The file's size and modification time when its front matter was read on its own, to tell if it changed */
+		private long headerFileSize = -1;
+		private long headerFileModified = -1;
 
 		public FileInputTextContentFile(final File sourceFile) {
 			super(FileInputProcessor.getBasename(sourceFile), FileInputProcessor.getExtensions(sourceFile));
 			this.sourceFile = sourceFile;
-			setText(readSourceFile());
 		}
 
 		public File getSourceFile() {
@@ -154,26 +230,190 @@ public class FileInputProcessor {
 			return "Text file " + sourceFile.getPath();
 		}
 
-		private String readSourceFile() {
-			final FileReader reader = makeFileReader(sourceFile);
-			if (reader == null) {
-				return "";
+		/**
+		 * Throws an {@link IllegalStateException} if the file changed after its front matter was read, where
+		 * {@link #writeTo} throws an {@link IOException}, so that only this page fails to be written.
+		 */
+		@Override
+		public synchronized CharSequence getTextSequence() {
+			try {
+				load();
+			} catch (final IOException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+			return super.getTextSequence();
+		}
+
+		@Override
+		public void writeTo(final Writer writer) throws IOException {
+			load();
+			super.writeTo(writer);
+		}
+
+		@Override
+		public void writeTo(final WritableByteChannel channel) throws IOException {
+			load();
+			super.writeTo(channel);
+		}
+
+		@Override
+		public synchronized void setText(final CharSequence text) {
+			super.setText(text);
+			loaded = true;
+		}
+
+		private synchronized void load() throws IOException {
+			if (!loaded) {
+				super.setText(readSourceFile());
+				loaded = true;
+			}
+		}
+
+		public synchronized boolean isLoaded() {
+			return loaded;
+		}
+
+		/**
+		 * Finds the front matter of the text. If the file has not been read yet, only as much of it is read as it takes
+		 * to find the front matter, starting with {@link #headerReadSize} bytes and reading more as needed, up to
+		 * {@link #maxHeaderReadSize}; the text is not loaded. Past that, the text is loaded and searched as a whole.
+		 * Returns null if there is no front matter.
+		 */
+		@Override
+		public synchronized FrontMatter readFrontMatter() {
+			if (loaded || textOffset > 0 || !StandardCharsets.UTF_8.equals(options.charset)) {
+				return super.readFrontMatter();
+			}
+
+			final long modified = sourceFile.lastModified();
+			final FileChannel channel = makeFileChannel(sourceFile);
+			if (channel == null) {
+				return null;
+			}
+
+			try {
+				final long size = channel.size();
+				ByteBuffer buffer = ByteBuffer.allocate(headerReadSize);
+				while (buffer.capacity() < size) {
+					final Utf8Text header = readHeader(channel, buffer);
+					if (header == null) {
+						break;
+					}
+					final FrontMatter frontMatter = FrontMatter.scan(header, false);
+					if (frontMatter != FrontMatter.incomplete) {
+						log.debug("Read the front matter of {} from its first {} bytes", sourceFile, buffer.position());
+						headerFileSize = size;
+						headerFileModified = modified;
+						return frontMatter;
+					}
+					if (buffer.capacity() >= maxHeaderReadSize) {
+						log.debug("No end of the front matter in the first {} bytes of {}, reading all of it", buffer.capacity(), sourceFile);
+						break;
+					}
+
+					/* Keep what was read and only read the bytes after it */
+					final ByteBuffer largerBuffer = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, maxHeaderReadSize));
+					buffer.flip();
+					largerBuffer.put(buffer);
+					buffer = largerBuffer;
+				}
+			} catch (final IOException e) {
+				log.error("Could not read file {}", sourceFile.getAbsolutePath(), e);
+				return null;
+			} finally {
+				try {
+					channel.close();
+				} catch (final IOException e) {
+					log.error("Could not close file {}", sourceFile.getAbsoluteFile(), e);
+				}
+			}
+			return super.readFrontMatter();
+		}
+
+		/**
+		 * Drops the front matter found by {@link #readFrontMatter()} from the text. If the text has not been loaded,
+		 * it will be read from the end of the front matter on. If the file has changed since its front matter was
+		 * read by then, reading the text fails, since the node's data came from the old front matter.
+		 */
+		@Override
+		public synchronized void skipFrontMatter(final FrontMatter frontMatter) {
+			if (loaded || headerFileSize < 0) {
+				super.skipFrontMatter(frontMatter);
+			} else {
+				textOffset = Utf8Text.encode(frontMatter.getHeader()).byteLength();
+			}
+		}
+
+		/**
+		 * Fills the rest of {@code buffer} from the file, which holds the bytes from the start of the file up to its
+		 * position, and returns all of them but the character that may have been cut in two. Returns null if they are
+		 * not valid UTF-8.
+		 */
+		private Utf8Text readHeader(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+			final int start = buffer.position();
+			while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+				/* Keep reading until the buffer is full */
+			}
+			IoStatistics.addBytesRead(buffer.position() - start);
+
+			int end = buffer.position();
+			if (end > 0 && buffer.get(end - 1) < 0) {
+				end--;
+				while (end > 0 && (buffer.get(end) & 0xc0) == 0x80) {
+					end--;
+				}
 			}
+			final ByteBuffer header = buffer.duplicate();
+			header.flip();
+			header.limit(end);
+			try {
+				return Utf8Text.wrap(header);
+			} catch (final CharacterCodingException e) {
+				return null;
+			}
+		}
 
-			final StringBuilder sb = new StringBuilder();
-			final char[] buf = new char[8192];
+		/**
+		 * Reads the text, logging any error reading it and returning no text. Throws an {@link IOException} only if
+		 * the file changed after its front matter was read, since the data parsed from the old front matter no longer
+		 * matches the file and the page cannot be built.
+		 */
+		private CharSequence readSourceFile() throws IOException {
+			log.debug("Reading {}", sourceFile);
+
+			final long modified = sourceFile.lastModified();
+			if (textOffset > 0 && (sourceFile.length() != headerFileSize || modified != headerFileModified)) {
+				textOffset = 0;
+				headerFileSize = -1;
+				headerFileModified = -1;
+				throw new IOException(sourceFile + " changed after its front matter was read");
+			}
+
+			final FileChannel channel = makeFileChannel(sourceFile);
+			if (channel == null) {
+				return "";
+			}
 
 			try {
-				int length = 0;
-				while ((length = reader.read(buf)) != -1) {
-					sb.append(buf, 0, length);
+				final long offset = Math.min(textOffset, channel.size());
+				final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, channel.size() - offset);
+				IoStatistics.addBytesRead(buffer.remaining());
+				if (StandardCharsets.UTF_8.equals(options.charset)) {
+					final byte[] bytes = new byte[buffer.remaining()];
+					buffer.get(bytes);
+					try {
+						return Utf8Text.wrap(bytes);
+					} catch (final CharacterCodingException e) {
+						log.debug("{} is not valid UTF-8, decoding it with replacements", sourceFile);
+						buffer.rewind();
+					}
 				}
-				return sb.toString();
+				return options.charset.decode(buffer).toString();
 			} catch (final IOException e) {
 				log.error("Could not read file {}", sourceFile.getAbsolutePath(), e);
 			} finally {
 				try {
-					reader.close();
+					channel.close();
 				} catch (final IOException e) {
 					log.error("Could not close file {}", sourceFile.getAbsoluteFile(), e);
 				}
@@ -181,9 +421,9 @@ public class FileInputProcessor {
 			return "";
 		}
 
-		private FileReader makeFileReader(final File file) {
+		private FileChannel makeFileChannel(final File file) {
 			try {
-				return new FileReader(file);
+				return new FileInputStream(file).getChannel();
 			} catch (final FileNotFoundException e) {
 				log.error("Could not open file {}", file.getAbsolutePath(), e);
 				return null;
@@ -191,6 +431,128 @@ public class FileInputProcessor {
 		}
 	}
 
+	private class ScanDirectoryTask extends RecursiveTask<ContentDirectory> {
+		private final Path directory;
+
+		public ScanDirectoryTask(final Path directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		protected ContentDirectory compute() {
+			final ContentDirectory contentDirectory = new ContentDirectory(directory.getFileName().toString());
+
+			final List<Path> directoryEntries = listDirectory(directory);
+			if (directoryEntries == null) {
+				log.error("Unable to read directory {}", directory);
+				return contentDirectory;
+			}
+
+			/*
+			 * Files are only stat'ed and wrapped here, which is not worth a task; they are read in parallel later, when
+			 * their front matter is. Null stands for a subdirectory being scanned.
+			 */
+			final List<ContentNode> entryNodes = new ArrayList<ContentNode>();
+			final List<ScanDirectoryTask> directoryTasks = new ArrayList<ScanDirectoryTask>();
+			for (final Path entry : directoryEntries) {
+				final BasicFileAttributes attributes;
+				try {
+					attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+				} catch (final IOException e) {
+					log.error("Could not read attributes of {}", entry, e);
+					continue;
+				}
+
+				if (attributes.isRegularFile()) {
+					if (entry.getFileName().toString().startsWith(".")) {
+						log.debug("Skipping dotfile {}", entry);
+						continue;
+					}
+					log.debug("Loading {}", entry);
+					entryNodes.add(makeContentFile(entry.toFile()));
+				}
+				if (attributes.isDirectory()) {
+					final ScanDirectoryTask directoryTask = new ScanDirectoryTask(entry);
+					directoryTask.fork();
+					directoryTasks.add(directoryTask);
+					entryNodes.add(null);
+				}
+			}
+
+			final Iterator<ScanDirectoryTask> directoryTaskIterator = directoryTasks.iterator();
+			for (final ContentNode entryNode : entryNodes) {
+				contentDirectory.addChild(entryNode != null ? entryNode : directoryTaskIterator.next().join());
+			}
+
+			return contentDirectory;
+		}
+
+		private List<Path> listDirectory(final Path directory) {
+			final List<Path> entries = new ArrayList<Path>();
+			try {
+				final DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+				try {
+					for (final Path entry : stream) {
+						entries.add(entry);
+					}
+				} finally {
+					stream.close();
+				}
+			} catch (final IOException e) {
+				log.error("Could not list directory {}", directory, e);
+				return null;
+			} catch (final DirectoryIteratorException e) {
+				log.error("Could not list directory {}", directory, e.getCause());
+				return null;
+			}
+
+			Collections.sort(entries, new PathNameComparator());
+			return entries;
+		}
+	}
+
+	private static class FileNameComparator implements Comparator<File> {
+		@Override
+		public int compare(final File left, final File right) {
+			return left.getName().compareTo(right.getName());
+		}
+	}
+
+	private static class PathNameComparator implements Comparator<Path> {
+		@Override
+		public int compare(final Path left, final Path right) {
+			return left.getFileName().toString().compareTo(right.getFileName().toString());
+		}
+	}
+
+	public static class Options {
+		public final int parallelism;
+		public final Charset charset;
+		/** Scans directories on this pool, shared with the rest of the build, rather than on a pool of its own; may be null */
+		public final ForkJoinPool pool;
+
+		private static final int defaultParallelism = 1;
+		private static final Charset defaultCharset = StandardCharsets.UTF_8;
+
+		public Options() {
+			this(defaultParallelism);
+		}
+
+		public Options(final int parallelism) {
+			this(parallelism, defaultCharset);
+		}
+
+		public Options(final int parallelism, final Charset charset) {
+			this(parallelism, charset, null);
+		}
+
+		public Options(final int parallelism, final Charset charset, final ForkJoinPool pool) {
+			this.parallelism = parallelism;
+			this.charset = charset;
+			this.pool = pool;
+		}
+	}
+
 	private static class ContentRootAnnotatingVisitor implements ContentVisitor {
 		private final String contentRoot;
 
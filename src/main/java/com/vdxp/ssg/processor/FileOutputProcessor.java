@@ -1,36 +1,371 @@
 package com.vdxp.ssg.processor;
 
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.vdxp.ssg.content.BinaryContentFile;
 import com.vdxp.ssg.content.ContentDirectory;
 import com.vdxp.ssg.content.ContentFile;
 import com.vdxp.ssg.content.ContentNode;
 import com.vdxp.ssg.content.ContentVisitor;
 import com.vdxp.ssg.content.TextContentFile;
+import com.vdxp.ssg.report.IoStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class FileOutputProcessor {
 
 	private static final Logger log = LoggerFactory.getLogger(FileOutputProcessor.class);
 
-	public void writeContentRoot(final ContentNode contentNode) {
-		contentNode.accept(new FileOutputVisitor());
+	/** Version directories are named after the output directory, with this and a time after it */
+	private static final String versionSuffix = ".build-";
+
+	private final Options options;
+
+	public FileOutputProcessor() {
+		this.options = new Options();
+	}
+
+	public FileOutputProcessor(final Options options) {
+		this.options = options;
+	}
+
+	public List<ContentNode> writeContentRoot(final ContentNode contentNode) {
+		return writeContentRoot(contentNode, Predicates.<ContentNode>alwaysTrue());
+	}
+
+	/**
+	 * Writes only the files accepted by {@code filter}. Directories are always created. Files that are filtered out
+	 * are assumed to be up to date on disk already, so they are never pruned, and are carried over into the new
+	 * version directory when {@link Options#atomicSwap} is set.
+	 *
+	 * Returns the files that could not be written, whose previous output, if any, may still be there. When a new
+	 * version directory cannot be swapped in, that is every file that was to be written.
+	 */
+	public List<ContentNode> writeContentRoot(final ContentNode contentNode, final Predicate<? super ContentNode> filter) {
+		final String liveRoot = contentNode.getName();
+		final String outputRoot = options.atomicSwap ? makeVersionPath(liveRoot) : liveRoot;
+
+		if (options.atomicSwap) {
+			deleteUnusedVersions(new File(liveRoot));
+		}
+
+		final Precompressor precompressor = options.precompress != null ? new Precompressor(options.precompress) : null;
+		final FileOutputVisitor visitor = new FileOutputVisitor(filter, liveRoot, outputRoot, precompressor);
+		try {
+			contentNode.accept(visitor);
+			visitor.awaitCompressedFiles();
+		} finally {
+			if (precompressor != null) {
+				precompressor.close();
+			}
+		}
+
+		if (options.atomicSwap) {
+			if (!swapIntoPlace(new File(outputRoot), new File(liveRoot))) {
+				return visitor.getWrittenNodes();
+			}
+		} else if (options.pruneOrphans) {
+			pruneOrphans(new File(liveRoot), visitor.getExpectedPaths());
+		}
+		return visitor.getFailedNodes();
+	}
+
+	/**
+	 * Points the live output path at a newly written version directory. The live path is a symbolic link to the
+	 * version being served, and a new link is renamed over it, so the output is always there, either all of the old
+	 * version or all of the new one. The old version is deleted afterwards.
+	 *
+	 * An output directory written before builds were swapped in is not a link yet. It is moved aside for the first
+	 * link, and so is every version where symbolic links are not supported; see {@link #moveIntoPlace}. Returns
+	 * whether the new version is in place.
+	 */
+	private static boolean swapIntoPlace(final File versionDirectory, final File liveDirectory) {
+		final Path live = liveDirectory.toPath();
+		final Path link = new File(liveDirectory.getPath() + ".link").toPath();
+		try {
+			Files.deleteIfExists(link);
+			Files.createSymbolicLink(link, versionDirectory.toPath().getFileName());
+		} catch (final IOException e) {
+			log.warn("Could not link {} to {}, moving it into place instead", liveDirectory.getPath(), versionDirectory.getPath(), e);
+			return moveIntoPlace(versionDirectory, liveDirectory);
+		} catch (final UnsupportedOperationException e) {
+			log.warn("Could not link {} to {}, moving it into place instead", liveDirectory.getPath(), versionDirectory.getPath(), e);
+			return moveIntoPlace(versionDirectory, liveDirectory);
+		}
+
+		if (Files.isDirectory(live, LinkOption.NOFOLLOW_LINKS)) {
+			if (!moveIntoPlace(link.toFile(), liveDirectory)) {
+				deleteRecursively(link.toFile());
+				return false;
+			}
+			return true;
+		}
+
+		try {
+			final Path previousVersion = Files.isSymbolicLink(live) ? live.resolveSibling(Files.readSymbolicLink(live)) : null;
+			Files.move(link, live, StandardCopyOption.ATOMIC_MOVE);
+			log.info("Switched {} to {}", liveDirectory.getPath(), versionDirectory.getPath());
+			if (previousVersion != null && !previousVersion.equals(versionDirectory.toPath())) {
+				deleteRecursively(previousVersion.toFile());
+			}
+			return true;
+		} catch (final IOException e) {
+			log.error("Could not switch {} to {}, it still shows the previous version", liveDirectory.getAbsolutePath(), versionDirectory.getAbsolutePath(), e);
+			deleteRecursively(link.toFile());
+			return false;
+		}
+	}
+
+	/**
+	 * Replaces the live output with {@code replacement} by moving the live output aside first. Between the two
+	 * renames the live path does not exist; if the second one fails, the live output is moved back. Returns whether
+	 * the replacement is in place.
+	 */
+	private static boolean moveIntoPlace(final File replacement, final File liveDirectory) {
+		final File oldDirectory = new File(liveDirectory.getPath() + ".old");
+		deleteRecursively(oldDirectory);
+
+		final boolean liveExists = Files.exists(liveDirectory.toPath(), LinkOption.NOFOLLOW_LINKS);
+		try {
+			if (liveExists) {
+				Files.move(liveDirectory.toPath(), oldDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+		} catch (final IOException e) {
+			log.error("Could not move {} aside, it still shows the previous version", liveDirectory.getAbsolutePath(), e);
+			return false;
+		}
+
+		try {
+			Files.move(replacement.toPath(), liveDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			log.info("Moved {} into place as {}", replacement.getPath(), liveDirectory.getPath());
+		} catch (final IOException e) {
+			log.error("Could not move {} into place as {}", replacement.getAbsolutePath(), liveDirectory.getAbsolutePath(), e);
+			if (liveExists) {
+				try {
+					Files.move(oldDirectory.toPath(), liveDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+					log.info("Moved the previous version back into place as {}", liveDirectory.getPath());
+				} catch (final IOException e2) {
+					log.error("Could not move {} back into place, the previous version is left there", oldDirectory.getAbsolutePath(), e2);
+				}
+			}
+			return false;
+		}
+
+		deleteRecursively(oldDirectory);
+		return true;
+	}
+
+	/** Returns the path of a version directory that does not exist yet. */
+	private static String makeVersionPath(final String liveRoot) {
+		long version = System.currentTimeMillis();
+		while (new File(liveRoot + versionSuffix + version).exists()) {
+			version++;
+		}
+		return liveRoot + versionSuffix + version;
+	}
+
+	/** Deletes version directories left behind by builds that never got swapped in. */
+	private static void deleteUnusedVersions(final File liveDirectory) {
+		final File parent = liveDirectory.getAbsoluteFile().getParentFile();
+		final String versionPrefix = liveDirectory.getName() + versionSuffix;
+		final File[] siblings = parent.listFiles();
+		if (siblings == null) {
+			return;
+		}
+
+		Path liveVersion = null;
+		try {
+			if (Files.isSymbolicLink(liveDirectory.toPath())) {
+				liveVersion = liveDirectory.getAbsoluteFile().toPath().resolveSibling(Files.readSymbolicLink(liveDirectory.toPath()));
+			}
+		} catch (final IOException e) {
+			log.warn("Could not read where {} links to, keeping every version", liveDirectory.getAbsolutePath(), e);
+			return;
+		}
+
+		for (final File sibling : siblings) {
+			if (sibling.getName().startsWith(versionPrefix) && !sibling.toPath().equals(liveVersion)) {
+				log.info("Deleting unused output version {}", sibling);
+				deleteRecursively(sibling);
+			}
+		}
+	}
+
+	/** When building into a version directory, carries an up-to-date live file over by linking (or copying) it. */
+	static void retainLiveFile(final File liveFile, final File file) {
+		if (liveFile.equals(file)) {
+			return;
+		}
+		if (!liveFile.isFile()) {
+			log.warn("Expected {} to exist already, but it does not", liveFile.getAbsolutePath());
+			return;
+		}
+
+		try {
+			Files.createLink(file.toPath(), liveFile.toPath());
+		} catch (final IOException e) {
+			log.debug("Could not link {} to {}, copying instead", liveFile, file, e);
+			try {
+				Files.copy(liveFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+				IoStatistics.addBytesWritten(liveFile.length());
+			} catch (final IOException e2) {
+				log.error("Could not copy {} to {}", liveFile.getAbsolutePath(), file.getAbsolutePath(), e2);
+			}
+		}
+	}
+
+	/**
+	 * Deletes whatever is not in {@code expectedPaths}. The live directory may be a link to the version built last
+	 * with {@link Options#atomicSwap}; its contents are compared by their path through the link.
+	 */
+	private static void pruneOrphans(final File liveDirectory, final Set<Path> expectedPaths) {
+		if (!liveDirectory.isDirectory()) {
+			return;
+		}
+
+		try {
+			final Path liveRoot = normalize(liveDirectory);
+			final Path realRoot = liveRoot.toRealPath();
+			Files.walkFileTree(realRoot, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) throws IOException {
+					if (!expectedPaths.contains(liveRoot.resolve(realRoot.relativize(file)))) {
+						log.info("Deleting orphaned file {}", file);
+						Files.delete(file);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(final Path directory, final IOException e) throws IOException {
+					if (e != null) {
+						throw e;
+					}
+					if (!expectedPaths.contains(liveRoot.resolve(realRoot.relativize(directory)))) {
+						log.info("Deleting orphaned directory {}", directory);
+						Files.delete(directory);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (final IOException e) {
+			log.error("Could not prune orphaned files from {}", liveDirectory.getAbsolutePath(), e);
+		}
+	}
+
+	private static void deleteRecursively(final File directory) {
+		if (!directory.exists()) {
+			return;
+		}
+
+		try {
+			Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) throws IOException {
+					Files.delete(file);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(final Path directory, final IOException e) throws IOException {
+					if (e != null) {
+						throw e;
+					}
+					Files.delete(directory);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (final IOException e) {
+			log.error("Could not delete {}", directory.getAbsolutePath(), e);
+		}
+	}
+
+	private static Path normalize(final File file) {
+		return file.toPath().toAbsolutePath().normalize();
 	}
 
 	private class FileOutputVisitor implements ContentVisitor {
 
+		private final Predicate<? super ContentNode> filter;
+		private final String liveRoot;
+		private final String outputRoot;
+		private final Precompressor precompressor;
+		private final Set<Path> expectedPaths = new HashSet<Path>();
+		private final List<ContentNode> writtenNodes = new ArrayList<ContentNode>();
+		private final List<ContentNode> failedNodes = new ArrayList<ContentNode>();
+		private final List<Future<File>> compressedFiles = new ArrayList<Future<File>>();
+
+		public FileOutputVisitor(final Predicate<? super ContentNode> filter, final String liveRoot, final String outputRoot, final Precompressor precompressor) {
+			this.filter = filter;
+			this.liveRoot = liveRoot;
+			this.outputRoot = outputRoot;
+			this.precompressor = precompressor;
+		}
+
+		public Set<Path> getExpectedPaths() {
+			return expectedPaths;
+		}
+
+		/** The files accepted by the filter, whether or not they could be written */
+		public List<ContentNode> getWrittenNodes() {
+			return writtenNodes;
+		}
+
+		public List<ContentNode> getFailedNodes() {
+			return failedNodes;
+		}
+
+		/** Waits for the compressed copies of the files written so far, which are expected in the output as well. */
+		public void awaitCompressedFiles() {
+			for (final Future<File> compressedFile : compressedFiles) {
+				try {
+					final File file = compressedFile.get();
+					if (file != null) {
+						expectedPaths.add(normalize(file));
+					}
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while compressing files", e);
+				} catch (final ExecutionException e) {
+					log.error("Could not compress a file", e.getCause());
+				}
+			}
+			compressedFiles.clear();
+		}
+
 		@Override
 		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
-			final String filePath = makeFilePath(parents, contentDirectory);
+			final String filePath = makeFilePath(outputRoot, parents, contentDirectory);
 			final File file = new File(filePath);
+			expectedPaths.add(normalize(file));
 			if (file.exists()) {
 				if (!file.isDirectory()) {
 					log.error("The path {} already exists but is not a directory.", file.getAbsolutePath());
@@ -55,57 +390,237 @@ public class FileOutputProcessor {
 		}
 
 		public void visit(final ContentFile contentFile, final List<ContentNode> parents) {
-			final String filePath = makeFilePath(parents, contentFile);
+			final String filePath = makeFilePath(outputRoot, parents, contentFile);
 			final File file = new File(filePath);
+			final File liveFile = new File(makeFilePath(liveRoot, parents, contentFile));
+			expectedPaths.add(normalize(file));
+
+			if (!filter.apply(contentFile)) {
+				log.debug("Skipping {}: filtered out", contentFile);
+				retainLiveFile(liveFile, file);
+				precompress(file, liveFile, null);
+				return;
+			}
+
+			writtenNodes.add(contentFile);
 			if (file.exists() && !file.isFile()) {
 				log.error("The path {} already exists but is not a file.", file.getAbsolutePath());
+				failedNodes.add(contentFile);
 				return;
 			}
 
-			log.debug("Writing {} to {}", contentFile, filePath);
-
-			final InputStream input = makeInputStream(contentFile);
-			final FileOutputStream output = makeFileOutputStream(file);
-
-			if (input == null || output == null) {
+			if (contentFile instanceof FileInputProcessor.FileInputBinaryContentFile) {
+				final File sourceFile = ((FileInputProcessor.FileInputBinaryContentFile) contentFile).getSourceFile();
+				if (copySourceFile(sourceFile, liveFile, file)) {
+					precompress(file, liveFile, null);
+				} else {
+					failedNodes.add(contentFile);
+				}
 				return;
 			}
 
-			final byte[] buf = new byte[8192];
+			if (!options.skipUnchanged) {
+				log.debug("Writing {} to {}", contentFile, filePath);
+				if (writeFile(contentFile, file)) {
+					precompress(file, liveFile, null);
+				} else {
+					failedNodes.add(contentFile);
+				}
+				return;
+			}
 
+			final File temporaryFile = new File(filePath + ".ssg-tmp");
+			final Hasher hasher = Hashing.sha1().newHasher();
+			final ComparingChannel channel = new ComparingChannel(liveFile, temporaryFile);
+			final boolean unchanged;
 			try {
-				int length = 0;
-				while ((length = input.read(buf)) != -1) {
-					output.write(buf, 0, length);
+				if (!writeContents(contentFile, new HashingChannel(channel, hasher), temporaryFile)) {
+					deleteTemporaryFile(temporaryFile);
+					failedNodes.add(contentFile);
+					return;
 				}
+				unchanged = channel.finish();
 			} catch (final IOException e) {
-				log.error("Could not write file {}", file.getAbsolutePath(), e);
+				log.error("Could not write file {}", temporaryFile.getAbsolutePath(), e);
+				deleteTemporaryFile(temporaryFile);
+				failedNodes.add(contentFile);
+				return;
 			} finally {
+				closeOutput(channel, temporaryFile);
+			}
+
+			final HashCode hash = hasher.hash();
+			if (unchanged) {
+				log.debug("Not writing {}: {} is unchanged", contentFile, liveFile.getPath());
+				retainLiveFile(liveFile, file);
+				precompress(file, liveFile, hash);
+				return;
+			}
+
+			log.debug("Writing {} to {}", contentFile, filePath);
+			if (replaceWithTemporaryFile(temporaryFile, file)) {
+				precompress(file, liveFile, hash);
+			} else {
+				failedNodes.add(contentFile);
+			}
+		}
+
+		/**
+		 * Copies a file-backed binary without passing its contents through the JVM heap. With
+		 * {@link Options#linkBinaries}, a hard link is attempted first; this only works when the source and output
+		 * share a filesystem, and means the output must never be edited in place. Copies keep the source's
+		 * modification time, which is what {@link Options#skipUnchanged} compares against. Returns whether the file
+		 * is in the output.
+		 */
+		private boolean copySourceFile(final File sourceFile, final File liveFile, final File file) {
+			if (options.skipUnchanged && liveFile.isFile()
+					&& liveFile.length() == sourceFile.length() && liveFile.lastModified() == sourceFile.lastModified()) {
+				log.debug("Not copying {}: {} is unchanged", sourceFile, liveFile.getPath());
+				retainLiveFile(liveFile, file);
+				return true;
+			}
+
+			final Path source = sourceFile.toPath();
+			final Path target = file.toPath();
+
+			if (options.linkBinaries) {
 				try {
-					input.close();
+					if (Files.exists(target) && Files.isSameFile(source, target)) {
+						log.debug("{} is already linked to {}", file, sourceFile);
+						return true;
+					}
+					log.debug("Linking {} to {}", sourceFile, file);
+					Files.deleteIfExists(target);
+					Files.createLink(target, source);
+					return true;
 				} catch (final IOException e) {
-					log.error("Could not close input {}", contentFile, e);
+					log.debug("Could not link {} to {}, copying instead", sourceFile, file, e);
+				} catch (final UnsupportedOperationException e) {
+					log.debug("Could not link {} to {}, copying instead", sourceFile, file, e);
+				}
+			}
+
+			try {
+				log.debug("Copying {} to {}", sourceFile, file);
+				Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+				IoStatistics.addBytesWritten(sourceFile.length());
+				return true;
+			} catch (final IOException e) {
+				log.error("Could not copy {} to {}", sourceFile.getAbsolutePath(), file.getAbsolutePath(), e);
+				return false;
+			}
+		}
+
+		/** Has a compressed copy of {@code file} made alongside it, if it is of a type that gets one. */
+		private void precompress(final File file, final File liveFile, final HashCode hash) {
+			if (precompressor != null && precompressor.accepts(file)) {
+				compressedFiles.add(precompressor.submit(file, liveFile, hash));
+			}
+		}
+
+		/**
+		 * Writes the contents of a file into a temporary file next to {@code file} and moves it into place, so a file
+		 * that fails to render never leaves a partial page behind.
+		 */
+		private boolean writeFile(final ContentFile contentFile, final File file) {
+			final File temporaryFile = new File(file.getPath() + ".ssg-tmp");
+			final FileOutputStream output = makeFileOutputStream(temporaryFile);
+			if (output == null) {
+				return false;
+			}
+
+			final HashingChannel channel = new HashingChannel(output.getChannel(), null);
+			final boolean written;
+			try {
+				written = writeContents(contentFile, channel, temporaryFile);
+			} finally {
+				IoStatistics.addBytesWritten(channel.getBytesWritten());
+				closeOutput(output.getChannel(), temporaryFile);
+			}
+			if (!written) {
+				deleteTemporaryFile(temporaryFile);
+				return false;
+			}
+			return replaceWithTemporaryFile(temporaryFile, file);
+		}
+
+		/** Replaces {@code file} with a temporary file that was written completely. */
+		private boolean replaceWithTemporaryFile(final File temporaryFile, final File file) {
+			try {
+				Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				return true;
+			} catch (final IOException e) {
+				log.error("Could not write file {}", file.getAbsolutePath(), e);
+				deleteTemporaryFile(temporaryFile);
+				return false;
+			}
+		}
+
+		/**
+		 * Writes the contents of a file to {@code channel}, rendering text on the way if its rendering was deferred.
+		 * {@code file} is only named when writing fails. A page that fails to render, such as in its outermost layout,
+		 * is logged and reported as not written like any other page that could not be written.
+		 */
+		private boolean writeContents(final ContentFile contentFile, final WritableByteChannel channel, final File file) {
+			try {
+				if (contentFile instanceof TextContentFile) {
+					((TextContentFile) contentFile).writeTo(channel);
+					return true;
+				}
+
+				final InputStream input = makeInputStream(contentFile);
+				if (input == null) {
+					return false;
 				}
 				try {
-					output.close();
-				} catch (final IOException e) {
-					log.error("Could not close output file {}", file.getAbsolutePath(), e);
+					ByteStreams.copy(Channels.newChannel(input), channel);
+					return true;
+				} finally {
+					closeInput(contentFile, input);
 				}
+			} catch (final IOException e) {
+				log.error("Could not write file {}", file.getAbsolutePath(), e);
+				return false;
+			} catch (final RuntimeException e) {
+				log.error("Could not render {}", contentFile, e);
+				return false;
+			}
+		}
+
+		private void closeOutput(final WritableByteChannel output, final File file) {
+			try {
+				output.close();
+			} catch (final IOException e) {
+				log.error("Could not close output file {}", file.getAbsolutePath(), e);
+			}
+		}
+
+		private void closeInput(final ContentFile contentFile, final InputStream input) {
+			try {
+				input.close();
+			} catch (final IOException e) {
+				log.error("Could not close input {}", contentFile, e);
 			}
 		}
 
-		private String makeFilePath(final Collection<ContentNode> nodes, final ContentNode leaf) {
-			final StringBuilder path = new StringBuilder();
-			for (final ContentNode node : nodes) {
+		private void deleteTemporaryFile(final File temporaryFile) {
+			if (temporaryFile.exists() && !temporaryFile.delete()) {
+				log.warn("Could not delete temporary file {}", temporaryFile.getAbsolutePath());
+			}
+		}
+
+		private String makeFilePath(final String rootPath, final List<ContentNode> nodes, final ContentNode leaf) {
+			final StringBuilder path = new StringBuilder(rootPath);
+			for (final ContentNode node : nodes.subList(Math.min(1, nodes.size()), nodes.size())) {
 				path.append(File.separator);
 				path.append(node.getName());
 			}
-			if (leaf != null) {
+			if (leaf != null && !nodes.isEmpty()) {
 				path.append(File.separator);
 				path.append(leaf.getName());
 			}
 
-			return path.toString().substring(File.separator.length());
+			return path.toString();
 		}
 
 		private InputStream makeInputStream(final ContentFile file) {
@@ -127,4 +642,210 @@ public class FileOutputProcessor {
 		}
 	}
 
+	/** Passes writes on to a channel, counting the bytes and feeding them to a hasher if one is given. */
+	private static class HashingChannel implements WritableByteChannel {
+		private final WritableByteChannel channel;
+		private final Hasher hasher;
+		private long bytesWritten = 0;
+
+		public HashingChannel(final WritableByteChannel channel, final Hasher hasher) {
+			this.channel = channel;
+			this.hasher = hasher;
+		}
+
+		public long getBytesWritten() {
+			return bytesWritten;
+		}
+
+		@Override
+		public int write(final ByteBuffer source) throws IOException {
+			final ByteBuffer written = source.duplicate();
+			final int length = channel.write(source);
+			bytesWritten += length;
+			if (hasher != null && length > 0) {
+				written.limit(written.position() + length);
+				if (written.hasArray()) {
+					hasher.putBytes(written.array(), written.arrayOffset() + written.position(), length);
+				} else {
+					/* Read-only and off-heap text, such as pages from a page store, is hashed a chunk at a time */
+					final byte[] chunk = new byte[Math.min(length, 8192)];
+					while (written.hasRemaining()) {
+						final int chunkLength = Math.min(chunk.length, written.remaining());
+						written.get(chunk, 0, chunkLength);
+						hasher.putBytes(chunk, 0, chunkLength);
+					}
+				}
+			}
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Compares the bytes written to it with the live file, and only starts writing them to a temporary file once the
+	 * two differ. The part that was the same up to then is copied over from the live file without passing through the
+	 * heap. An unchanged file is thus only read, never written.
+	 */
+	private static class ComparingChannel implements WritableByteChannel {
+		private final File liveFile;
+		private final File temporaryFile;
+		private final ByteBuffer liveBytes = ByteBuffer.allocate(8192);
+		private FileChannel live;
+		private FileChannel output;
+		/** How many bytes have been written to the channel */
+		private long position = 0;
+		private long bytesRead = 0;
+		private long bytesWritten = 0;
+		private boolean open = true;
+
+		public ComparingChannel(final File liveFile, final File temporaryFile) {
+			this.liveFile = liveFile;
+			this.temporaryFile = temporaryFile;
+		}
+
+		@Override
+		public int write(final ByteBuffer source) throws IOException {
+			if (output == null && !matchesLive(source)) {
+				startWriting();
+			}
+
+			if (output == null) {
+				final int length = source.remaining();
+				source.position(source.limit());
+				position += length;
+				return length;
+			}
+			final int length = output.write(source);
+			position += length;
+			bytesWritten += length;
+			return length;
+		}
+
+		/**
+		 * Returns whether everything written was the same as the live file. If not, it is all in the temporary file
+		 * now.
+		 */
+		public boolean finish() throws IOException {
+			if (output == null && live != null && live.size() == position) {
+				return true;
+			}
+			if (output == null) {
+				startWriting();
+			}
+			return false;
+		}
+
+		private boolean matchesLive(final ByteBuffer source) throws IOException {
+			if (live == null) {
+				if (!liveFile.isFile()) {
+					return false;
+				}
+				live = new FileInputStream(liveFile).getChannel();
+			}
+
+			final ByteBuffer expected = source.duplicate();
+			long livePosition = position;
+			while (expected.hasRemaining()) {
+				liveBytes.clear();
+				liveBytes.limit(Math.min(liveBytes.capacity(), expected.remaining()));
+				final int length = live.read(liveBytes, livePosition);
+				if (length <= 0) {
+					return false;
+				}
+				bytesRead += length;
+				livePosition += length;
+
+				liveBytes.flip();
+				final ByteBuffer expectedChunk = expected.duplicate();
+				expectedChunk.limit(expectedChunk.position() + length);
+				if (!liveBytes.equals(expectedChunk)) {
+					return false;
+				}
+				expected.position(expectedChunk.limit());
+			}
+			return true;
+		}
+
+		/** Opens the temporary file and copies the bytes that matched the live file into it. */
+		private void startWriting() throws IOException {
+			output = new FileOutputStream(temporaryFile).getChannel();
+			long copied = 0;
+			while (copied < position) {
+				final long length = live.transferTo(copied, position - copied, output);
+				if (length <= 0) {
+					throw new IOException(liveFile + " changed while it was compared");
+				}
+				copied += length;
+			}
+			bytesWritten += position;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() throws IOException {
+			open = false;
+			IoStatistics.addBytesRead(bytesRead);
+			IoStatistics.addBytesWritten(bytesWritten);
+			try {
+				if (live != null) {
+					live.close();
+				}
+			} finally {
+				if (output != null) {
+					output.close();
+				}
+			}
+		}
+	}
+
+	public static class Options {
+		public final boolean linkBinaries;
+		/** Leave output files alone when their contents would not change, so their modification times are kept */
+		public final boolean skipUnchanged;
+		/** Delete files and directories in the output directory that no content node was written to */
+		public final boolean pruneOrphans;
+		/**
+		 * Build into a new version directory next to the output directory, and switch the output directory, a
+		 * symbolic link, over to it at the end
+		 */
+		public final boolean atomicSwap;
+		/** How to write compressed copies of text files next to them; null to write none */
+		public final Precompressor.Options precompress;
+
+		private static final boolean defaultLinkBinaries = false;
+
+		public Options() {
+			this(defaultLinkBinaries);
+		}
+
+		public Options(final boolean linkBinaries) {
+			this(linkBinaries, false, false, false);
+		}
+
+		public Options(final boolean linkBinaries, final boolean skipUnchanged, final boolean pruneOrphans, final boolean atomicSwap) {
+			this(linkBinaries, skipUnchanged, pruneOrphans, atomicSwap, null);
+		}
+
+		public Options(final boolean linkBinaries, final boolean skipUnchanged, final boolean pruneOrphans, final boolean atomicSwap, final Precompressor.Options precompress) {
+			this.linkBinaries = linkBinaries;
+			this.skipUnchanged = skipUnchanged;
+			this.pruneOrphans = pruneOrphans;
+			this.atomicSwap = atomicSwap;
+			this.precompress = precompress;
+		}
+	}
+
 }
@@ -5,89 +5,318 @@ import com.github.jknack.handlebars.Handlebars;
 import com.github.jknack.handlebars.Template;
 import com.github.jknack.handlebars.io.StringTemplateSource;
 import com.github.jknack.handlebars.io.TemplateSource;
-import com.vdxp.ssg.content.BinaryContentFile;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
 import com.vdxp.ssg.content.ContentDirectory;
 import com.vdxp.ssg.content.ContentNode;
-import com.vdxp.ssg.content.ContentVisitor;
+import com.vdxp.ssg.content.PageStore;
 import com.vdxp.ssg.content.TextContentFile;
+import com.vdxp.ssg.content.TextContentVisitor;
+import com.vdxp.ssg.content.TextRenderer;
+import com.vdxp.ssg.content.Utf8Text;
+import com.vdxp.ssg.report.BuildReport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 public class HandlebarsLayoutProcessor {
 
 	private static final Logger log = LoggerFactory.getLogger(HandlebarsLayoutProcessor.class);
 
+	private static final String reportStage = "layouts";
+
+	private final Options options;
+
+	public HandlebarsLayoutProcessor() {
+		this.options = new Options();
+	}
+
+	public HandlebarsLayoutProcessor(final Options options) {
+		this.options = options;
+	}
+
 	public void process(final ContentDirectory contentTree, final ContentDirectory layoutContentTree) {
-		contentTree.accept(new HandlebarsLayoutVisitor(layoutContentTree));
+		process(contentTree, layoutContentTree, Predicates.<ContentNode>alwaysTrue());
 	}
 
-	private static class HandlebarsLayoutVisitor implements ContentVisitor {
+	/**
+	 * Applies layouts only to the files accepted by {@code filter}; the rest are left as they are.
+	 *
+	 * With more than one thread, every page is rendered on its own pool thread. Layouts are compiled under the
+	 * registry's lock, so the shared Handlebars instance is only ever used by one thread at a time; compiled templates
+	 * are immutable and are applied concurrently, each with its own context. Pages never read each other's text, so
+	 * the result does not depend on the order in which pages are rendered.
+	 */
+	public void process(final ContentDirectory contentTree, final ContentDirectory layoutContentTree, final Predicate<? super ContentNode> filter) {
+		final PageCollectionVisitor visitor = new PageCollectionVisitor(filter);
+		contentTree.accept(visitor);
 
-		private final Handlebars handlebars;
+		final PageRenderer renderer = new PageRenderer(new LayoutRegistry(new Handlebars(), layoutContentTree), options);
+		ParallelTasks.map(visitor.getPages(), new Function<TextContentFile, Void>() {
+			@Override
+			public Void apply(final TextContentFile page) {
+				renderer.render(page);
+				return null;
+			}
+		}, options.threads, options.executor, log, "Could not apply layouts to {}");
+	}
 
-		private final ContentDirectory layoutContentTree;
+	private static class PageCollectionVisitor extends TextContentVisitor {
 
-		public HandlebarsLayoutVisitor(final ContentDirectory layoutContentTree) {
-			this.handlebars = new Handlebars();
-			this.layoutContentTree = layoutContentTree;
+		private final Predicate<? super ContentNode> filter;
+
+		private final List<TextContentFile> pages = new ArrayList<TextContentFile>();
+
+		public PageCollectionVisitor(final Predicate<? super ContentNode> filter) {
+			this.filter = filter;
 		}
 
 		@Override
 		public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
+			if (!filter.apply(contentFile)) {
+				log.debug("Skipping {}: filtered out", contentFile);
+				return;
+			}
+			pages.add(contentFile);
+		}
+
+		public List<TextContentFile> getPages() {
+			return pages;
+		}
+	}
+
+	private static class PageRenderer {
+
+		private final LayoutRegistry layoutRegistry;
+
+		private final BuildReport report;
+
+		private final boolean deferLastLayout;
+
+		private final PageStore pageStore;
+
+		public PageRenderer(final LayoutRegistry layoutRegistry, final Options options) {
+			this.layoutRegistry = layoutRegistry;
+			this.report = options.report;
+			this.deferLastLayout = options.deferLastLayout;
+			this.pageStore = options.pageStore;
+		}
+
+		/**
+		 * Renders a page and reports the time it took. When its outermost layout is deferred, the time is reported
+		 * once that layout has been applied as well, so the report covers every layout of the page.
+		 */
+		public void render(final TextContentFile contentFile) {
+			if (report == null) {
+				renderPage(contentFile);
+				return;
+			}
+			final long startTime = System.nanoTime();
+			LayoutRenderer deferredRenderer = null;
+			try {
+				deferredRenderer = renderPage(contentFile);
+			} finally {
+				final long time = System.nanoTime() - startTime;
+				if (deferredRenderer != null) {
+					deferredRenderer.reportAfter(report, time);
+				} else {
+					report.recordPage(reportStage, contentFile, time);
+				}
+			}
+		}
+
+		/** Returns the renderer the outermost layout was deferred to, if it was. */
+		private LayoutRenderer renderPage(final TextContentFile contentFile) {
 			final String layout = computeLayoutForContent(contentFile);
 			if (layout != null) {
-				applyLayouts(contentFile, layout);
+				return applyLayouts(contentFile, layoutRegistry.getLayoutChain(layout));
 			}
+			return null;
 		}
 
-		private static String computeLayoutForContent(final TextContentFile contentFile) {
-			ContentNode nextNode = contentFile;
+		/**
+		 * Passes the text from layout to layout as a string, since that is what Handlebars takes and returns. The
+		 * result is kept as UTF-8, unless the last layout is deferred and will want it as a string again. With a page
+		 * store, whatever the page is left holding goes into the store either way.
+		 */
+		private LayoutRenderer applyLayouts(final TextContentFile content, final List<Layout> layoutChain) {
+			String text = null;
+			for (int i = 0; i < layoutChain.size(); i++) {
+				final Layout layout = layoutChain.get(i);
+				if (deferLastLayout && i == layoutChain.size() - 1) {
+					if (text != null || pageStore != null) {
+						content.setText(keep(content, text != null ? text : content.getTextSequence(), false));
+					}
+					log.debug("Deferring layout {} for {}", layout.contentFile, content);
+					final LayoutRenderer renderer = new LayoutRenderer(layout, content);
+					content.setRenderer(renderer);
+					return renderer;
+				}
 
-			while (nextNode != null) {
-				final Object nextLayout = nextNode.getData().get("layout");
-				if (nextLayout instanceof String) {
-					log.debug("Next layout for {} is {}", contentFile, nextLayout);
-					return (String) nextLayout;
+				try {
+					log.debug("Applying layout {} to {}", layout.contentFile, content);
+					text = layout.template.apply(makeContext(content, text != null ? text : content.getText()));
+				} catch (final IOException e) {
+					log.warn("Could not apply layout {} to {}", layout.contentFile, content, e);
+					break;
 				}
-				nextNode = nextNode.getParent();
 			}
-			log.debug("No more layouts for {}", contentFile);
+			if (text != null) {
+				content.setText(keep(content, text, true));
+			}
 			return null;
 		}
 
-		private void applyLayouts(final TextContentFile content, final String layoutPath) {
-			if (layoutPath == null) {
-				return;
+		private CharSequence keep(final TextContentFile content, final CharSequence text, final boolean encode) {
+			if (pageStore != null) {
+				try {
+					return pageStore.store(text);
+				} catch (final IOException e) {
+					log.warn("Could not store {} off the heap", content, e);
+				}
 			}
+			return encode ? Utf8Text.encode(text) : text;
+		}
+	}
 
-			final TextContentFile layoutContentFile = getLayoutByPath(layoutPath, layoutContentTree);
-			if (layoutContentFile == null) {
-				log.warn("Could not apply layout {} to {}", layoutPath, content);
-				return;
-			}
+	private static Context makeContext(final ContentNode content, final String text) {
+		final Map<String, Object> contentContextMap = new HashMap<String, Object>();
+		contentContextMap.put("content", text);
+		return Context.newBuilder(content.getData()).combine(contentContextMap).build();
+	}
+
+	/** Applies the last layout of a page while the page is being written out. */
+	private static class LayoutRenderer implements TextRenderer {
+		private final Layout layout;
+		private final ContentNode content;
+		private BuildReport report;
+		/** The time the page's other layouts took */
+		private long earlierTime;
 
-			final Map<String, Object> contentContextMap = new HashMap<String, Object>();
-			contentContextMap.put("content", content.getText());
-			final Context context = Context.newBuilder(content.getData()).combine(contentContextMap).build();
+		public LayoutRenderer(final Layout layout, final ContentNode content) {
+			this.layout = layout;
+			this.content = content;
+		}
 
+		/** Reports the page's time, {@code earlierTime} plus the time this layout takes, once it has been applied. */
+		public synchronized void reportAfter(final BuildReport report, final long earlierTime) {
+			this.report = report;
+			this.earlierTime = earlierTime;
+		}
+
+		@Override
+		public void render(final String text, final Writer writer) throws IOException {
+			final long startTime = System.nanoTime();
 			try {
-				log.debug("Applying layout {} to {}", layoutContentFile, content);
+				log.debug("Applying layout {} to {}", layout.contentFile, content);
+				layout.template.apply(makeContext(content, text), writer);
+			} finally {
+				synchronized (this) {
+					if (report != null) {
+						report.recordPage(reportStage, content, earlierTime + System.nanoTime() - startTime);
+					}
+				}
+			}
+		}
+	}
 
-				final TemplateSource layoutTemplateSource = new StringTemplateSource(layoutPath, layoutContentFile.getText());
-				final Template layoutTemplate = handlebars.compile(layoutTemplateSource);
+	private static String computeLayoutForContent(final ContentNode contentNode) {
+		ContentNode nextNode = contentNode;
+
+		while (nextNode != null) {
+			final String nextLayout = nextNode.getData("layout", String.class);
+			if (nextLayout != null) {
+				log.debug("Next layout for {} is {}", contentNode, nextLayout);
+				return nextLayout;
+			}
+			nextNode = nextNode.getParent();
+		}
+		log.debug("No more layouts for {}", contentNode);
+		return null;
+	}
+
+	/**
+	 * Compiles each layout in the layout content tree at most once, and remembers the chain of nested layouts that
+	 * each layout name resolves to. A chain stops early at a layout that is missing or does not compile, so pages
+	 * get every layout up to that point, as they did when layouts were resolved page by page.
+	 */
+	private static class LayoutRegistry {
+
+		private final Handlebars handlebars;
+
+		private final ContentDirectory layoutContentTree;
+
+		private final Map<String, Layout> layouts = new HashMap<String, Layout>();
+
+		private final Map<String, List<Layout>> layoutChains = new HashMap<String, List<Layout>>();
+
+		public LayoutRegistry(final Handlebars handlebars, final ContentDirectory layoutContentTree) {
+			this.handlebars = handlebars;
+			this.layoutContentTree = layoutContentTree;
+		}
+
+		public synchronized List<Layout> getLayoutChain(final String layoutPath) {
+			List<Layout> layoutChain = layoutChains.get(layoutPath);
+			if (layoutChain == null) {
+				layoutChain = resolveLayoutChain(layoutPath);
+				layoutChains.put(layoutPath, layoutChain);
+			}
+			return layoutChain;
+		}
+
+		private List<Layout> resolveLayoutChain(final String layoutPath) {
+			final List<Layout> layoutChain = new ArrayList<Layout>();
+
+			String nextLayoutPath = layoutPath;
+			while (nextLayoutPath != null) {
+				final Layout layout = getLayout(nextLayoutPath);
+				if (layout == null) {
+					break;
+				}
+				if (layoutChain.contains(layout)) {
+					log.warn("Layout {} is nested in itself", nextLayoutPath);
+					break;
+				}
+				layoutChain.add(layout);
+				nextLayoutPath = computeLayoutForContent(layout.contentFile);
+			}
 
-				final String newText = layoutTemplate.apply(context);
-				content.setText(newText);
+			log.debug("Layout {} resolves to {}", layoutPath, layoutChain);
+			return ImmutableList.copyOf(layoutChain);
+		}
 
-				final String nextLayoutPath = computeLayoutForContent(layoutContentFile);
-				applyLayouts(content, nextLayoutPath);
+		private Layout getLayout(final String layoutPath) {
+			if (layouts.containsKey(layoutPath)) {
+				return layouts.get(layoutPath);
+			}
+
+			final Layout layout = compileLayout(layoutPath);
+			layouts.put(layoutPath, layout);
+			return layout;
+		}
+
+		private Layout compileLayout(final String layoutPath) {
+			final TextContentFile layoutContentFile = getLayoutByPath(layoutPath, layoutContentTree);
+			if (layoutContentFile == null) {
+				return null;
+			}
+
+			try {
+				log.debug("Compiling layout {}", layoutContentFile);
+				final TemplateSource layoutTemplateSource = new StringTemplateSource(layoutPath, layoutContentFile.getText());
+				return new Layout(layoutContentFile, handlebars.compile(layoutTemplateSource));
 			} catch (final IOException e) {
-				log.warn("Could not apply layout {} to {}", layoutContentFile, content, e);
+				log.warn("Could not compile layout {}", layoutContentFile, e);
+				return null;
 			}
 		}
 
@@ -103,15 +332,69 @@ public class HandlebarsLayoutProcessor {
 			}
 			return (TextContentFile) contentNode;
 		}
+	}
 
-		@Override
-		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
-			/* Do nothing */
+	private static class Layout {
+		private final TextContentFile contentFile;
+		private final Template template;
+
+		public Layout(final TextContentFile contentFile, final Template template) {
+			this.contentFile = contentFile;
+			this.template = template;
 		}
 
 		@Override
-		public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
-			/* Do nothing */
+		public String toString() {
+			return contentFile.toString();
+		}
+	}
+
+	public static class Options {
+		public final int threads;
+		/** Receives the rendering time of every page; may be null */
+		public final BuildReport report;
+		/**
+		 * Leave the outermost layout of every page to {@link TextContentFile#writeTo}, which renders it straight into
+		 * the output. Pages still read the same through {@link TextContentFile#getText}, but that renders them then.
+		 */
+		public final boolean deferLastLayout;
+		/** Holds every rendered page off the heap until it is written out; may be null */
+		public final PageStore pageStore;
+		/**
+		 * Runs the threads besides the calling one on this executor, shared with the rest of the build, rather than
+		 * on a pool of their own; may be null
+		 */
+		public final ExecutorService executor;
+
+		private static final int defaultThreads = 1;
+		private static final boolean defaultDeferLastLayout = false;
+
+		public Options() {
+			this(defaultThreads);
+		}
+
+		public Options(final int threads) {
+			this(threads, null);
+		}
+
+		public Options(final int threads, final BuildReport report) {
+			this(threads, report, defaultDeferLastLayout);
+		}
+
+		public Options(final int threads, final BuildReport report, final boolean deferLastLayout) {
+			this(threads, report, deferLastLayout, null);
+		}
+
+		public Options(final int threads, final BuildReport report, final boolean deferLastLayout, final PageStore pageStore) {
+			this(threads, report, deferLastLayout, pageStore, null);
+		}
+
+		public Options(final int threads, final BuildReport report, final boolean deferLastLayout, final PageStore pageStore, final ExecutorService executor) {
+			this.threads = threads;
+			this.report = report;
+			this.deferLastLayout = deferLastLayout;
+			this.pageStore = pageStore;
+			this.executor = executor;
 		}
 	}
 
@@ -1,19 +1,28 @@
 package com.vdxp.ssg.processor;
 
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
-import com.vdxp.ssg.content.BinaryContentFile;
-import com.vdxp.ssg.content.ContentDirectory;
+import com.google.common.collect.Iterables;
+import com.vdxp.ssg.cache.StageCache;
+import com.vdxp.ssg.content.ContentFile;
 import com.vdxp.ssg.content.ContentNode;
-import com.vdxp.ssg.content.ContentVisitor;
+import com.vdxp.ssg.content.PageStore;
 import com.vdxp.ssg.content.TextContentFile;
+import com.vdxp.ssg.content.TextContentVisitor;
+import com.vdxp.ssg.content.Utf8Text;
+import com.vdxp.ssg.report.BuildReport;
 import org.pegdown.Extensions;
 import org.pegdown.PegDownProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public class MarkdownProcessor {
 
@@ -21,56 +30,194 @@ public class MarkdownProcessor {
 
 	public static final List<String> markdownExtensions = ImmutableList.of("md", "markdown");
 
-	private final PegDownProcessor pegdown;
+	public static final int pegdownOptions = Extensions.AUTOLINKS | Extensions.FENCED_CODE_BLOCKS | Extensions.STRIKETHROUGH | Extensions.TABLES;
+
+	private static final String cacheStage = "markdown";
+	private static final String reportStage = "markdown";
+
+	private final Options options;
+
+	/** PegDownProcessor is not thread-safe, so every converting thread gets its own */
+	private final ThreadLocal<PegDownProcessor> pegdown = new ThreadLocal<PegDownProcessor>() {
+		@Override
+		protected PegDownProcessor initialValue() {
+			return new PegDownProcessor(pegdownOptions);
+		}
+	};
 
 	public MarkdownProcessor() {
-		final int pegdownOptions = Extensions.AUTOLINKS | Extensions.FENCED_CODE_BLOCKS | Extensions.STRIKETHROUGH | Extensions.TABLES;
-		pegdown = new PegDownProcessor(pegdownOptions);
+		this.options = new Options();
+	}
+
+	public MarkdownProcessor(final Options options) {
+		this.options = options;
 	}
 
 	public void process(final ContentNode content) {
-		final MarkdownVisitor visitor = new MarkdownVisitor();
+		process(content, Predicates.<ContentNode>alwaysTrue());
+	}
+
+	/**
+	 * Converts only the files accepted by {@code filter}; the rest are left as they are. All documents are converted
+	 * before any file's text or extensions are changed.
+	 */
+	public void process(final ContentNode content, final Predicate<? super ContentNode> filter) {
+		final MarkdownVisitor visitor = new MarkdownVisitor(filter);
 		content.accept(visitor);
+
+		final List<TextContentFile> contentFiles = visitor.getContentFiles();
+		final List<Utf8Text> convertedTexts = ParallelTasks.map(contentFiles, new Function<TextContentFile, Utf8Text>() {
+			@Override
+			public Utf8Text apply(final TextContentFile contentFile) {
+				return convert(contentFile);
+			}
+		}, options.threads, options.executor, log, "Could not convert {} to HTML");
+
+		for (int i = 0; i < contentFiles.size(); i++) {
+			final TextContentFile contentFile = contentFiles.get(i);
+			contentFile.setText(convertedTexts.get(i));
+			replaceLastMarkdownExtension(contentFile);
+		}
+	}
+
+	/** Keeps the HTML as UTF-8, in the page store if there is one; pegdown is the only one that needs it as a string. */
+	private Utf8Text convert(final TextContentFile contentFile) {
+		if (options.report == null) {
+			return keep(contentFile, convertOrReuse(contentFile));
+		}
+		final long startTime = System.nanoTime();
+		try {
+			return keep(contentFile, convertOrReuse(contentFile));
+		} finally {
+			options.report.recordPage(reportStage, contentFile, System.nanoTime() - startTime);
+		}
+	}
+
+	private Utf8Text keep(final TextContentFile contentFile, final String html) {
+		if (options.pageStore != null) {
+			try {
+				return options.pageStore.store(html);
+			} catch (final IOException e) {
+				log.warn("Could not store {} off the heap", contentFile, e);
+			}
+		}
+		return Utf8Text.encode(html);
+	}
+
+	private String convertOrReuse(final TextContentFile contentFile) {
+		final String text = contentFile.getText();
+		final String cacheKey;
+		if (options.cache != null) {
+			cacheKey = StageCache.key(pegdownOptions, text);
+			final String cachedHtml = options.cache.getString(cacheStage, cacheKey);
+			if (cachedHtml != null) {
+				log.debug("Using cached HTML for {}", contentFile);
+				return cachedHtml;
+			}
+		} else {
+			cacheKey = null;
+		}
+
+		log.debug("Converting {} to HTML", contentFile);
+		final String html = pegdown.get().markdownToHtml(text);
+		if (cacheKey != null) {
+			options.cache.putString(cacheStage, cacheKey, html);
+		}
+		return html;
+	}
+
+	/**
+	 * Marks the innermost Markdown extension as HTML. Usually that is the last extension, but in a name such as
+	 * {@code post.md.txt} it is not, and the remaining extensions are kept for later processors.
+	 */
+	private static void replaceLastMarkdownExtension(final ContentFile contentFile) {
+		final List<String> extensions = new ArrayList<String>(contentFile.getExtensions());
+		for (int i = extensions.size() - 1; i >= 0; i--) {
+			if (markdownExtensions.contains(extensions.get(i))) {
+				extensions.set(i, "html");
+				break;
+			}
+		}
+		contentFile.setExtensions(extensions);
 	}
 
-	private class MarkdownVisitor implements ContentVisitor {
+	private static class MarkdownVisitor extends TextContentVisitor {
+
+		private final Predicate<? super ContentNode> filter;
+
+		private final List<TextContentFile> contentFiles = new ArrayList<TextContentFile>();
 
-		// TODO reschedule processor if this is set
-		private boolean reschedule = false;
+		public MarkdownVisitor(final Predicate<? super ContentNode> filter) {
+			this.filter = filter;
+		}
 
-		public boolean getReschedule() {
-			return reschedule;
+		public List<TextContentFile> getContentFiles() {
+			return contentFiles;
 		}
 
 		@Override
 		public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
-			final Deque<String> extensions = contentFile.getExtensions();
+			if (!filter.apply(contentFile)) {
+				log.debug("Skipping {}: filtered out", contentFile);
+				return;
+			}
+
+			final List<String> extensions = contentFile.getExtensions();
 
 			if (Collections.disjoint(extensions, markdownExtensions)) {
 				log.debug("Skipping {} ({})", contentFile, extensions);
 				return;
 			}
-			if (!markdownExtensions.contains(extensions.peekLast())) {
-				log.debug("Rescheduling {} ({})", contentFile, extensions);
-				reschedule = true;
-				return;
+			if (!markdownExtensions.contains(Iterables.getLast(extensions))) {
+				log.debug("Converting {} ({}) although Markdown is not its last extension", contentFile, extensions);
 			}
 
-			log.debug("Converting {} to HTML", contentFile);
-			contentFile.setText(pegdown.markdownToHtml(contentFile.getText()));
-			extensions.removeLast();
-			extensions.addLast("html");
+			contentFiles.add(contentFile);
 		}
+	}
 
-		@Override
-		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
-			/* Do nothing */
+	public static class Options {
+		public final int threads;
+		/** Remembers converted documents between builds; may be null */
+		public final StageCache cache;
+		/** Receives the conversion time of every document; may be null */
+		public final BuildReport report;
+		/** Holds the converted documents off the heap; may be null */
+		public final PageStore pageStore;
+		/**
+		 * Runs the threads besides the calling one on this executor, shared with the rest of the build, rather than
+		 * on a pool of their own; may be null
+		 */
+		public final ExecutorService executor;
+
+		private static final int defaultThreads = 1;
+
+		public Options() {
+			this(defaultThreads);
 		}
 
-		@Override
-		public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
-			/* Do nothing */
+		public Options(final int threads) {
+			this(threads, null);
+		}
+
+		public Options(final int threads, final StageCache cache) {
+			this(threads, cache, null);
+		}
+
+		public Options(final int threads, final StageCache cache, final BuildReport report) {
+			this(threads, cache, report, null);
 		}
 
+		public Options(final int threads, final StageCache cache, final BuildReport report, final PageStore pageStore) {
+			this(threads, cache, report, pageStore, null);
+		}
+
+		public Options(final int threads, final StageCache cache, final BuildReport report, final PageStore pageStore, final ExecutorService executor) {
+			this.threads = threads;
+			this.cache = cache;
+			this.report = report;
+			this.pageStore = pageStore;
+			this.executor = executor;
+		}
 	}
 }
@@ -0,0 +1,151 @@
+package com.vdxp.ssg.processor;
+
+import com.google.common.base.Function;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a processor's work on every one of its nodes, on the calling thread or on a pool of threads. Either way, the
+ * first node to fail, in list order, is logged with its exception to the processor's logger, and the exception is
+ * thrown once the nodes before it are done, so a build fails the same way whatever the number of threads.
+ *
+ * The calling thread always takes part, taking the nodes in list order like the pool threads do, and only waits for
+ * the nodes that other threads have already started on. That way the work can go to an executor shared with the
+ * rest of a build, even one the calling thread is itself running on, without waiting for pool threads that are busy
+ * elsewhere.
+ */
+final class ParallelTasks {
+
+	private ParallelTasks() {
+	}
+
+	/**
+	 * Applies {@code task} to every node and returns the results in the same order. {@code failureMessage} is logged
+	 * to {@code log} with the node that failed and its exception, as in {@code "Could not convert {} to HTML"}.
+	 */
+	static <I, O> List<O> map(final List<I> nodes, final Function<? super I, ? extends O> task, final int threads, final Logger log, final String failureMessage) {
+		return map(nodes, task, threads, null, log, failureMessage);
+	}
+
+	/**
+	 * Like {@link #map(List, Function, int, Logger, String)}, but with more than one thread, the threads besides the
+	 * calling one come from {@code executor}, or from a pool of their own if it is null, so at most {@code threads}
+	 * threads work on the nodes.
+	 */
+	static <I, O> List<O> map(final List<I> nodes, final Function<? super I, ? extends O> task, final int threads, final ExecutorService executor, final Logger log, final String failureMessage) {
+		if (threads <= 1) {
+			final List<O> results = new ArrayList<O>(nodes.size());
+			for (final I node : nodes) {
+				try {
+					results.add(task.apply(node));
+				} catch (final RuntimeException e) {
+					log.error(failureMessage, node, e);
+					throw e;
+				}
+			}
+			return results;
+		}
+
+		final Batch<I, O> batch = new Batch<I, O>(nodes, task);
+		final int helpers = Math.min(threads, nodes.size()) - 1;
+		final ExecutorService pool = executor != null || helpers <= 0 ? executor : Executors.newFixedThreadPool(helpers);
+		try {
+			for (int i = 0; i < helpers; i++) {
+				pool.execute(batch);
+			}
+			batch.run();
+			batch.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while processing " + nodes.size() + " nodes", e);
+		} finally {
+			if (pool != null && pool != executor) {
+				pool.shutdownNow();
+			}
+		}
+
+		for (int i = 0; i < nodes.size(); i++) {
+			final Throwable failure = batch.failures[i];
+			if (failure != null) {
+				log.error(failureMessage, nodes.get(i), failure);
+				if (failure instanceof RuntimeException) {
+					throw (RuntimeException) failure;
+				}
+				throw (Error) failure;
+			}
+		}
+		@SuppressWarnings("unchecked")
+		final List<O> results = (List<O>) Arrays.asList(batch.results);
+		return new ArrayList<O>(results);
+	}
+
+	/**
+	 * The nodes of one call, which every thread working on them takes in list order. No node is taken once one has
+	 * failed, so the nodes before the first failure are all done, as they would be on one thread.
+	 */
+	private static class Batch<I, O> implements Runnable {
+		private final List<I> nodes;
+		private final Function<? super I, ? extends O> task;
+		private final Object[] results;
+		private final Throwable[] failures;
+		/** Guarded by this */
+		private int next = 0;
+		private int finished = 0;
+		private boolean failed = false;
+
+		public Batch(final List<I> nodes, final Function<? super I, ? extends O> task) {
+			this.nodes = nodes;
+			this.task = task;
+			this.results = new Object[nodes.size()];
+			this.failures = new Throwable[nodes.size()];
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				final int index;
+				synchronized (this) {
+					if (failed || next >= nodes.size()) {
+						return;
+					}
+					index = next++;
+				}
+
+				Object result = null;
+				Throwable failure = null;
+				try {
+					result = task.apply(nodes.get(index));
+				} catch (final RuntimeException e) {
+					failure = e;
+				} catch (final Error e) {
+					failure = e;
+				}
+
+				synchronized (this) {
+					results[index] = result;
+					failures[index] = failure;
+					failed |= failure != null;
+					finished++;
+					notifyAll();
+				}
+			}
+		}
+
+		/** Waits for the nodes that were taken to be done; no more are taken by then. */
+		public synchronized void await() throws InterruptedException {
+			try {
+				while (finished < next) {
+					wait();
+				}
+			} catch (final InterruptedException e) {
+				failed = true;
+				throw e;
+			}
+		}
+	}
+}
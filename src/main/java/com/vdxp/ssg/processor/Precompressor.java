@@ -0,0 +1,357 @@
+package com.vdxp.ssg.processor;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.vdxp.ssg.report.IoStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a gzip-compressed copy of text outputs next to them, as {@code name.gz}, for web servers that serve
+ * precompressed files (nginx's {@code gzip_static}). Files are compressed on a pool of threads while the rest of the
+ * output is still being written. Each thread keeps one {@link Deflater} for all the files it compresses.
+ *
+ * The gzip header's comment holds the SHA-1 of the uncompressed file and the compression level, so a compressed copy
+ * that is still up to date is left alone.
+ */
+public class Precompressor implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(Precompressor.class);
+
+	private static final String suffix = ".gz";
+	private static final int bufferSize = 65536;
+	/** Longer than any comment this writes, so a longer one is never read to the end */
+	private static final int maximumCommentLength = 128;
+
+	private final Options options;
+	private final ExecutorService executor;
+	/** The files submitted to a shared executor, which cannot be shut down to wait for them */
+	private final List<Future<File>> submittedFiles = new ArrayList<Future<File>>();
+	private final List<Deflater> deflaters = new ArrayList<Deflater>();
+
+	private final ThreadLocal<Deflater> deflater = new ThreadLocal<Deflater>() {
+		@Override
+		protected Deflater initialValue() {
+			/* The gzip header and trailer are written by hand, around raw deflate data */
+			final Deflater threadDeflater = new Deflater(options.level, true);
+			synchronized (deflaters) {
+				deflaters.add(threadDeflater);
+			}
+			return threadDeflater;
+		}
+	};
+
+	public Precompressor(final Options options) {
+		this.options = options;
+		this.executor = options.executor != null ? options.executor : Executors.newFixedThreadPool(options.threads);
+	}
+
+	/** Whether {@code file} is of a type that gets a compressed copy. */
+	public boolean accepts(final File file) {
+		final String name = file.getName();
+		final int dotPosition = name.lastIndexOf('.');
+		return dotPosition >= 0 && options.extensions.contains(name.substring(dotPosition + 1).toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * Compresses {@code file} on a pool thread. The future gives the compressed copy, or null if the file is smaller
+	 * than {@link Options#minimumSize} or could not be compressed. {@code liveFile} is where the file's previous
+	 * version is, which is {@code file} itself unless the output is being built into a new version directory; a
+	 * compressed copy next to it that is still up to date is carried over rather than compressed again.
+	 * {@code hash} is the SHA-1 of the file, or null if it is not known yet.
+	 */
+	public Future<File> submit(final File file, final File liveFile, final HashCode hash) {
+		final Future<File> compressedFile = executor.submit(new Callable<File>() {
+			@Override
+			public File call() {
+				return compress(file, liveFile, hash);
+			}
+		});
+		if (options.executor != null) {
+			synchronized (submittedFiles) {
+				submittedFiles.add(compressedFile);
+			}
+		}
+		return compressedFile;
+	}
+
+	private File compress(final File file, final File liveFile, final HashCode hash) {
+		final File compressedFile = new File(file.getPath() + suffix);
+		final File liveCompressedFile = new File(liveFile.getPath() + suffix);
+
+		if (file.length() < options.minimumSize) {
+			/* A compressed copy of a previous, larger version would be served instead of this one */
+			if (liveCompressedFile.equals(compressedFile) && compressedFile.isFile() && !compressedFile.delete()) {
+				log.warn("Could not delete outdated compressed file {}", compressedFile.getAbsolutePath());
+			}
+			return null;
+		}
+
+		final File temporaryFile = new File(compressedFile.getPath() + ".ssg-tmp");
+		try {
+			final HashCode contentHash = hash != null ? hash : hash(file);
+			final String comment = "sha1=" + contentHash + " level=" + options.level;
+
+			if (comment.equals(readComment(liveCompressedFile))) {
+				log.debug("Not compressing {}: {} is up to date", file, liveCompressedFile.getPath());
+				FileOutputProcessor.retainLiveFile(liveCompressedFile, compressedFile);
+				return compressedFile;
+			}
+
+			log.debug("Compressing {} to {}", file, compressedFile);
+			writeCompressed(file, temporaryFile, comment);
+			Files.move(temporaryFile.toPath(), compressedFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return compressedFile;
+		} catch (final IOException e) {
+			log.error("Could not compress {} to {}", file.getAbsolutePath(), compressedFile.getAbsolutePath(), e);
+			if (temporaryFile.exists() && !temporaryFile.delete()) {
+				log.warn("Could not delete temporary file {}", temporaryFile.getAbsolutePath());
+			}
+			return null;
+		}
+	}
+
+	private static HashCode hash(final File file) throws IOException {
+		final Hasher hasher = Hashing.sha1().newHasher();
+		final InputStream in = new FileInputStream(file);
+		try {
+			ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+		} finally {
+			in.close();
+		}
+		return hasher.hash();
+	}
+
+	private void writeCompressed(final File file, final File compressedFile, final String comment) throws IOException {
+		final Deflater threadDeflater = deflater.get();
+		threadDeflater.reset();
+		final CRC32 crc = new CRC32();
+		final byte[] input = new byte[bufferSize];
+		final byte[] output = new byte[bufferSize];
+		long inputLength = 0;
+		long outputLength = 0;
+
+		final InputStream in = new FileInputStream(file);
+		try {
+			final OutputStream out = new FileOutputStream(compressedFile);
+			try {
+				final byte[] header = makeHeader(comment);
+				out.write(header);
+				outputLength += header.length;
+
+				int length;
+				while ((length = in.read(input)) != -1) {
+					crc.update(input, 0, length);
+					inputLength += length;
+					threadDeflater.setInput(input, 0, length);
+					while (!threadDeflater.needsInput()) {
+						final int deflated = threadDeflater.deflate(output);
+						out.write(output, 0, deflated);
+						outputLength += deflated;
+					}
+				}
+				threadDeflater.finish();
+				while (!threadDeflater.finished()) {
+					final int deflated = threadDeflater.deflate(output);
+					out.write(output, 0, deflated);
+					outputLength += deflated;
+				}
+
+				final byte[] trailer = new byte[8];
+				putLittleEndian(trailer, 0, crc.getValue());
+				putLittleEndian(trailer, 4, inputLength);
+				out.write(trailer);
+				outputLength += trailer.length;
+			} finally {
+				IoStatistics.addBytesWritten(outputLength);
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * A gzip header with only a comment. The modification time is left out, so that compressing the same file twice
+	 * gives the same bytes.
+	 */
+	private byte[] makeHeader(final String comment) {
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+		header.write(0x1f);
+		header.write(0x8b);
+		/* Deflate, and the comment flag */
+		header.write(8);
+		header.write(0x10);
+		for (int i = 0; i < 4; i++) {
+			header.write(0);
+		}
+		/* The extra flags tell readers whether the fastest or the best compression was used */
+		header.write(options.level == Deflater.BEST_COMPRESSION ? 2 : options.level == Deflater.BEST_SPEED ? 4 : 0);
+		/* Unknown operating system */
+		header.write(255);
+		final byte[] commentBytes = comment.getBytes(StandardCharsets.ISO_8859_1);
+		header.write(commentBytes, 0, commentBytes.length);
+		header.write(0);
+		return header.toByteArray();
+	}
+
+	/** Returns the comment of a gzip file written by this class, or null if there is no such file. */
+	private static String readComment(final File compressedFile) throws IOException {
+		if (!compressedFile.isFile()) {
+			return null;
+		}
+
+		final InputStream in = new BufferedInputStream(new FileInputStream(compressedFile), 256);
+		try {
+			final byte[] header = new byte[10];
+			int read = 0;
+			while (read < header.length) {
+				final int length = in.read(header, read, header.length - read);
+				if (length < 0) {
+					return null;
+				}
+				read += length;
+			}
+			if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || header[3] != 0x10) {
+				return null;
+			}
+
+			final StringBuilder comment = new StringBuilder();
+			int c;
+			while ((c = in.read()) > 0) {
+				if (comment.length() == maximumCommentLength) {
+					return null;
+				}
+				comment.append((char) c);
+			}
+			return c == 0 ? comment.toString() : null;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void putLittleEndian(final byte[] bytes, final int offset, final long value) {
+		for (int i = 0; i < 4; i++) {
+			bytes[offset + i] = (byte) (value >>> 8 * i);
+		}
+	}
+
+	/** Waits for the files already submitted, then frees the deflaters. */
+	@Override
+	public void close() {
+		if (options.executor != null) {
+			if (!awaitSubmittedFiles()) {
+				return;
+			}
+		} else {
+			executor.shutdown();
+			try {
+				while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+					log.info("Still waiting for files to be compressed");
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				executor.shutdownNow();
+				return;
+			}
+		}
+
+		synchronized (deflaters) {
+			for (final Deflater threadDeflater : deflaters) {
+				threadDeflater.end();
+			}
+			deflaters.clear();
+		}
+	}
+
+	/** Waits for the files submitted to a shared executor. Returns false if interrupted. */
+	private boolean awaitSubmittedFiles() {
+		synchronized (submittedFiles) {
+			for (final Future<File> compressedFile : submittedFiles) {
+				try {
+					compressedFile.get();
+				} catch (final ExecutionException e) {
+					/* Reported by whoever submitted the file */
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			submittedFiles.clear();
+		}
+		return true;
+	}
+
+	public static class Options {
+		public final int threads;
+		/** From 1, the fastest, to 9, the smallest */
+		public final int level;
+		/** Files smaller than this many bytes are not worth compressing and get no compressed copy */
+		public final long minimumSize;
+		/** Lower case file name extensions, without the dot */
+		public final Set<String> extensions;
+		/** Compresses on this executor, shared with the rest of the build, rather than on a pool of its own; may be null */
+		public final ExecutorService executor;
+
+		private static final int defaultLevel = Deflater.BEST_COMPRESSION;
+		private static final long defaultMinimumSize = 256;
+		private static final Set<String> defaultExtensions = ImmutableSet.of("html", "css", "js", "xml", "json", "svg");
+
+		public Options() {
+			this(1);
+		}
+
+		public Options(final int threads) {
+			this(threads, defaultLevel);
+		}
+
+		public Options(final int threads, final int level) {
+			this(threads, level, defaultMinimumSize);
+		}
+
+		public Options(final int threads, final int level, final long minimumSize) {
+			this(threads, level, minimumSize, defaultExtensions);
+		}
+
+		public Options(final int threads, final int level, final long minimumSize, final Set<String> extensions) {
+			this(threads, level, minimumSize, extensions, null);
+		}
+
+		public Options(final int threads, final int level, final long minimumSize, final Set<String> extensions, final ExecutorService executor) {
+			this.threads = threads;
+			this.level = level;
+			this.minimumSize = minimumSize;
+			this.extensions = extensions;
+			this.executor = executor;
+		}
+	}
+}
@@ -1,10 +1,10 @@
 package com.vdxp.ssg.processor;
 
-import com.vdxp.ssg.content.BinaryContentFile;
 import com.vdxp.ssg.content.ContentDirectory;
 import com.vdxp.ssg.content.ContentNode;
-import com.vdxp.ssg.content.ContentVisitor;
 import com.vdxp.ssg.content.TextContentFile;
+import com.vdxp.ssg.content.TextContentVisitor;
+import com.vdxp.ssg.content.Utf8Text;
 
 import java.util.List;
 
@@ -14,37 +14,34 @@ public class SplitReadMoreProcessor {
 		contentTree.accept(new SplitReadMoreVisitor());
 	}
 
-	private static class SplitReadMoreVisitor implements ContentVisitor {
+	private static class SplitReadMoreVisitor extends TextContentVisitor {
 
 		@Override
 		public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
-			final String contentFileText = contentFile.getText();
+			final CharSequence contentFileText = contentFile.getTextSequence();
 
 			final int readMoreIndex = getReadMoreIndex(contentFileText);
 			if (readMoreIndex == -1) {
 				return;
 			}
 
-			final String snippet = contentFileText.substring(0, readMoreIndex);
-			contentFile.putData("snippet", snippet);
+			/* Data values are plain strings, which is what templates and getData("snippet", String.class) expect */
+			contentFile.putData("snippet", contentFileText.subSequence(0, readMoreIndex).toString());
 		}
 
-		@Override
-		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
-			/* Do nothing */
-		}
-
-		@Override
-		public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
-			/* Do nothing */
-		}
-
-		private static int getReadMoreIndex(final String text) {
-			int readMoreIndex = text.indexOf("<!--more-->");
+		private static int getReadMoreIndex(final CharSequence text) {
+			int readMoreIndex = indexOf(text, "<!--more-->");
 			if (readMoreIndex == -1) {
-				readMoreIndex = text.indexOf("<!-- more -->");
+				readMoreIndex = indexOf(text, "<!-- more -->");
 			}
 			return readMoreIndex;
 		}
+
+		private static int indexOf(final CharSequence text, final String target) {
+			if (text instanceof Utf8Text) {
+				return ((Utf8Text) text).indexOf(target);
+			}
+			return text.toString().indexOf(target);
+		}
 	}
 }
@@ -2,63 +2,163 @@ package com.vdxp.ssg.processor;
 
 import com.esotericsoftware.yamlbeans.YamlException;
 import com.esotericsoftware.yamlbeans.YamlReader;
-import com.vdxp.ssg.content.BinaryContentFile;
-import com.vdxp.ssg.content.ContentDirectory;
+import com.google.common.base.Function;
+import com.vdxp.ssg.cache.StageCache;
 import com.vdxp.ssg.content.ContentNode;
-import com.vdxp.ssg.content.ContentVisitor;
+import com.vdxp.ssg.content.FrontMatter;
 import com.vdxp.ssg.content.TextContentFile;
+import com.vdxp.ssg.content.TextContentVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 public class YamlFrontMatterProcessor {
 
 	private static final Logger log = LoggerFactory.getLogger(YamlFrontMatterProcessor.class);
 
+	private static final String cacheStage = "yaml";
+
+	private final Options options;
+
+	public YamlFrontMatterProcessor() {
+		this(new Options());
+	}
+
+	/** Parsed front matter is looked up in and stored to {@code cache}, which may be null. */
+	public YamlFrontMatterProcessor(final StageCache cache) {
+		this(new Options(Options.defaultThreads, cache));
+	}
+
+	public YamlFrontMatterProcessor(final Options options) {
+		this.options = options;
+	}
+
+	/**
+	 * Reads and parses the front matter of every text file, then pushes it into the files in tree order. Files that
+	 * have not been loaded yet are first read here, so reading them is what the threads mostly do.
+	 */
 	public void process(final ContentNode content) {
-		content.accept(new YamlFrontMatterVisitor());
+		final YamlFrontMatterVisitor visitor = new YamlFrontMatterVisitor();
+		content.accept(visitor);
+
+		final List<TextContentFile> contentFiles = visitor.getContentFiles();
+		final List<ParsedFrontMatter> parsedFrontMatters = ParallelTasks.map(contentFiles, new Function<TextContentFile, ParsedFrontMatter>() {
+			@Override
+			public ParsedFrontMatter apply(final TextContentFile contentFile) {
+				return read(contentFile);
+			}
+		}, options.threads, options.executor, log, "Could not read the front matter of {}");
+
+		for (int i = 0; i < contentFiles.size(); i++) {
+			final ParsedFrontMatter parsedFrontMatter = parsedFrontMatters.get(i);
+			if (parsedFrontMatter != null) {
+				final TextContentFile contentFile = contentFiles.get(i);
+				log.debug("Pushing in YFM in {}: {}", contentFile, parsedFrontMatter.data);
+				contentFile.putData(parsedFrontMatter.data);
+				contentFile.skipFrontMatter(parsedFrontMatter.frontMatter);
+			}
+		}
 	}
 
-	private class YamlFrontMatterVisitor implements ContentVisitor {
+	/** Returns null if the file has no front matter or it is not a map. */
+	private ParsedFrontMatter read(final TextContentFile contentFile) {
+		/* Files that have not been read yet are only read as far as the end of their front matter */
+		final FrontMatter frontMatter = contentFile.readFrontMatter();
+		if (frontMatter == null) {
+			log.debug("Skipping {}: No YFM detected", contentFile);
+			return null;
+		}
 
-		@Override
-		public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
-			final String[] contentParts = contentFile.getText().split("(?m)^---$\\s*", 3);
+		try {
+			final Object yfmObject = parse(frontMatter.getYaml().toString());
 
-			if (contentParts.length < 3 || !contentParts[0].isEmpty()) {
-				log.debug("Skipping {}: No YFM detected", contentFile);
-				return;
+			if (yfmObject instanceof Map) {
+				@SuppressWarnings("unchecked")
+				final Map<String, Object> data = (Map<String, Object>) yfmObject;
+				return new ParsedFrontMatter(frontMatter, data);
+			} else {
+				log.warn("Ignoring unexpected YFM in {}: {}", contentFile, yfmObject);
 			}
+		} catch (final YamlException e) {
+			log.warn("{} appeared to contain YFM but it couldn't be parsed", contentFile, e);
+		}
+		return null;
+	}
 
-			try {
-				final YamlReader reader = new YamlReader(contentParts[1]);
-				final Object yfmObject = reader.read();
-
-				if (yfmObject instanceof Map) {
-					@SuppressWarnings("unchecked")
-					final Map<String, Object> data = (Map<String, Object>) yfmObject;
-
-					log.debug("Pushing in YFM in {}: {}", contentFile, data);
-					contentFile.putData(data);
-					contentFile.setText(contentParts[2]);
-				} else {
-					log.warn("Ignoring unexpected YFM in {}: {}", contentFile, yfmObject);
-				}
-			} catch (final YamlException e) {
-				log.warn("{} appeared to contain YFM but it couldn't be parsed", contentFile, e);
+	private Object parse(final String yaml) throws YamlException {
+		final String cacheKey = options.cache != null ? StageCache.key(yaml) : null;
+		if (cacheKey != null) {
+			final Object cachedObject = options.cache.getObject(cacheStage, cacheKey);
+			if (cachedObject != null) {
+				return cachedObject;
 			}
 		}
 
-		@Override
-		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
-			/* Do nothing */
+		final Object yfmObject = new YamlReader(yaml).read();
+		if (cacheKey != null && yfmObject instanceof Map && yfmObject instanceof Serializable) {
+			options.cache.putObject(cacheStage, cacheKey, (Serializable) yfmObject);
+		}
+		return yfmObject;
+	}
+
+	private static class ParsedFrontMatter {
+		private final FrontMatter frontMatter;
+		private final Map<String, Object> data;
+
+		public ParsedFrontMatter(final FrontMatter frontMatter, final Map<String, Object> data) {
+			this.frontMatter = frontMatter;
+			this.data = data;
+		}
+	}
+
+	private static class YamlFrontMatterVisitor extends TextContentVisitor {
+
+		private final List<TextContentFile> contentFiles = new ArrayList<TextContentFile>();
+
+		public List<TextContentFile> getContentFiles() {
+			return contentFiles;
 		}
 
 		@Override
-		public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
-			/* Do nothing */
+		public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
+			contentFiles.add(contentFile);
+		}
+	}
+
+	public static class Options {
+		/** With more than one thread, the files are read and parsed on a pool of threads */
+		public final int threads;
+		/** Parsed front matter is looked up in and stored to this cache, which may be null */
+		public final StageCache cache;
+		/**
+		 * Runs the threads besides the calling one on this executor, shared with the rest of the build, rather than
+		 * on a pool of their own; may be null
+		 */
+		public final ExecutorService executor;
+
+		private static final int defaultThreads = 1;
+
+		public Options() {
+			this(defaultThreads);
+		}
+
+		public Options(final int threads) {
+			this(threads, null);
+		}
+
+		public Options(final int threads, final StageCache cache) {
+			this(threads, cache, null);
+		}
+
+		public Options(final int threads, final StageCache cache, final ExecutorService executor) {
+			this.threads = threads;
+			this.cache = cache;
+			this.executor = executor;
 		}
 	}
 }
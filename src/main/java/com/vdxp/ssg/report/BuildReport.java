@@ -0,0 +1,205 @@
+package com.vdxp.ssg.report;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.vdxp.ssg.content.ContentNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the measurements of one build: one {@link StageRecord} per stage, timed with {@link #startStage}, and the
+ * slowest pages reported through {@link #recordPage}. Stages and pages may be recorded from any thread. Each
+ * measurement is also emitted as a Flight Recorder event when the JVM supports it.
+ */
+public class BuildReport {
+
+	private static final Logger log = LoggerFactory.getLogger(BuildReport.class);
+
+	private static final Comparator<PageRecord> pageTimeComparator = new Comparator<PageRecord>() {
+		@Override
+		public int compare(final PageRecord first, final PageRecord second) {
+			return first.time < second.time ? -1 : first.time == second.time ? 0 : 1;
+		}
+	};
+
+	private final Options options;
+	private final long startTime = System.nanoTime();
+	private final long startProcessCpuTime = getProcessCpuTime();
+	private final List<StageRecord> stages = new ArrayList<StageRecord>();
+	/** The slowest pages so far, fastest first, so the head is the one to drop when a slower page arrives */
+	private final PriorityQueue<PageRecord> slowestPages;
+
+	public BuildReport() {
+		this(new Options());
+	}
+
+	public BuildReport(final Options options) {
+		this.options = options;
+		this.slowestPages = new PriorityQueue<PageRecord>(Math.max(1, options.slowestPages), pageTimeComparator);
+	}
+
+	/** Starts timing a stage on the current thread; call {@link StageTimer#stop} on the same thread when it ends. */
+	public StageTimer startStage(final String name) {
+		return new StageTimer(this, name);
+	}
+
+	synchronized void addStage(final StageRecord record) {
+		stages.add(record);
+	}
+
+	/** Records how long a stage spent on one page, in nanoseconds. The page is named by its path from the root. */
+	public void recordPage(final String stage, final ContentNode page, final long time) {
+		final List<String> names = new ArrayList<String>();
+		for (final ContentNode node : page.getAllParents()) {
+			names.add(node.getName());
+		}
+		recordPage(stage, Joiner.on('/').join(names), time);
+	}
+
+	/** Records how long a stage spent on one page, in nanoseconds. */
+	public void recordPage(final String stage, final String page, final long time) {
+		final PageRecord record = new PageRecord(stage, page, time);
+		FlightRecorderEvents.commitPage(record);
+		if (options.slowestPages <= 0) {
+			return;
+		}
+		synchronized (this) {
+			if (slowestPages.size() < options.slowestPages) {
+				slowestPages.add(record);
+			} else if (slowestPages.peek().time < time) {
+				slowestPages.poll();
+				slowestPages.add(record);
+			}
+		}
+	}
+
+	/** Returns the stages in the order they finished. */
+	public synchronized List<StageRecord> getStages() {
+		return new ArrayList<StageRecord>(stages);
+	}
+
+	/** Returns the slowest pages, slowest first. */
+	public synchronized List<PageRecord> getSlowestPages() {
+		final List<PageRecord> pages = new ArrayList<PageRecord>(slowestPages);
+		Collections.sort(pages, Collections.reverseOrder(pageTimeComparator));
+		return pages;
+	}
+
+	public void logSummary() {
+		for (final StageRecord stage : getStages()) {
+			log.info("Stage {}: {} ms wall, {} ms CPU, {} KB allocated, {} nodes, {} KB read, {} KB written",
+					stage.name, TimeUnit.NANOSECONDS.toMillis(stage.wallTime), stage.cpuTime < 0 ? "?" : TimeUnit.NANOSECONDS.toMillis(stage.cpuTime),
+					stage.allocatedBytes < 0 ? "?" : stage.allocatedBytes / 1024, stage.nodes, stage.bytesRead / 1024, stage.bytesWritten / 1024);
+		}
+	}
+
+	/** Writes the report as JSON. */
+	public void writeJson(final File file) throws IOException {
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+		try {
+			writeJson(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	public void writeJson(final Writer writer) throws IOException {
+		final long processCpuTime = getProcessCpuTime();
+		writer.write("{\n");
+		writer.write("  \"wallTimeNanos\": " + (System.nanoTime() - startTime) + ",\n");
+		writer.write("  \"processCpuTimeNanos\": " + (processCpuTime < 0 || startProcessCpuTime < 0 ? -1 : processCpuTime - startProcessCpuTime) + ",\n");
+		writer.write("  \"stages\": [");
+		String separator = "\n";
+		for (final StageRecord stage : getStages()) {
+			writer.write(separator);
+			writer.write("    {\"name\": " + quote(stage.name)
+					+ ", \"thread\": " + quote(stage.threadName)
+					+ ", \"wallTimeNanos\": " + stage.wallTime
+					+ ", \"cpuTimeNanos\": " + stage.cpuTime
+					+ ", \"allocatedBytes\": " + stage.allocatedBytes
+					+ ", \"nodes\": " + stage.nodes
+					+ ", \"bytesRead\": " + stage.bytesRead
+					+ ", \"bytesWritten\": " + stage.bytesWritten + "}");
+			separator = ",\n";
+		}
+		writer.write("\n  ],\n");
+		writer.write("  \"slowestPages\": [");
+		separator = "\n";
+		for (final PageRecord page : getSlowestPages()) {
+			writer.write(separator);
+			writer.write("    {\"stage\": " + quote(page.stage) + ", \"page\": " + quote(page.page) + ", \"timeNanos\": " + page.time + "}");
+			separator = ",\n";
+		}
+		writer.write("\n  ]\n");
+		writer.write("}\n");
+	}
+
+	static String quote(final String value) {
+		final StringBuilder builder = new StringBuilder(value.length() + 2);
+		builder.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					builder.append("\\\"");
+					break;
+				case '\\':
+					builder.append("\\\\");
+					break;
+				case '\n':
+					builder.append("\\n");
+					break;
+				case '\r':
+					builder.append("\\r");
+					break;
+				case '\t':
+					builder.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						builder.append(String.format("\\u%04x", (int) c));
+					} else {
+						builder.append(c);
+					}
+			}
+		}
+		return builder.append('"').toString();
+	}
+
+	private static long getProcessCpuTime() {
+		final java.lang.management.OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+		if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+		}
+		return -1;
+	}
+
+	public static class Options {
+		/** How many of the slowest pages to keep */
+		public final int slowestPages;
+
+		private static final int defaultSlowestPages = 20;
+
+		public Options() {
+			this(defaultSlowestPages);
+		}
+
+		public Options(final int slowestPages) {
+			this.slowestPages = slowestPages;
+		}
+	}
+}
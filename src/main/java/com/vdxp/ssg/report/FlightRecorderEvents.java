@@ -0,0 +1,57 @@
+package com.vdxp.ssg.report;
+
+/**
+ * Emits the custom Flight Recorder events when the JVM has Flight Recorder (Java 11 and later) and the build
+ * included them, and does nothing otherwise. The events and the {@link Emitter} that sends them are in
+ * {@code src/main/jfr}, which only the {@code jfr} profile compiles, so the rest of the build keeps compiling and
+ * running on Java 8.
+ */
+final class FlightRecorderEvents {
+
+	private static final String emitterClassName = "com.vdxp.ssg.report.FlightRecorderEmitter";
+
+	private static final Emitter emitter = loadEmitter();
+
+	private FlightRecorderEvents() {
+	}
+
+	static boolean isAvailable() {
+		return emitter != null;
+	}
+
+	/** Returns an event that has begun, to be passed to {@link #commitStage}; null if Flight Recorder is unavailable. */
+	static Object beginStage(final String stage) {
+		return emitter != null ? emitter.beginStage(stage) : null;
+	}
+
+	static void commitStage(final Object stageEvent, final StageRecord record) {
+		if (stageEvent != null) {
+			emitter.commitStage(stageEvent, record);
+		}
+	}
+
+	static void commitPage(final PageRecord record) {
+		if (emitter != null) {
+			emitter.commitPage(record);
+		}
+	}
+
+	private static Emitter loadEmitter() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (Emitter) Class.forName(emitterClassName).getDeclaredConstructor().newInstance();
+		} catch (final ReflectiveOperationException e) {
+			return null;
+		} catch (final LinkageError e) {
+			return null;
+		}
+	}
+
+	interface Emitter {
+		Object beginStage(String stage);
+
+		void commitStage(Object stageEvent, StageRecord record);
+
+		void commitPage(PageRecord record);
+	}
+}
@@ -0,0 +1,33 @@
+package com.vdxp.ssg.report;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counts of the bytes read from source files and written to output files. Build stages report the
+ * difference between the counts before and after they run.
+ */
+public final class IoStatistics {
+
+	private static final AtomicLong bytesRead = new AtomicLong();
+	private static final AtomicLong bytesWritten = new AtomicLong();
+
+	private IoStatistics() {
+	}
+
+	public static void addBytesRead(final long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+
+	public static void addBytesWritten(final long bytes) {
+		bytesWritten.addAndGet(bytes);
+	}
+
+	public static long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	public static long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+}
@@ -0,0 +1,14 @@
+package com.vdxp.ssg.report;
+
+/** How long one page took in one stage, in nanoseconds. */
+public class PageRecord {
+	public final String stage;
+	public final String page;
+	public final long time;
+
+	public PageRecord(final String stage, final String page, final long time) {
+		this.stage = stage;
+		this.page = page;
+		this.time = time;
+	}
+}
@@ -0,0 +1,27 @@
+package com.vdxp.ssg.report;
+
+/** Measurements of one build stage. Times are in nanoseconds. */
+public class StageRecord {
+	public final String name;
+	public final String threadName;
+	public final long wallTime;
+	/** CPU time of the thread that ran the stage; -1 if the JVM cannot measure it */
+	public final long cpuTime;
+	/** Bytes allocated by the thread that ran the stage; -1 if the JVM cannot measure it */
+	public final long allocatedBytes;
+	public final long nodes;
+	public final long bytesRead;
+	public final long bytesWritten;
+
+	public StageRecord(final String name, final String threadName, final long wallTime, final long cpuTime, final long allocatedBytes,
+			final long nodes, final long bytesRead, final long bytesWritten) {
+		this.name = name;
+		this.threadName = threadName;
+		this.wallTime = wallTime;
+		this.cpuTime = cpuTime;
+		this.allocatedBytes = allocatedBytes;
+		this.nodes = nodes;
+		this.bytesRead = bytesRead;
+		this.bytesWritten = bytesWritten;
+	}
+}
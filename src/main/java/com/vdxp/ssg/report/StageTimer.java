@@ -0,0 +1,86 @@
+package com.vdxp.ssg.report;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures one stage from {@link BuildReport#startStage} until {@link #stop}. Both calls must happen on the thread
+ * that runs the stage: CPU time and allocation are read for that thread only, so work the stage hands to other
+ * threads is not included. Byte counts are process-wide, so they overlap when stages run concurrently.
+ *
+ * A stage is also a Flight Recorder event when the JVM has Flight Recorder, whether or not it is recorded in a report.
+ */
+public class StageTimer {
+
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	private final BuildReport report;
+	private final String name;
+	private final Thread thread;
+	private final Object flightRecorderEvent;
+	private final long startTime;
+	private final long startCpuTime;
+	private final long startAllocatedBytes;
+	private final long startBytesRead;
+	private final long startBytesWritten;
+
+	/**
+	 * Starts timing a stage on the current thread. {@code report} may be null, in which case the stage is only a
+	 * Flight Recorder event; returns null if there is no report and no Flight Recorder either.
+	 */
+	public static StageTimer start(final BuildReport report, final String name) {
+		if (report == null && !FlightRecorderEvents.isAvailable()) {
+			return null;
+		}
+		return new StageTimer(report, name);
+	}
+
+	StageTimer(final BuildReport report, final String name) {
+		this.report = report;
+		this.name = name;
+		this.thread = Thread.currentThread();
+		this.flightRecorderEvent = FlightRecorderEvents.beginStage(name);
+		this.startBytesRead = IoStatistics.getBytesRead();
+		this.startBytesWritten = IoStatistics.getBytesWritten();
+		this.startAllocatedBytes = getAllocatedBytes();
+		this.startCpuTime = getCpuTime();
+		this.startTime = System.nanoTime();
+	}
+
+	/** Records the stage in the report, if there is one, and returns its measurements. */
+	public StageRecord stop(final long nodes) {
+		final long wallTime = System.nanoTime() - startTime;
+		final long cpuTime = getCpuTime();
+		final long allocatedBytes = getAllocatedBytes();
+		final StageRecord record = new StageRecord(name, thread.getName(), wallTime,
+				difference(cpuTime, startCpuTime), difference(allocatedBytes, startAllocatedBytes), nodes,
+				IoStatistics.getBytesRead() - startBytesRead, IoStatistics.getBytesWritten() - startBytesWritten);
+		FlightRecorderEvents.commitStage(flightRecorderEvent, record);
+		if (report != null) {
+			report.addStage(record);
+		}
+		return record;
+	}
+
+	private static long difference(final long end, final long start) {
+		return end < 0 || start < 0 ? -1 : end - start;
+	}
+
+	private static long getCpuTime() {
+		if (!threadBean.isCurrentThreadCpuTimeSupported()) {
+			return -1;
+		}
+		return threadBean.getCurrentThreadCpuTime();
+	}
+
+	private long getAllocatedBytes() {
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		final com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+		if (!sunThreadBean.isThreadAllocatedMemorySupported() || !sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		return sunThreadBean.getThreadAllocatedBytes(thread.getId());
+	}
+}
@@ -0,0 +1,150 @@
+package com.vdxp.ssg.watch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the content roots for changes and reports them to a {@link Listener} in batches.
+ *
+ * Every directory under the roots is registered with a {@link WatchService}, including directories created while
+ * watching. Events are collected until the roots have been quiet for the debounce interval, so an editor's save
+ * (which is often several writes and renames) or a {@code git checkout} causes one rebuild rather than many. A batch
+ * is reported after the maximum delay even if changes keep coming, such as from a generator or a sync tool writing
+ * into the roots; later changes go into the next batch. If events were lost, the roots themselves are reported as
+ * changed.
+ */
+public class SourceWatcher {
+
+	private static final Logger log = LoggerFactory.getLogger(SourceWatcher.class);
+
+	private static final long defaultDebounceMillis = 100;
+	private static final long defaultMaxDelayMillis = 2000;
+
+	private final Listener listener;
+	private final List<Path> roots = new ArrayList<Path>();
+	private final long debounceMillis;
+	private final long maxDelayMillis;
+
+	private final Map<WatchKey, Path> watchedDirectories = new HashMap<WatchKey, Path>();
+
+	public SourceWatcher(final Listener listener, final List<String> rootNames) {
+		this(listener, rootNames, defaultDebounceMillis);
+	}
+
+	public SourceWatcher(final Listener listener, final List<String> rootNames, final long debounceMillis) {
+		this(listener, rootNames, debounceMillis, Math.max(debounceMillis, defaultMaxDelayMillis));
+	}
+
+	/** Batches are reported once the roots were quiet for {@code debounceMillis}, or {@code maxDelayMillis} at most. */
+	public SourceWatcher(final Listener listener, final List<String> rootNames, final long debounceMillis, final long maxDelayMillis) {
+		this.listener = listener;
+		for (final String rootName : rootNames) {
+			roots.add(Paths.get(rootName));
+		}
+		this.debounceMillis = debounceMillis;
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	/** Watches until the thread is interrupted. */
+	public void watch() throws IOException {
+		final WatchService watchService = FileSystems.getDefault().newWatchService();
+		try {
+			for (final Path root : roots) {
+				registerRecursively(watchService, root);
+			}
+			log.info("Watching {} for changes", roots);
+
+			while (!Thread.currentThread().isInterrupted()) {
+				final Set<Path> changedPaths = new TreeSet<Path>();
+				WatchKey watchKey = watchService.take();
+				final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+				while (watchKey != null) {
+					collectEvents(watchService, watchKey, changedPaths);
+					final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if (remainingMillis <= 0) {
+						log.debug("Still changing after {} ms, reporting the changes so far", maxDelayMillis);
+						break;
+					}
+					watchKey = watchService.poll(Math.min(debounceMillis, remainingMillis), TimeUnit.MILLISECONDS);
+				}
+
+				log.info("Detected changes to {}", changedPaths);
+				listener.sourcesChanged(changedPaths);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			watchService.close();
+		}
+	}
+
+	private void collectEvents(final WatchService watchService, final WatchKey watchKey, final Set<Path> changedPaths) throws IOException {
+		final Path directory = watchedDirectories.get(watchKey);
+
+		for (final WatchEvent<?> event : watchKey.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+				log.warn("Missed some changes, treating everything as changed");
+				changedPaths.addAll(roots);
+				continue;
+			}
+
+			final Path changedPath = directory.resolve((Path) event.context());
+			changedPaths.add(changedPath);
+
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changedPath, LinkOption.NOFOLLOW_LINKS)) {
+				registerRecursively(watchService, changedPath);
+			}
+		}
+
+		if (!watchKey.reset()) {
+			log.debug("Stopped watching {}", directory);
+			watchedDirectories.remove(watchKey);
+		}
+	}
+
+	private void registerRecursively(final WatchService watchService, final Path root) throws IOException {
+		if (!Files.isDirectory(root)) {
+			log.warn("Not watching {}: not a directory", root);
+			return;
+		}
+
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attributes) throws IOException {
+				final WatchKey watchKey = directory.register(watchService,
+						StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_DELETE,
+						StandardWatchEventKinds.ENTRY_MODIFY);
+				watchedDirectories.put(watchKey, directory);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	public interface Listener {
+		/** Called on the watching thread with the paths that changed, relative to the working directory. */
+		void sourcesChanged(Set<Path> changedPaths);
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.vdxp.ssg.report;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** Flight Recorder event spanning one build stage. Only loaded through {@link FlightRecorderEmitter}. */
+@Name("com.vdxp.ssg.BuildStage")
+@Label("Build Stage")
+@Category("Static Site Generator")
+@Description("One stage of a site build")
+class BuildStageEvent extends Event {
+	@Label("Stage")
+	String stage;
+
+	@Label("CPU Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long cpuTime;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocatedBytes;
+
+	@Label("Nodes")
+	long nodes;
+
+	@Label("Bytes Read")
+	@DataAmount
+	long bytesRead;
+
+	@Label("Bytes Written")
+	@DataAmount
+	long bytesWritten;
+}
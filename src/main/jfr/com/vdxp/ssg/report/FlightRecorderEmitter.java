@@ -0,0 +1,41 @@
+package com.vdxp.ssg.report;
+
+/**
+ * Emits the custom Flight Recorder events. Compiled only by the {@code jfr} profile, on Java 11 and later, and loaded
+ * by name from {@link FlightRecorderEvents}.
+ */
+class FlightRecorderEmitter implements FlightRecorderEvents.Emitter {
+
+	@Override
+	public Object beginStage(final String stage) {
+		final BuildStageEvent event = new BuildStageEvent();
+		event.stage = stage;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void commitStage(final Object stageEvent, final StageRecord record) {
+		final BuildStageEvent event = (BuildStageEvent) stageEvent;
+		event.end();
+		if (event.shouldCommit()) {
+			event.cpuTime = record.cpuTime;
+			event.allocatedBytes = record.allocatedBytes;
+			event.nodes = record.nodes;
+			event.bytesRead = record.bytesRead;
+			event.bytesWritten = record.bytesWritten;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void commitPage(final PageRecord record) {
+		final PageEvent event = new PageEvent();
+		if (event.isEnabled()) {
+			event.stage = record.stage;
+			event.page = record.page;
+			event.time = record.time;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.vdxp.ssg.report;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** Flight Recorder event for one page handled by one stage. Only loaded through {@link FlightRecorderEmitter}. */
+@Name("com.vdxp.ssg.Page")
+@Label("Page")
+@Category("Static Site Generator")
+@Description("One page processed by a build stage")
+class PageEvent extends Event {
+	@Label("Stage")
+	String stage;
+
+	@Label("Page")
+	String page;
+
+	@Label("Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long time;
+}
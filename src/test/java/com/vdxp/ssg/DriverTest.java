@@ -0,0 +1,163 @@
+package com.vdxp.ssg;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DriverTest {
+
+	private static final long oldTime = 1000000000000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+	private File target;
+
+	/**
+	 * The expected output was written by the Driver as it was before builds ran as a pipeline of stages, from the
+	 * same sources, with UTF-8 as the platform charset.
+	 */
+	@Test
+	public void testBuildsWhatTheSequentialDriverBuilt() throws Exception {
+		final File source = new File(DriverTest.class.getResource("/driver/source").toURI());
+		final File expected = new File(DriverTest.class.getResource("/driver/expected").toURI());
+		for (final int threads : new int[] {1, 4}) {
+			final File site = folder.newFolder("site-" + threads);
+			copyTree(source, site);
+
+			new Driver(new Driver.Options.Builder().directory(site).threads(threads).build()).build();
+
+			assertThat(listFiles(new File(site, "target")), is(listFiles(expected)));
+			for (final String name : listFiles(expected)) {
+				assertThat(name, Files.toByteArray(new File(site, "target/" + name)), is(Files.toByteArray(new File(expected, name))));
+			}
+		}
+	}
+
+	@Test
+	public void testRebuildsOnlyTheChangedPostAndItsPage() throws IOException {
+		final Driver driver = makeDriver();
+		driver.build();
+		ageOutputs();
+
+		write("blog/post1.md", "---\ntitle: Post 1\ndate: 2014-03-01\n---\nChanged 1\n");
+		driver.rebuild(ImmutableSet.of(path("blog/post1.md")));
+
+		assertThat(read("post1.html"), containsString("<p>Changed 1</p>"));
+		/* The oldest post is on the last page */
+		assertThat(read("page/2/index.html"), containsString("Changed 1"));
+		assertThat(new File(target, "post2.html").lastModified(), is(oldTime));
+		assertThat(new File(target, "index.html").lastModified(), is(oldTime));
+		assertThat(new File(target, "about.html").lastModified(), is(oldTime));
+	}
+
+	@Test
+	public void testReloadsChangedLayouts() throws IOException {
+		final Driver driver = makeDriver();
+		driver.build();
+		ageOutputs();
+
+		write("layout/base.hbs", "<main>{{{content}}}</main>");
+		driver.rebuild(ImmutableSet.of(path("layout/base.hbs")));
+
+		assertThat(read("about.html"), is("<main><h1>About</h1></main>"));
+		assertThat(read("post2.html"), containsString("<main><article><h1>Post 2</h1>"));
+		assertThat(read("index.html"), containsString("<main>"));
+	}
+
+	@Test
+	public void testKeepsTheLastOutputWhenARebuildFails() throws IOException {
+		final Driver driver = makeDriver();
+		driver.build();
+
+		write("layout/base.hbs", "<main>{{#if}}</main>");
+		driver.rebuild(ImmutableSet.of(path("layout/base.hbs")));
+
+		assertThat(read("about.html"), is("<html><h1>About</h1></html>"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsPrecompressLevelsOutOfRange() throws IOException {
+		Driver.main(new String[] {"--precompress", "10"});
+	}
+
+	@Before
+	public void setupSite() throws IOException {
+		directory = folder.getRoot();
+		target = new File(directory, "target");
+		write("layout/base.hbs", "<html>{{{content}}}</html>");
+		write("layout/blog.hbs", "---\nlayout: base.hbs\n---\n<article><h1>{{title}}</h1>{{{content}}}</article>");
+		write("layout/blogPage.hbs", "---\nlayout: base.hbs\n---\n{{#each blogPage.posts}}<section>{{{content}}}</section>{{/each}}");
+		write("layout/page.hbs", "---\nlayout: base.hbs\n---\n{{{content}}}");
+		write("site/about.md", "---\nlayout: page.hbs\n---\n# About\n");
+		for (int i = 1; i <= 4; i++) {
+			write("blog/post" + i + ".md", "---\ntitle: Post " + i + "\ndate: 2014-03-0" + i + "\n---\nPost " + i + "\n");
+		}
+	}
+
+	private Driver makeDriver() {
+		return new Driver(new Driver.Options.Builder().directory(directory).incremental(true).build());
+	}
+
+	/** Sets every output's modification time far into the past, so that rewritten outputs stand out. */
+	private void ageOutputs() {
+		for (final File file : Files.fileTreeTraverser().preOrderTraversal(target)) {
+			if (file.isFile()) {
+				file.setLastModified(oldTime);
+			}
+		}
+	}
+
+	private static void copyTree(final File from, final File to) throws IOException {
+		for (final String name : listFiles(from)) {
+			final File copy = new File(to, name);
+			Files.createParentDirs(copy);
+			Files.copy(new File(from, name), copy);
+		}
+	}
+
+	/** Returns the paths of the files under {@code root}, relative to it, in order. */
+	private static List<String> listFiles(final File root) {
+		final List<String> names = new ArrayList<String>();
+		for (final File file : Files.fileTreeTraverser().preOrderTraversal(root)) {
+			if (file.isFile()) {
+				names.add(root.toURI().relativize(file.toURI()).getPath());
+			}
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	private Path path(final String name) {
+		return new File(directory, name).toPath();
+	}
+
+	private String read(final String name) throws IOException {
+		return Files.toString(new File(target, name), Charsets.UTF_8);
+	}
+
+	/** Writes a source with a modification time that differs from the one it had, as an edit would. */
+	private void write(final String name, final String text) throws IOException {
+		final File file = new File(directory, name);
+		final long previousModified = file.lastModified();
+		Files.createParentDirs(file);
+		Files.write(text, file, Charsets.UTF_8);
+		file.setLastModified(Math.max(previousModified + 10000, file.lastModified()));
+	}
+}
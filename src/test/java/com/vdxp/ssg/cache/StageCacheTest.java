@@ -0,0 +1,97 @@
+package com.vdxp.ssg.cache;
+
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class StageCacheTest {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testStoresAndCountsEntries() {
+		final StageCache cache = new StageCache(temporaryFolder.getRoot());
+		final String key = StageCache.key(1, "text");
+
+		assertThat(cache.getString("stage", key), is(nullValue()));
+		cache.putString("stage", key, "converted");
+		assertThat(cache.getString("stage", key), is("converted"));
+		assertThat(new StageCache(temporaryFolder.getRoot()).getString("stage", key), is("converted"));
+
+		assertThat(cache.getStatistics().get("stage").hits.get(), is(1L));
+		assertThat(cache.getStatistics().get("stage").misses.get(), is(1L));
+	}
+
+	@Test
+	public void testKeysDependOnPartBoundaries() {
+		assertThat(StageCache.key("ab", "c"), is(not(StageCache.key("a", "bc"))));
+	}
+
+	@Test
+	public void testRoundTripsPlainObjects() {
+		final StageCache cache = new StageCache(temporaryFolder.getRoot());
+		final HashMap<String, Object> data = new HashMap<String, Object>();
+		data.put("title", "Hello");
+		data.put("tags", new ArrayList<Object>(Arrays.asList("a", "b")));
+
+		cache.putObject("yaml", "ab12", data);
+
+		@SuppressWarnings("unchecked")
+		final Map<String, Object> cachedData = (Map<String, Object>) cache.getObject("yaml", "ab12");
+		assertThat(cachedData, is((Map<String, Object>) data));
+	}
+
+	@Test
+	public void testRejectsUnexpectedClasses() {
+		final StageCache cache = new StageCache(temporaryFolder.getRoot());
+		cache.putObject("yaml", "ab12", new File("unexpected"));
+
+		assertThat(cache.getObject("yaml", "ab12"), is(nullValue()));
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsedEntries() {
+		final StageCache cache = new StageCache(temporaryFolder.getRoot(), 10);
+		cache.put("stage", "aa01", new byte[6]);
+		cache.put("stage", "aa02", new byte[6]);
+		new File(temporaryFolder.getRoot(), "stage/aa/aa01").setLastModified(1000);
+		new File(temporaryFolder.getRoot(), "stage/aa/aa02").setLastModified(2000);
+
+		cache.evict();
+
+		assertThat(cache.get("stage", "aa01"), is(nullValue()));
+		assertThat(cache.get("stage", "aa02").length, is(6));
+	}
+
+	@Test
+	public void testDeletesStaleTemporaryFilesAndCountsTheRest() throws IOException {
+		final StageCache cache = new StageCache(temporaryFolder.getRoot(), 10);
+		cache.put("stage", "aa01", new byte[6]);
+		final File staleFile = new File(temporaryFolder.getRoot(), "stage/aa/aa021234.tmp");
+		Files.write(new byte[20], staleFile);
+		staleFile.setLastModified(1000);
+		final File writtenFile = new File(temporaryFolder.getRoot(), "stage/aa/aa035678.tmp");
+		Files.write(new byte[6], writtenFile);
+
+		cache.evict();
+
+		assertThat(staleFile.exists(), is(false));
+		/* A build may still be writing it, but it takes up room */
+		assertThat(writtenFile.exists(), is(true));
+		assertThat(cache.get("stage", "aa01"), is(nullValue()));
+	}
+}
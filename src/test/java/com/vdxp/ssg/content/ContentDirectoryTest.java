@@ -0,0 +1,99 @@
+package com.vdxp.ssg.content;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ContentDirectoryTest {
+
+	@Test
+	public void testFindsRenamedChildren() {
+		final ContentDirectory root = new ContentDirectory("root");
+		final ContentDirectory dir = new ContentDirectory("dir");
+		final ContentFile file = new TestTextContentFile("dummy", "post", "md");
+		root.addChild(dir);
+		dir.addChild(file);
+		assertThat(root.getPath("dir/post.md", false), is((ContentNode) file));
+
+		file.setExtensions(Arrays.asList("html"));
+		assertThat(root.getPath("dir/post.md", false), is(nullValue()));
+		assertThat(root.getPath("dir/post.html", false), is((ContentNode) file));
+
+		file.setBasename("index");
+		file.setExtensions(Arrays.asList("html"));
+		dir.setName("blog");
+		assertThat(root.getPath("dir/index.html", false), is(nullValue()));
+		assertThat(root.getPath("blog/index.html", false), is((ContentNode) file));
+	}
+
+	@Test
+	public void testKeepsDuplicateChildren() {
+		final ContentDirectory root = new ContentDirectory("root");
+		final ContentFile first = new TestTextContentFile("first", "index", "html");
+		root.addChild(first);
+		root.addChild(new TestTextContentFile("second", "index", "html"));
+
+		assertThat(root.getChildren().size(), is(2));
+		assertThat(root.getPath("index.html", false), is((ContentNode) first));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testExtensionsCannotBeModifiedInPlace() {
+		new TestTextContentFile("dummy", "post", "md").getExtensions().add("html");
+	}
+
+	@Test
+	public void testMergesDirectoriesRecursively() {
+		final ContentDirectory site = new ContentDirectory("site");
+		final ContentDirectory siteImages = new ContentDirectory("img");
+		site.addChild(siteImages);
+		siteImages.addChild(new TestTextContentFile("dummy", "a", "svg"));
+
+		final ContentDirectory blog = new ContentDirectory("blog");
+		final ContentDirectory blogImages = new ContentDirectory("img");
+		final ContentFile post = new TestTextContentFile("dummy", "post", "html");
+		final ContentFile image = new TestTextContentFile("dummy", "b", "svg");
+		blog.addChild(blogImages);
+		blog.addChild(post);
+		blogImages.addChild(image);
+
+		final ContentDirectory target = new ContentDirectory("target");
+		target.merge(site);
+		target.merge(blog);
+
+		assertThat(target.getChildren().size(), is(2));
+		assertThat(target.getPath("img", false), is(sameInstance((ContentNode) siteImages)));
+		assertThat(target.getPath("img/b.svg", false), is((ContentNode) image));
+		assertThat(image.getParent(), is((ContentNode) siteImages));
+		assertThat(post.getParent(), is((ContentNode) target));
+		assertThat(blog.getChildren().isEmpty(), is(true));
+	}
+
+	@Test
+	public void testMergesCollidingFilesAlongsideEachOther() {
+		final ContentDirectory target = new ContentDirectory("target");
+		final ContentDirectory targetImages = new ContentDirectory("img");
+		final ContentFile targetImage = new TestTextContentFile("dummy", "a", "svg");
+		target.addChild(targetImages);
+		targetImages.addChild(targetImage);
+
+		final ContentDirectory donor = new ContentDirectory("donor");
+		final ContentDirectory donorImages = new ContentDirectory("img");
+		final ContentFile donorImage = new TestTextContentFile("dummy", "a", "svg");
+		donor.addChild(donorImages);
+		donorImages.addChild(donorImage);
+
+		target.merge(donor);
+
+		assertThat(target.getChildren().size(), is(1));
+		assertThat(targetImages.getChildren().size(), is(2));
+		assertThat(donorImage.getParent(), is((ContentNode) targetImages));
+		assertThat(target.getPath("img/a.svg", false), is((ContentNode) targetImage));
+		assertThat(donor.getChildren().isEmpty(), is(true));
+	}
+}
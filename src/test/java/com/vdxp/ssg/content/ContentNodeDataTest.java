@@ -0,0 +1,90 @@
+package com.vdxp.ssg.content;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ContentNodeDataTest {
+
+	@Test
+	public void testDataIsALiveReadOnlyView() {
+		final ContentDirectory node = new ContentDirectory("node");
+		final Map<String, Object> data = node.getData();
+
+		node.putData("layout", "page.hbs");
+		assertThat(data.get("layout"), is((Object) "page.hbs"));
+
+		try {
+			data.put("layout", "other.hbs");
+		} catch (final UnsupportedOperationException e) {
+			/* Expected */
+		}
+		assertThat(node.getData().get("layout"), is((Object) "page.hbs"));
+	}
+
+	@Test
+	public void testTypedAccess() {
+		final ContentDirectory node = new ContentDirectory("node");
+		node.putData("date_raw", 42L);
+
+		assertThat(node.getData("date_raw", Long.class), is(42L));
+		assertThat(node.getData("date_raw", String.class), is(nullValue()));
+		assertThat(node.getData("missing", Long.class), is(nullValue()));
+	}
+
+	@Test
+	public void testInternsStrings() {
+		final ContentDirectory first = new ContentDirectory("first");
+		final ContentDirectory second = new ContentDirectory("second");
+
+		final Map<String, Object> data = new HashMap<String, Object>();
+		data.put("author", new String("Someone"));
+		data.put("tags", new ArrayList<Object>(Arrays.asList(new String("java"))));
+		first.putData(data);
+		second.putData("author", new String("Someone"));
+		second.putData("tags", new ArrayList<Object>(Arrays.asList(new String("java"))));
+
+		assertThat(second.getData().get("author"), is(sameInstance(first.getData().get("author"))));
+		final List<?> firstTags = (List<?>) first.getData().get("tags");
+		final List<?> secondTags = (List<?>) second.getData().get("tags");
+		assertThat(secondTags.get(0), is(sameInstance(firstTags.get(0))));
+	}
+
+	@Test
+	public void testKeepsTheListsItIsGiven() {
+		final ContentDirectory first = new ContentDirectory("first");
+		first.putData("tags", new ArrayList<Object>(Arrays.asList(new String("java"))));
+		final ContentDirectory node = new ContentDirectory("node");
+		final List<Object> tags = new ArrayList<Object>(Arrays.asList(new String("java")));
+		final List<Object> categories = Collections.unmodifiableList(Arrays.<Object>asList(new String("java")));
+		node.putData("tags", tags);
+		node.putData("categories", categories);
+
+		assertThat(node.getData().get("tags"), is(sameInstance((Object) tags)));
+		assertThat(tags.get(0), is(sameInstance(((List<?>) first.getData().get("tags")).get(0))));
+		assertThat(node.getData().get("categories"), is(sameInstance((Object) categories)));
+	}
+
+	@Test
+	public void testDoesNotInternLongStrings() {
+		final String body = Strings.repeat("<p>A long page body</p>", 10);
+		new ContentDirectory("first").putData("snippet", new String(body));
+		final ContentDirectory node = new ContentDirectory("node");
+		node.putData("snippet", body);
+		node.putData("tags", new ArrayList<Object>(Arrays.asList(body)));
+
+		assertThat(node.getData().get("snippet"), is(sameInstance((Object) body)));
+		assertThat(((List<?>) node.getData().get("tags")).get(0), is(sameInstance((Object) body)));
+	}
+}
@@ -5,10 +5,14 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class ContentVisitorTest {
 
@@ -40,6 +44,33 @@ public class ContentVisitorTest {
 		assertThat(out, containsString("\n/root/dir1/dir2/dir3/file3\n"));
 	}
 
+	@Test
+	public void testParentsAreReadOnlyAndRestoredAfterEachDirectory() {
+		final ContentDirectory root = new ContentDirectory("root");
+		final ContentDirectory dir1 = new ContentDirectory("dir1");
+		final ContentFile file1 = new DummyTextContentFile("file1");
+		final ContentFile file2 = new DummyTextContentFile("file2");
+		root.addChild(dir1);
+		dir1.addChild(file1);
+		root.addChild(file2);
+
+		final List<String> visited = new ArrayList<String>();
+		root.accept(new TextContentVisitor() {
+			@Override
+			public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
+				visited.add(parents.size() + " " + contentFile.getName());
+				try {
+					parents.clear();
+					fail("Parents could be modified");
+				} catch (final UnsupportedOperationException e) {
+					/* Expected */
+				}
+			}
+		});
+
+		assertThat(visited, is(Arrays.asList("2 file1", "1 file2")));
+	}
+
 	private class TestVisitor implements ContentVisitor {
 
 		public final StringBuilder out = new StringBuilder();
@@ -0,0 +1,62 @@
+package com.vdxp.ssg.content;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class FrontMatterTest {
+
+	private static final String[] texts = {
+			"---\ntitle: a\n---\nbody",
+			"---\r\ntitle: a\r\n---\r\n\r\nbody\r\n",
+			"---\n---\nbody",
+			"---\n\n  title: a\n---   \n---\nbody",
+			"---\ntitle: a\n----\n---\n",
+			"---\ntitle: a\n---",
+			"---\ntitle: a\n",
+			"--- \ntitle: a\n---\nbody",
+			" ---\ntitle: a\n---\nbody",
+			"body\n---\ntitle: a\n---\nbody",
+			"----\ntitle: a\n---\nbody",
+			"---\u2028title: a\u0085---\u2029body",
+			"---\ntitle: a\r---\rbody",
+			"",
+			"--",
+	};
+
+	@Test
+	public void testSplitsLikeTheRegularExpression() {
+		for (final String text : texts) {
+			final String[] parts = text.split("(?m)^---$\\s*", 3);
+			final FrontMatter frontMatter = FrontMatter.scan(text);
+			if (parts.length < 3 || !parts[0].isEmpty()) {
+				assertThat(text, frontMatter, nullValue());
+			} else {
+				assertThat(text, frontMatter.getYaml().toString(), is(parts[1]));
+				assertThat(text, frontMatter.getBody().toString(), is(parts[2]));
+			}
+		}
+	}
+
+	@Test
+	public void testTellsWhenMoreTextIsNeeded() {
+		for (final String text : texts) {
+			final FrontMatter whole = FrontMatter.scan(text);
+			for (int length = 0; length <= text.length(); length++) {
+				final FrontMatter partial = FrontMatter.scan(text.substring(0, length), false);
+				if (partial == FrontMatter.incomplete) {
+					continue;
+				}
+				if (whole == null) {
+					assertThat(text + " cut at " + length, partial, nullValue());
+				} else {
+					assertThat(text + " cut at " + length, partial.bodyStart, is(whole.bodyStart));
+				}
+			}
+		}
+		assertThat(FrontMatter.scan("---\ntitle: a\n---\n", false), sameInstance(FrontMatter.incomplete));
+	}
+}
@@ -0,0 +1,64 @@
+package com.vdxp.ssg.content;
+
+import com.google.common.base.Strings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PageStoreTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testStoresTextOffTheHeap() throws IOException {
+		final PageStore store = new PageStore();
+		try {
+			final String text = Strings.repeat("caf\u00e9 \u2603 \ud83d\ude00 ", 100);
+			final Utf8Text stored = store.store(text);
+
+			assertThat(stored.toString(), is(text));
+			assertThat(stored.getBytes().isDirect(), is(true));
+			assertThat(store.getStoredBytes(), is((long) text.getBytes(StandardCharsets.UTF_8).length));
+
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			stored.writeTo(Channels.newChannel(output));
+			assertThat(output.toByteArray(), is(text.getBytes(StandardCharsets.UTF_8)));
+
+			assertThat(store.store(stored), sameInstance(stored));
+			assertThat(store.store(Utf8Text.encode("heap")).toString(), is("heap"));
+			assertThat(store.store(null), nullValue());
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testSpillsToTemporaryFileOverBudget() throws IOException {
+		final PageStore store = new PageStore(new PageStore.Options(100, 64, temporaryFolder.getRoot()));
+		try {
+			final Utf8Text inMemory = store.store(Strings.repeat("a", 60));
+			final Utf8Text spilled = store.store(Strings.repeat("b", 60));
+			final Utf8Text large = store.store(Strings.repeat("c", 200));
+
+			assertThat(inMemory.toString(), is(Strings.repeat("a", 60)));
+			assertThat(spilled.toString(), is(Strings.repeat("b", 60)));
+			assertThat(large.toString(), is(Strings.repeat("c", 200)));
+			assertThat(store.getSpilledBytes(), is(64L + 200L));
+			assertThat(temporaryFolder.getRoot().list().length, is(1));
+		} finally {
+			store.close();
+		}
+		assertThat(temporaryFolder.getRoot().list().length, is(0));
+	}
+}
@@ -0,0 +1,14 @@
+package com.vdxp.ssg.content;
+
+/** A text file that only exists in memory, with its text given up front. */
+public class TestTextContentFile extends TextContentFile {
+	public TestTextContentFile(final String text, final String basename, final String... extensions) {
+		super(basename, extensions);
+		setText(text);
+	}
+
+	@Override
+	public String getSource() {
+		return "Test file " + getBasename();
+	}
+}
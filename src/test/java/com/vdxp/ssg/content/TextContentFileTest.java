@@ -0,0 +1,73 @@
+package com.vdxp.ssg.content;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TextContentFileTest {
+
+	@Test
+	public void testWritesUtf8ToChannels() throws IOException {
+		/* Long enough to split characters across the encoder's buffer */
+		final String text = Strings.repeat("caf\u00e9 ", 5000) + "\ud83d\ude00";
+		final TextContentFile file = new TestTextContentFile(text, "test", "html");
+
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		file.writeTo(Channels.newChannel(output));
+
+		assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8), is(text));
+		assertThat(file.getContents().available(), is(output.size()));
+	}
+
+	@Test
+	public void testStreamsDeferredRenderingWithoutKeepingIt() throws IOException {
+		final TextContentFile file = new TestTextContentFile("body", "test", "html");
+		final CountingRenderer renderer = new CountingRenderer();
+		file.setRenderer(renderer);
+
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		file.writeTo(Channels.newChannel(output));
+		assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8), is("<html>body</html>"));
+		assertThat(file.isRendered(), is(false));
+
+		final StringWriter writer = new StringWriter();
+		file.writeTo(writer);
+		assertThat(writer.toString(), is("<html>body</html>"));
+		assertThat(renderer.renders, is(2));
+
+		assertThat(file.getText(), is("<html>body</html>"));
+		assertThat(file.getText(), is("<html>body</html>"));
+		assertThat(file.isRendered(), is(true));
+		assertThat(renderer.renders, is(3));
+	}
+
+	@Test
+	public void testSettingTextDropsDeferredRendering() {
+		final TextContentFile file = new TestTextContentFile("body", "test", "html");
+		file.setRenderer(new CountingRenderer());
+		file.setText("replaced");
+
+		assertThat(file.getText(), is("replaced"));
+	}
+
+	private static class CountingRenderer implements TextRenderer {
+		private int renders = 0;
+
+		@Override
+		public void render(final String text, final Writer writer) throws IOException {
+			renders++;
+			writer.write("<html>");
+			writer.write(text);
+			writer.write("</html>");
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.vdxp.ssg.content;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class Utf8TextTest {
+
+	/* Long enough to need several checkpoints, with one, two, three and four byte characters */
+	private static final String mixed = Strings.repeat("ab\u00e9\u2603\ud83d\ude00 ", 100) + "end";
+
+	@Test
+	public void testReadsCharactersLikeString() {
+		final Utf8Text text = Utf8Text.encode(mixed);
+
+		assertThat(text.length(), is(mixed.length()));
+		for (int i = 0; i < mixed.length(); i++) {
+			assertThat(text.charAt(i), is(mixed.charAt(i)));
+		}
+		assertThat(text.toString(), is(mixed));
+		assertThat(text.byteLength(), is(mixed.getBytes(StandardCharsets.UTF_8).length));
+	}
+
+	@Test
+	public void testSlicesWithoutCopying() {
+		final Utf8Text text = Utf8Text.encode(mixed);
+
+		for (int start = 0; start < 40; start += 7) {
+			final int end = mixed.length() - start * 3;
+			final CharSequence slice = text.subSequence(start, end);
+			assertThat(slice.toString(), is(mixed.substring(start, end)));
+			if (!Character.isLowSurrogate(mixed.charAt(start)) && (end == mixed.length() || !Character.isLowSurrogate(mixed.charAt(end)))) {
+				assertThat(slice, instanceOf(Utf8Text.class));
+			}
+		}
+		/* The middle of a surrogate pair has no bytes of its own */
+		assertThat(text.subSequence(5, 10), instanceOf(String.class));
+		assertThat(text.subSequence(5, 10).toString(), is(mixed.substring(5, 10)));
+	}
+
+	@Test
+	public void testFindsCharacterIndexes() {
+		final Utf8Text text = Utf8Text.encode(mixed);
+
+		assertThat(text.indexOf("end"), is(mixed.indexOf("end")));
+		assertThat(text.indexOf("\u2603"), is(mixed.indexOf("\u2603")));
+		assertThat(text.indexOf("missing"), is(-1));
+		assertThat(Utf8Text.encode("ascii only").indexOf("only"), is(6));
+	}
+
+	@Test
+	public void testWritesBytesAsTheyAre() throws IOException {
+		final Utf8Text text = Utf8Text.encode(mixed);
+
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		text.writeTo(Channels.newChannel(output));
+
+		assertThat(output.toByteArray(), is(mixed.getBytes(StandardCharsets.UTF_8)));
+		assertThat(text.openStream().available(), is(output.size()));
+	}
+
+	@Test(expected = CharacterCodingException.class)
+	public void testRejectsOverlongEncodings() throws CharacterCodingException {
+		Utf8Text.wrap(new byte[] {'a', (byte) 0xc0, (byte) 0xaf});
+	}
+
+	@Test(expected = CharacterCodingException.class)
+	public void testRejectsEncodedSurrogates() throws CharacterCodingException {
+		Utf8Text.wrap(new byte[] {(byte) 0xed, (byte) 0xa0, (byte) 0x80});
+	}
+
+	@Test(expected = CharacterCodingException.class)
+	public void testRejectsTruncatedCharacters() throws CharacterCodingException {
+		Utf8Text.wrap(new byte[] {'a', (byte) 0xe2, (byte) 0x98});
+	}
+}
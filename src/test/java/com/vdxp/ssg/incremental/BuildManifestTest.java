@@ -0,0 +1,61 @@
+package com.vdxp.ssg.incremental;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class BuildManifestTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSavesAndLoadsRecords() throws IOException {
+		final BuildManifest manifest = new BuildManifest();
+		manifest.putInput("site/a.md", new BuildManifest.InputRecord(12, 1000000000000L, "abc"));
+		manifest.putOutput("site/a.md", new BuildManifest.OutputRecord("target/a.html", "def", Arrays.asList("site/a.md", "layout/page.hbs")));
+		manifest.putOutput("site/b.png", new BuildManifest.OutputRecord("target/b.png", "ghi", Arrays.<String>asList()));
+
+		final File file = new File(folder.getRoot(), "target.manifest");
+		manifest.save(file);
+		final BuildManifest loaded = BuildManifest.load(file);
+
+		assertThat(loaded.getInput("site/a.md").size, is(12L));
+		assertThat(loaded.getInput("site/a.md").lastModified, is(1000000000000L));
+		assertThat(loaded.getInput("site/a.md").hash, is("abc"));
+		assertThat(loaded.getOutput("site/a.md").outputPath, is("target/a.html"));
+		assertThat(loaded.getOutput("site/a.md").fingerprint, is("def"));
+		assertThat(loaded.getOutput("site/a.md").dependencies, is(Arrays.asList("site/a.md", "layout/page.hbs")));
+		assertThat(loaded.getOutput("site/b.png").dependencies.isEmpty(), is(true));
+		assertThat(new File(file.getPath() + ".tmp").exists(), is(false));
+	}
+
+	@Test
+	public void testIgnoresUnknownFormats() throws IOException {
+		final File file = new File(folder.getRoot(), "target.manifest");
+		Files.write("something else\ninput\tsite/a.md\t1\t2\tabc\n", file, Charsets.UTF_8);
+
+		assertThat(BuildManifest.load(file).getInput("site/a.md"), is(nullValue()));
+		assertThat(BuildManifest.load(new File(folder.getRoot(), "missing")).getOutputs().isEmpty(), is(true));
+	}
+
+	@Test
+	public void testSkipsMalformedLines() throws IOException {
+		final File file = new File(folder.getRoot(), "target.manifest");
+		Files.write("ssg-manifest\t1\ninput\tsite/a.md\tbig\t2\tabc\ninput\tsite/b.md\t1\t2\tdef\n", file, Charsets.UTF_8);
+
+		final BuildManifest loaded = BuildManifest.load(file);
+		assertThat(loaded.getInput("site/a.md"), is(nullValue()));
+		assertThat(loaded.getInput("site/b.md").hash, is("def"));
+	}
+}
@@ -0,0 +1,147 @@
+package com.vdxp.ssg.incremental;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.processor.FileInputProcessor;
+import com.vdxp.ssg.processor.FileOutputProcessor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IncrementalBuildPlannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File siteDirectory;
+	private File layoutDirectory;
+	private File targetDirectory;
+
+	@Test
+	public void testFirstBuildBuildsEverything() throws IOException {
+		assertThat(build(new BuildManifest()), is(Arrays.asList("a.html", "b.html", "c.png")));
+	}
+
+	@Test
+	public void testUnchangedInputsAreClean() throws IOException {
+		final BuildManifest manifest = buildAndRecord(new BuildManifest());
+		assertThat(build(manifest), is(Collections.<String>emptyList()));
+	}
+
+	@Test
+	public void testChangedSourceIsDirty() throws IOException {
+		final BuildManifest manifest = buildAndRecord(new BuildManifest());
+		write(new File(siteDirectory, "a.html"), "changed");
+
+		assertThat(build(manifest), is(Arrays.asList("a.html")));
+	}
+
+	@Test
+	public void testChangedLayoutMakesItsPagesDirty() throws IOException {
+		final BuildManifest manifest = buildAndRecord(new BuildManifest());
+		write(new File(layoutDirectory, "page.hbs"), "<div>{{{content}}}</div>");
+
+		/* Binaries have no layout */
+		assertThat(build(manifest), is(Arrays.asList("a.html", "b.html")));
+	}
+
+	@Test
+	public void testMissingOutputIsDirty() throws IOException {
+		final BuildManifest manifest = buildAndRecord(new BuildManifest());
+		new File(targetDirectory, "c.png").delete();
+
+		assertThat(build(manifest), is(Arrays.asList("c.png")));
+	}
+
+	@Test
+	public void testOutputThatCouldNotBeWrittenStaysDirty() throws IOException {
+		final BuildManifest manifest = buildAndRecord(new BuildManifest());
+		final File source = new File(siteDirectory, "c.png");
+		write(source, "changed");
+		final long modified = source.lastModified();
+
+		/* The source disappears between planning and writing, so the previous c.png is left in the output */
+		final ContentDirectory site = readSite();
+		final IncrementalBuildPlanner planner = plan(manifest, site);
+		site.setName(targetDirectory.getPath());
+		final BuildManifest failedManifest = planner.recordOutputs(site);
+		source.delete();
+		planner.discardOutputs(new FileOutputProcessor().writeContentRoot(site, planner.getDirtyNodes()));
+
+		Files.write("changed", source, Charsets.UTF_8);
+		source.setLastModified(modified);
+		assertThat(build(failedManifest), is(Arrays.asList("c.png")));
+	}
+
+	@Before
+	public void setupSources() throws IOException {
+		siteDirectory = folder.newFolder("site");
+		layoutDirectory = folder.newFolder("layout");
+		targetDirectory = new File(folder.getRoot(), "target");
+		write(new File(siteDirectory, "a.html"), "a");
+		write(new File(siteDirectory, "b.html"), "b");
+		write(new File(siteDirectory, "c.png"), "c");
+		write(new File(layoutDirectory, "page.hbs"), "<main>{{{content}}}</main>");
+	}
+
+	/** Plans a build against {@code previous} and returns the names of the files that are out of date. */
+	private List<String> build(final BuildManifest previous) throws IOException {
+		final ContentDirectory site = readSite();
+		final IncrementalBuildPlanner planner = plan(previous, site);
+		return getDirtyNames(site, planner);
+	}
+
+	/** Plans a build, writes out what is out of date, and returns the manifest of the build. */
+	private BuildManifest buildAndRecord(final BuildManifest previous) throws IOException {
+		final ContentDirectory site = readSite();
+		final IncrementalBuildPlanner planner = plan(previous, site);
+		site.setName(targetDirectory.getPath());
+		final BuildManifest manifest = planner.recordOutputs(site);
+		planner.discardOutputs(new FileOutputProcessor().writeContentRoot(site, planner.getDirtyNodes()));
+		return manifest;
+	}
+
+	private IncrementalBuildPlanner plan(final BuildManifest previous, final ContentDirectory site) throws IOException {
+		final ContentDirectory layout = new FileInputProcessor().readContentRoot(layoutDirectory.getPath());
+		final IncrementalBuildPlanner planner = new IncrementalBuildPlanner(previous, layout);
+		planner.planContentRoot(site);
+		return planner;
+	}
+
+	private ContentDirectory readSite() throws IOException {
+		final ContentDirectory site = new FileInputProcessor().readContentRoot(siteDirectory.getPath());
+		site.putData("layout", "page.hbs");
+		return site;
+	}
+
+	private static List<String> getDirtyNames(final ContentDirectory site, final IncrementalBuildPlanner planner) {
+		final List<String> names = new ArrayList<String>();
+		for (final ContentNode child : site.getChildren()) {
+			if (planner.getDirtyNodes().apply(child)) {
+				names.add(child.getName());
+			}
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	/** Writes a file with a modification time that differs from the one it had, as an edit would. */
+	private static void write(final File file, final String text) throws IOException {
+		final long previousModified = file.lastModified();
+		Files.write(text, file, Charsets.UTF_8);
+		file.setLastModified(Math.max(previousModified + 10000, file.lastModified()));
+	}
+}
@@ -0,0 +1,163 @@
+package com.vdxp.ssg.pipeline;
+
+import com.google.common.collect.ImmutableList;
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.report.BuildReport;
+import com.vdxp.ssg.report.StageRecord;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PipelineTest {
+
+	@Test
+	public void testRunsInOrderOfAdditionWithOneThread() throws IOException {
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		final Pipeline pipeline = new Pipeline()
+				.addStage(new RecordingStage("join", ImmutableList.of("a", "b"), ImmutableList.of("c"), order))
+				.addStage(new RecordingStage("first", ImmutableList.<String>of(), ImmutableList.of("a"), order))
+				.addStage(new RecordingStage("second", ImmutableList.<String>of(), ImmutableList.of("b"), order));
+
+		final Artifacts artifacts = pipeline.run();
+
+		assertThat(order, is((List<String>) ImmutableList.of("first", "second", "join")));
+		assertThat(artifacts.get("c", String.class), is("join"));
+	}
+
+	@Test
+	public void testRunsIndependentStagesConcurrently() throws IOException {
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		final Pipeline pipeline = new Pipeline(new Pipeline.Options(4));
+		for (int i = 0; i < 8; i++) {
+			pipeline.addStage(new RecordingStage("read" + i, ImmutableList.<String>of(), ImmutableList.of("read" + i), order));
+			pipeline.addStage(new RecordingStage("process" + i, ImmutableList.of("read" + i), ImmutableList.of("processed" + i), order));
+		}
+		pipeline.addStage(new RecordingStage("merge", ImmutableList.of("processed0", "processed7"), ImmutableList.of("merged"), order));
+
+		pipeline.run();
+
+		assertThat(order.size(), is(17));
+		for (int i = 0; i < 8; i++) {
+			assertThat(order.indexOf("read" + i) < order.indexOf("process" + i), is(true));
+		}
+		assertThat(order.indexOf("merge") > order.indexOf("process7"), is(true));
+	}
+
+	@Test
+	public void testPublishesOutputsOnlyOnceTheyAreCounted() throws IOException {
+		final BuildReport report = new BuildReport();
+		final CountDownLatch produced = new CountDownLatch(1);
+		final List<Boolean> producerRecorded = Collections.synchronizedList(new ArrayList<Boolean>());
+		new Pipeline(new Pipeline.Options(4, report))
+				.addStage(new Stage("produce", ImmutableList.<String>of(), ImmutableList.of("tree")) {
+					@Override
+					public void run(final Artifacts artifacts) {
+						final ContentDirectory tree = new ContentDirectory("tree");
+						for (int i = 0; i < 3; i++) {
+							tree.addChild(new ContentDirectory("child" + i));
+						}
+						artifacts.put("tree", tree);
+						produced.countDown();
+					}
+				})
+				/* Finishes as soon as the tree is put, which wakes up the pipeline while the tree is being counted */
+				.addStage(new Stage("wake", ImmutableList.<String>of(), ImmutableList.<String>of()) {
+					@Override
+					public void run(final Artifacts artifacts) {
+						try {
+							produced.await();
+						} catch (final InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				})
+				.addStage(new Stage("consume", ImmutableList.of("tree"), ImmutableList.<String>of()) {
+					@Override
+					public void run(final Artifacts artifacts) {
+						producerRecorded.add(hasStage(report, "produce"));
+						final ContentDirectory tree = artifacts.get("tree", ContentDirectory.class);
+						for (final ContentNode child : new ArrayList<ContentNode>(tree.getChildren())) {
+							tree.removeChild(child);
+						}
+					}
+				})
+				.run();
+
+		assertThat(producerRecorded, is(Collections.singletonList(true)));
+		for (final StageRecord stage : report.getStages()) {
+			if (stage.name.equals("produce")) {
+				assertThat(stage.nodes, is(4L));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsMissingInputs() throws IOException {
+		new Pipeline().addStage(new RecordingStage("orphan", ImmutableList.of("missing"), ImmutableList.<String>of(), new ArrayList<String>())).run();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRejectsCycles() throws IOException {
+		final List<String> order = new ArrayList<String>();
+		new Pipeline(new Pipeline.Options(2))
+				.addStage(new RecordingStage("a", ImmutableList.of("b"), ImmutableList.of("a"), order))
+				.addStage(new RecordingStage("b", ImmutableList.of("a"), ImmutableList.of("b"), order))
+				.run();
+	}
+
+	@Test
+	public void testStopsAfterAFailure() {
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		final Pipeline pipeline = new Pipeline(new Pipeline.Options(2))
+				.addStage(new Stage("fail", ImmutableList.<String>of(), ImmutableList.of("failed")) {
+					@Override
+					public void run(final Artifacts artifacts) throws IOException {
+						throw new IOException("Expected");
+					}
+				})
+				.addStage(new RecordingStage("after", ImmutableList.of("failed"), ImmutableList.<String>of(), order));
+
+		try {
+			pipeline.run();
+			fail("Pipeline did not fail");
+		} catch (final IOException e) {
+			assertThat(e.getMessage(), is("Expected"));
+		}
+		assertThat(order.isEmpty(), is(true));
+	}
+
+	private static boolean hasStage(final BuildReport report, final String name) {
+		for (final StageRecord stage : report.getStages()) {
+			if (stage.name.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class RecordingStage extends Stage {
+		private final List<String> order;
+
+		public RecordingStage(final String name, final List<String> inputs, final List<String> outputs, final List<String> order) {
+			super(name, inputs, outputs);
+			this.order = order;
+		}
+
+		@Override
+		public void run(final Artifacts artifacts) {
+			order.add(getName());
+			for (final String output : getOutputs()) {
+				artifacts.put(output, getName());
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.vdxp.ssg.preview;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.TestTextContentFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PreviewServerTest {
+
+	private PreviewServer server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new PreviewServer(new PreviewServer.Options(0, 1, true));
+		server.start();
+		server.setContentRoot(makeContentRoot("Hello"));
+	}
+
+	@After
+	public void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	public void testServesIndexPages() throws IOException {
+		final HttpURLConnection connection = open("/docs/");
+		assertThat(connection.getResponseCode(), is(200));
+		assertThat(connection.getContentType(), is("text/html; charset=utf-8"));
+		assertThat(read(connection.getInputStream()), is("<p>Hello</p>"));
+
+		assertThat(open("/docs").getResponseCode(), is(301));
+		assertThat(open("/missing.html").getResponseCode(), is(404));
+	}
+
+	@Test
+	public void testListensOnlyOnTheLoopbackAddress() {
+		assertThat(server.getAddress().getAddress().isLoopbackAddress(), is(true));
+		assertThat(new PreviewServer.Options(8080).address.isLoopbackAddress(), is(true));
+	}
+
+	@Test
+	public void testRevalidatesWithEtags() throws IOException {
+		final String etag = open("/docs/index.html").getHeaderField("ETag");
+
+		final HttpURLConnection unchanged = open("/docs/index.html");
+		unchanged.setRequestProperty("If-None-Match", etag);
+		assertThat(unchanged.getResponseCode(), is(304));
+
+		server.setContentRoot(makeContentRoot("Changed"));
+		final HttpURLConnection changed = open("/docs/index.html");
+		changed.setRequestProperty("If-None-Match", etag);
+		assertThat(changed.getResponseCode(), is(200));
+		assertThat(read(changed.getInputStream()), is("<p>Changed</p>"));
+	}
+
+	@Test
+	public void testGzipsForClientsThatAcceptIt() throws IOException {
+		final HttpURLConnection connection = open("/docs/index.html");
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		assertThat(connection.getHeaderField("Content-Encoding"), is("gzip"));
+		assertThat(read(new GZIPInputStream(connection.getInputStream())), is("<p>Hello</p>"));
+	}
+
+	private HttpURLConnection open(final String path) throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+		connection.setInstanceFollowRedirects(false);
+		return connection;
+	}
+
+	private static String read(final InputStream input) throws IOException {
+		try {
+			return new String(ByteStreams.toByteArray(input), Charsets.UTF_8);
+		} finally {
+			input.close();
+		}
+	}
+
+	private static ContentDirectory makeContentRoot(final String text) {
+		final ContentDirectory root = new ContentDirectory("target");
+		final ContentDirectory docs = new ContentDirectory("docs");
+		docs.addChild(new TestTextContentFile("<p>" + text + "</p>", "index", "html"));
+		root.addChild(docs);
+		return root;
+	}
+}
@@ -0,0 +1,84 @@
+package com.vdxp.ssg.processor;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.content.TestTextContentFile;
+import com.vdxp.ssg.content.TextContentFile;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class BlogPagesGeneratorProcessorTest {
+
+	@Test
+	public void testPaginatesNewestFirst() {
+		final ContentDirectory blog = new ContentDirectory("blog");
+		for (int i = 1; i <= 5; i++) {
+			final TextContentFile post = new TestTextContentFile("<p>Post " + i + "</p>", "post" + i, "html");
+			post.putData("title", "Post " + i);
+			post.putData("date_raw", (long) i);
+			blog.addChild(post);
+		}
+
+		new BlogPagesGeneratorProcessor(new BlogPagesGeneratorProcessor.Options(2)).process(blog);
+
+		final List<Map<String, Object>> firstPosts = getPosts(blog.getPath("index.html", false));
+		assertThat(firstPosts.size(), is(2));
+		assertThat(firstPosts.get(0).get("title"), is((Object) "Post 5"));
+		assertThat(firstPosts.get(0).get("content"), is((Object) "<p>Post 5</p>"));
+		assertThat(firstPosts.get(0).get("link"), is((Object) "post5.html"));
+		assertThat(firstPosts.get(1).get("title"), is((Object) "Post 4"));
+
+		final List<Map<String, Object>> lastPosts = getPosts(blog.getPath("page/3/index.html", false));
+		assertThat(lastPosts.size(), is(1));
+		assertThat(lastPosts.get(0).get("link"), is((Object) "../../post1.html"));
+		assertThat(lastPosts.get(0).get("snippet"), is(nullValue()));
+	}
+
+	@Test
+	public void testPostViewsKeepTheirContentButReadDataLive() {
+		final ContentDirectory blog = new ContentDirectory("blog");
+		final TextContentFile post = new TestTextContentFile("<p>Post</p>", "post", "html");
+		blog.addChild(post);
+
+		new BlogPagesGeneratorProcessor().process(blog);
+		post.setText("<html>Rendered post</html>");
+		post.putData("snippet", "<p>Snippet</p>");
+
+		final Map<String, Object> postView = getPosts(blog.getPath("index.html", false)).get(0);
+		assertThat(postView.get("content"), is((Object) "<p>Post</p>"));
+		assertThat(postView.get("snippet"), is((Object) "<p>Snippet</p>"));
+		assertThat(postView.size(), is(3));
+	}
+
+	@Test
+	public void testPostsUseThePagesRootPath() {
+		final ContentDirectory blog = new ContentDirectory("blog");
+		for (int i = 1; i <= 2; i++) {
+			final TextContentFile post = new TestTextContentFile("<p>Post " + i + "</p>", "post" + i, "html");
+			post.putData("date_raw", (long) i);
+			blog.addChild(post);
+		}
+		final ContentDirectory layout = new ContentDirectory("layout");
+		layout.addChild(new TestTextContentFile("{{#each blogPage.posts}}<img src=\"{{rootPath}}i.png\">{{/each}}", "blogPage", "hbs"));
+
+		new BlogPagesGeneratorProcessor(new BlogPagesGeneratorProcessor.Options(1)).process(blog);
+		new RootPathProcessor().process(blog);
+		new HandlebarsLayoutProcessor().process(blog, layout);
+
+		final TextContentFile secondPage = (TextContentFile) blog.getPath("page/2/index.html", false);
+		assertThat(secondPage.getText(), is("<img src=\"../../i.png\">"));
+		assertThat(getPosts(secondPage).get(0).containsKey("rootPath"), is(false));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> getPosts(final ContentNode page) {
+		final Map<String, Object> blogPage = (Map<String, Object>) page.getData().get("blogPage");
+		return (List<Map<String, Object>>) blogPage.get("posts");
+	}
+}
@@ -0,0 +1,103 @@
+package com.vdxp.ssg.processor;
+
+import com.joestelmach.natty.DateGroup;
+import com.joestelmach.natty.Parser;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DateParserTest {
+
+	private static final String[] formattedDates = {
+			"2014-03-07 10:00",
+			"2014-03-07 10:00:30",
+			"2014-3-7 9:05",
+			"2014-03-07T10:00",
+			"2014-03-07T10:00:00Z",
+			"2014-03-07T10:00:00+01:00",
+			"2014-03-07 10:00 +0100",
+			"2014-03-07 10:00:00.123",
+			"2014/03/07 10:00",
+			"2014-12-31 23:59:59",
+			"Fri, 7 Mar 2014 10:00:00 GMT",
+			"March 7, 2014 10:00",
+			"Mar 7, 2014 10:00 +0000",
+			"Sep 30, 2014 18:45 -0700",
+	};
+
+	/** Around the daylight saving changes of 2014 in New York, including times that were skipped or repeated */
+	private static final String[] daylightSavingDates = {
+			"2014-03-09 01:30",
+			"2014-03-09 02:30",
+			"2014-03-09 03:30",
+			"2014-11-02 00:30",
+			"2014-11-02 01:30",
+			"2014-11-02 02:30",
+	};
+
+	@Test
+	public void testFormattedDatesMatchNatty() {
+		final Parser natty = new Parser();
+		for (final String date : formattedDates) {
+			final List<DateGroup> groups = natty.parse(date);
+			assertThat(date, DateParser.parseUncached(date), is(groups.get(0).getDates().get(0).getTime()));
+		}
+	}
+
+	/**
+	 * Natty parsers keep the time zone they were made in, and DateParser keeps one per thread, so this runs on a
+	 * thread of its own.
+	 */
+	@Test
+	public void testDaylightSavingChangesMatchNatty() throws Throwable {
+		final TimeZone defaultZone = TimeZone.getDefault();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+		try {
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						final Parser natty = new Parser();
+						for (final String date : daylightSavingDates) {
+							final List<DateGroup> groups = natty.parse(date);
+							assertThat(date, DateParser.parseUncached(date), is(groups.get(0).getDates().get(0).getTime()));
+						}
+					} catch (final Throwable e) {
+						failure.set(e);
+					}
+				}
+			});
+			thread.start();
+			thread.join();
+		} finally {
+			TimeZone.setDefault(defaultZone);
+		}
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+	}
+
+	@Test
+	public void testOtherDatesGoToNatty() {
+		assertThat(DateParser.parse("not a date at all"), nullValue());
+		/* Natty fills in the current time of day, so these cannot come from the formats */
+		final Parser natty = new Parser();
+		for (final String date : new String[] {"today", "2014-03-07", "10:00"}) {
+			final long nattyDate = natty.parse(date).get(0).getDates().get(0).getTime();
+			assertThat(date, Math.abs(DateParser.parseUncached(date) - nattyDate) < 60000, is(true));
+		}
+	}
+
+	@Test
+	public void testCachedDatesAreTheSame() {
+		assertThat(DateParser.parse("2014-03-07 10:00"), is(DateParser.parseUncached("2014-03-07 10:00")));
+		assertThat(DateParser.parse("2014-03-07 10:00"), is(DateParser.parseUncached("2014-03-07 10:00")));
+	}
+}
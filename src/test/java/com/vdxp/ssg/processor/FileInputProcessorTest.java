@@ -0,0 +1,162 @@
+package com.vdxp.ssg.processor;
+
+import com.google.common.base.Strings;
+import com.vdxp.ssg.content.BinaryContentFile;
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.content.ContentVisitor;
+import com.vdxp.ssg.content.FrontMatter;
+import com.vdxp.ssg.content.TextContentFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FileInputProcessorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String contentRootPath;
+
+	@Test
+	public void testSequentialTree() throws IOException {
+		final ContentDirectory root = new FileInputProcessor().readContentRoot(contentRootPath);
+		assertThat(describe(root), is(""
+				+ "/root (dir)\n"
+				+ "/root/a (dir)\n"
+				+ "/root/a/c.md [c]\n"
+				+ "/root/a/d (dir)\n"
+				+ "/root/a/d/e.png (bin)\n"
+				+ "/root/b.html [b]\n"
+				+ "/root/z.txt [z]\n"));
+	}
+
+	@Test
+	public void testParallelTreeMatchesSequentialTree() throws IOException {
+		final ContentDirectory sequential = new FileInputProcessor().readContentRoot(contentRootPath);
+		final ContentDirectory parallel = new FileInputProcessor(new FileInputProcessor.Options(4)).readContentRoot(contentRootPath);
+		assertThat(describe(parallel), is(describe(sequential)));
+	}
+
+	@Test
+	public void testTextIsLoadedLazilyAsUtf8() throws IOException {
+		final File file = new File(contentRootPath, "utf8.txt");
+		write(file, "caf\u00e9 \u2603");
+
+		final FileInputProcessor.FileInputTextContentFile contentFile =
+				(FileInputProcessor.FileInputTextContentFile) new FileInputProcessor().makeContentFile(file);
+		assertThat(contentFile.isLoaded(), is(false));
+		assertThat(contentFile.getText(), is("caf\u00e9 \u2603"));
+		assertThat(contentFile.isLoaded(), is(true));
+	}
+
+	@Test
+	public void testFrontMatterIsReadWithoutLoadingText() throws IOException {
+		final File file = new File(contentRootPath, "post.md");
+		final String body = Strings.repeat("caf\u00e9 body\n", 2000);
+		write(file, "---\ntitle: " + Strings.repeat("long ", 1000) + "\n---\n" + body);
+
+		final FileInputProcessor.FileInputTextContentFile contentFile =
+				(FileInputProcessor.FileInputTextContentFile) new FileInputProcessor().makeContentFile(file);
+		final FrontMatter frontMatter = contentFile.readFrontMatter();
+		assertThat(frontMatter.getYaml().toString(), is("title: " + Strings.repeat("long ", 1000) + "\n"));
+		contentFile.skipFrontMatter(frontMatter);
+		assertThat(contentFile.isLoaded(), is(false));
+
+		assertThat(contentFile.getText(), is(body));
+	}
+
+	@Test
+	public void testUnendedFrontMatterIsLookedForInTheWholeText() throws IOException {
+		final File file = new File(contentRootPath, "post.md");
+		final String text = "---\ntitle: a\n" + Strings.repeat("no end of the front matter\n", 100000);
+		write(file, text);
+
+		final FileInputProcessor.FileInputTextContentFile contentFile =
+				(FileInputProcessor.FileInputTextContentFile) new FileInputProcessor().makeContentFile(file);
+		assertThat(contentFile.readFrontMatter(), is(nullValue()));
+		assertThat(contentFile.isLoaded(), is(true));
+		assertThat(contentFile.getText(), is(text));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFileChangedAfterItsFrontMatterIsReadFails() throws IOException {
+		final File file = new File(contentRootPath, "post.md");
+		write(file, "---\ntitle: a\n---\n" + Strings.repeat("old body\n", 1000));
+		file.setLastModified(1000000000000L);
+
+		final TextContentFile contentFile = (TextContentFile) new FileInputProcessor().makeContentFile(file);
+		contentFile.skipFrontMatter(contentFile.readFrontMatter());
+		write(file, "---\ntitle: a longer title\n---\n" + Strings.repeat("new body\n", 1000));
+
+		contentFile.getText();
+	}
+
+	@Before
+	public void setupContentRoot() throws IOException {
+		final File root = folder.newFolder("root");
+		write(new File(root, "z.txt"), "z");
+		write(new File(root, "b.html"), "b");
+		write(new File(root, ".hidden.txt"), "hidden");
+		final File a = new File(root, "a");
+		final File d = new File(a, "d");
+		d.mkdirs();
+		write(new File(a, "c.md"), "c");
+		write(new File(d, "e.png"), "e");
+		contentRootPath = root.getPath();
+	}
+
+	private static void write(final File file, final String text) throws IOException {
+		final FileOutputStream output = new FileOutputStream(file);
+		try {
+			output.write(text.getBytes("UTF-8"));
+		} finally {
+			output.close();
+		}
+	}
+
+	private static String describe(final ContentNode root) {
+		final DescribingVisitor visitor = new DescribingVisitor();
+		root.accept(visitor);
+		return visitor.out.toString();
+	}
+
+	private static class DescribingVisitor implements ContentVisitor {
+
+		public final StringBuilder out = new StringBuilder();
+
+		@Override
+		public void visit(final ContentDirectory contentDirectory, final List<ContentNode> parents) {
+			out.append(parentNames(parents)).append('/').append(contentDirectory.getName()).append(" (dir)\n");
+		}
+
+		@Override
+		public void visit(final BinaryContentFile contentFile, final List<ContentNode> parents) {
+			out.append(parentNames(parents)).append('/').append(contentFile.getName()).append(" (bin)\n");
+		}
+
+		@Override
+		public void visit(final TextContentFile contentFile, final List<ContentNode> parents) {
+			out.append(parentNames(parents)).append('/').append(contentFile.getName());
+			out.append(" [").append(contentFile.getText()).append("]\n");
+		}
+
+		private static String parentNames(final List<ContentNode> parents) {
+			final StringBuilder sb = new StringBuilder();
+			for (final ContentNode node : parents) {
+				sb.append('/').append(node.getName());
+			}
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package com.vdxp.ssg.processor;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.ContentNode;
+import com.vdxp.ssg.content.TestTextContentFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FileOutputProcessorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File sourceRoot;
+	private File targetRoot;
+
+	@Test
+	public void testCopiesFileBackedBinaries() throws IOException {
+		new FileOutputProcessor().writeContentRoot(readSource());
+
+		final File image = new File(targetRoot, "img/pic.png");
+		assertThat(Files.readAllBytes(image.toPath()), is(Files.readAllBytes(new File(sourceRoot, "img/pic.png").toPath())));
+		assertThat(image.lastModified(), is(new File(sourceRoot, "img/pic.png").lastModified()));
+		assertThat(Files.isSameFile(image.toPath(), new File(sourceRoot, "img/pic.png").toPath()), is(false));
+		assertThat(read(new File(targetRoot, "index.html")), is("<p>index</p>"));
+	}
+
+	@Test
+	public void testLinksFileBackedBinariesWhenAsked() throws IOException {
+		final FileOutputProcessor.Options options = new FileOutputProcessor.Options(true);
+		new FileOutputProcessor(options).writeContentRoot(readSource());
+		new FileOutputProcessor(options).writeContentRoot(readSource());
+
+		final File image = new File(targetRoot, "img/pic.png");
+		assertThat(Files.isSameFile(image.toPath(), new File(sourceRoot, "img/pic.png").toPath()), is(true));
+		/* Text is never linked, since it may have been changed on the way */
+		assertThat(Files.isSameFile(new File(targetRoot, "index.html").toPath(), new File(sourceRoot, "index.html").toPath()), is(false));
+	}
+
+	@Test
+	public void testLeavesUnchangedFilesAlone() throws IOException {
+		final FileOutputProcessor.Options options = new FileOutputProcessor.Options(false, true, false, false);
+		new FileOutputProcessor(options).writeContentRoot(readSource());
+		final File index = new File(targetRoot, "index.html");
+		index.setLastModified(1000000000000L);
+
+		new FileOutputProcessor(options).writeContentRoot(readSource());
+		assertThat(index.lastModified(), is(1000000000000L));
+
+		write(new File(sourceRoot, "index.html"), "<p>changed</p>");
+		new FileOutputProcessor(options).writeContentRoot(readSource());
+		assertThat(read(index), is("<p>changed</p>"));
+	}
+
+	@Test
+	public void testRewritesFilesThatOnlyDifferInTheirEnd() throws IOException {
+		final FileOutputProcessor.Options options = new FileOutputProcessor.Options(false, true, false, false);
+		final File index = new File(targetRoot, "index.html");
+		for (final String text : new String[] {"<p>index</p>", "<p>index</p>\n<p>more</p>", "<p>index</p>", "<p>indeX</p>", ""}) {
+			write(new File(sourceRoot, "index.html"), text);
+			new FileOutputProcessor(options).writeContentRoot(readSource());
+			assertThat(read(index), is(text));
+			assertThat(new File(targetRoot, "index.html.ssg-tmp").exists(), is(false));
+		}
+	}
+
+	@Test
+	public void testKeepsThePreviousPageWhenItsOutermostLayoutFails() throws IOException {
+		new FileOutputProcessor().writeContentRoot(readSource());
+		write(new File(sourceRoot, "index.html"), "<p>changed</p>");
+		write(new File(sourceRoot, "other.html"), "<p>other</p>");
+
+		/* The outermost layout is applied as the page is written, and fails there */
+		final ContentDirectory root = readSource();
+		final ContentNode index = root.getPath("index.html", false);
+		index.putData("layout", "broken.hbs");
+		final ContentDirectory layouts = new ContentDirectory("layout");
+		layouts.addChild(new TestTextContentFile("<main>{{> missing}}</main>", "broken", "hbs"));
+		new HandlebarsLayoutProcessor(new HandlebarsLayoutProcessor.Options(1, null, true)).process(root, layouts);
+
+		assertThat(new FileOutputProcessor().writeContentRoot(root), is(Collections.singletonList(index)));
+		assertThat(read(new File(targetRoot, "index.html")), is("<p>index</p>"));
+		assertThat(new File(targetRoot, "index.html.ssg-tmp").exists(), is(false));
+		assertThat(read(new File(targetRoot, "other.html")), is("<p>other</p>"));
+	}
+
+	@Test
+	public void testKeepsThePreviousPageWhenItsSourceChangedAfterItsFrontMatterWasRead() throws IOException {
+		new FileOutputProcessor().writeContentRoot(readSource());
+		final File indexSource = new File(sourceRoot, "index.html");
+		/* Long enough for its front matter to be read on its own */
+		write(indexSource, "---\ntitle: a\n---\n" + Strings.repeat("<p>changed</p>\n", 1000));
+		write(new File(sourceRoot, "other.html"), "<p>other</p>");
+
+		final ContentDirectory root = readSource();
+		new YamlFrontMatterProcessor().process(root);
+		write(indexSource, "---\ntitle: a longer title\n---\n" + Strings.repeat("<p>changed again</p>\n", 1000));
+
+		assertThat(new FileOutputProcessor().writeContentRoot(root), is(Collections.singletonList(root.getPath("index.html", false))));
+		assertThat(read(new File(targetRoot, "index.html")), is("<p>index</p>"));
+		assertThat(new File(targetRoot, "index.html.ssg-tmp").exists(), is(false));
+		assertThat(read(new File(targetRoot, "other.html")), is("<p>other</p>"));
+	}
+
+	@Test
+	public void testPrunesOrphans() throws IOException {
+		new FileOutputProcessor().writeContentRoot(readSource());
+		new File(targetRoot, "old/deeper").mkdirs();
+		write(new File(targetRoot, "old/deeper/page.html"), "old");
+		write(new File(targetRoot, "img/old.png"), "old");
+
+		new FileOutputProcessor(new FileOutputProcessor.Options(false, true, true, false)).writeContentRoot(readSource());
+
+		assertThat(new File(targetRoot, "old").exists(), is(false));
+		assertThat(new File(targetRoot, "img/old.png").exists(), is(false));
+		assertThat(new File(targetRoot, "img/pic.png").isFile(), is(true));
+		assertThat(new File(targetRoot, "index.html").isFile(), is(true));
+	}
+
+	@Test
+	public void testSwapsEachVersionIn() throws IOException {
+		/* An output directory from before builds were swapped in */
+		new FileOutputProcessor().writeContentRoot(readSource());
+		write(new File(targetRoot, "orphan.html"), "old");
+
+		final FileOutputProcessor.Options options = new FileOutputProcessor.Options(false, true, false, true);
+		new FileOutputProcessor(options).writeContentRoot(readSource());
+		assertThat(Files.isSymbolicLink(targetRoot.toPath()), is(true));
+		assertThat(new File(targetRoot, "orphan.html").exists(), is(false));
+		assertThat(read(new File(targetRoot, "index.html")), is("<p>index</p>"));
+		final Path firstVersion = targetRoot.toPath().toRealPath();
+
+		write(new File(sourceRoot, "index.html"), "<p>changed</p>");
+		new FileOutputProcessor(options).writeContentRoot(readSource());
+		assertThat(read(new File(targetRoot, "index.html")), is("<p>changed</p>"));
+		assertThat(new File(targetRoot, "img/pic.png").isFile(), is(true));
+		assertThat(Files.exists(firstVersion), is(false));
+		assertThat(getOutputNames(), is(Arrays.asList("target", targetRoot.toPath().toRealPath().getFileName().toString())));
+	}
+
+	@Test
+	public void testDeletesVersionsThatWereNeverSwappedIn() throws IOException {
+		new File(folder.getRoot(), "target.build-1/img").mkdirs();
+
+		new FileOutputProcessor(new FileOutputProcessor.Options(false, false, false, true)).writeContentRoot(readSource());
+
+		assertThat(new File(folder.getRoot(), "target.build-1").exists(), is(false));
+		assertThat(getOutputNames().size(), is(2));
+	}
+
+	@Test
+	public void testPrunesThroughTheLinkToTheLastVersion() throws IOException {
+		new FileOutputProcessor(new FileOutputProcessor.Options(false, false, false, true)).writeContentRoot(readSource());
+		write(new File(targetRoot, "orphan.html"), "old");
+
+		new FileOutputProcessor(new FileOutputProcessor.Options(false, true, true, false)).writeContentRoot(readSource());
+
+		assertThat(Files.isSymbolicLink(targetRoot.toPath()), is(true));
+		assertThat(new File(targetRoot, "orphan.html").exists(), is(false));
+		assertThat(new File(targetRoot, "index.html").isFile(), is(true));
+	}
+
+	@Before
+	public void setupSource() throws IOException {
+		sourceRoot = folder.newFolder("source");
+		targetRoot = new File(folder.getRoot(), "target");
+		new File(sourceRoot, "img").mkdir();
+		Files.write(new File(sourceRoot, "img/pic.png").toPath(), new byte[] {(byte) 0x89, 'P', 'N', 'G', 0, 1, 2, 3});
+		new File(sourceRoot, "img/pic.png").setLastModified(1000000000000L);
+		write(new File(sourceRoot, "index.html"), "<p>index</p>");
+	}
+
+	private static void write(final File file, final String text) throws IOException {
+		Files.write(file.toPath(), text.getBytes(Charsets.UTF_8));
+	}
+
+	private static String read(final File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), Charsets.UTF_8);
+	}
+
+	/** Returns the names of the output directory and of its versions. */
+	private List<String> getOutputNames() {
+		final List<String> names = new ArrayList<String>();
+		for (final String name : folder.getRoot().list()) {
+			if (name.startsWith("target")) {
+				names.add(name);
+			}
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	/** Reads the source tree and names its root after the target, as the Driver does when it merges its trees. */
+	private ContentDirectory readSource() throws IOException {
+		final ContentDirectory root = new FileInputProcessor().readContentRoot(sourceRoot.getPath());
+		root.setName(targetRoot.getPath());
+		return root;
+	}
+}
@@ -0,0 +1,62 @@
+package com.vdxp.ssg.processor;
+
+import com.github.jknack.handlebars.HandlebarsException;
+import com.google.common.collect.Iterables;
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.TestTextContentFile;
+import com.vdxp.ssg.content.TextContentFile;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class HandlebarsLayoutProcessorTest {
+
+	@Test
+	public void testRendersTheSameWithMoreThreads() {
+		final ContentDirectory sequential = makeSite("page.hbs");
+		final ContentDirectory concurrent = makeSite("page.hbs");
+		new HandlebarsLayoutProcessor().process(sequential, makeLayouts());
+		new HandlebarsLayoutProcessor(new HandlebarsLayoutProcessor.Options(4)).process(concurrent, makeLayouts());
+
+		for (int i = 0; i < 8; i++) {
+			assertThat(getPage(concurrent, i).getText(), is("<main><p>Page " + i + "</p></main>"));
+			assertThat(getPage(concurrent, i).getText(), is(getPage(sequential, i).getText()));
+		}
+	}
+
+	@Test
+	public void testFailsTheSameWithMoreThreads() {
+		for (final int threads : new int[] {1, 4}) {
+			try {
+				new HandlebarsLayoutProcessor(new HandlebarsLayoutProcessor.Options(threads)).process(makeSite("broken.hbs"), makeLayouts());
+				fail("Rendering with a broken layout on " + threads + " threads did not fail");
+			} catch (final RuntimeException e) {
+				assertThat(e, instanceOf(HandlebarsException.class));
+			}
+		}
+	}
+
+	private static ContentDirectory makeSite(final String layout) {
+		final ContentDirectory site = new ContentDirectory("site");
+		for (int i = 0; i < 8; i++) {
+			final TextContentFile page = new TestTextContentFile("<p>Page " + i + "</p>", "page" + i, "html");
+			page.putData("layout", layout);
+			site.addChild(page);
+		}
+		return site;
+	}
+
+	private static ContentDirectory makeLayouts() {
+		final ContentDirectory layouts = new ContentDirectory("layout");
+		layouts.addChild(new TestTextContentFile("<main>{{{content}}}</main>", "page", "hbs"));
+		layouts.addChild(new TestTextContentFile("<main>{{#if}}</main>", "broken", "hbs"));
+		return layouts;
+	}
+
+	private static TextContentFile getPage(final ContentDirectory site, final int i) {
+		return (TextContentFile) Iterables.get(site.getChildren(), i);
+	}
+}
@@ -0,0 +1,53 @@
+package com.vdxp.ssg.processor;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.TestTextContentFile;
+import com.vdxp.ssg.content.TextContentFile;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MarkdownProcessorTest {
+
+	@Test
+	public void testConvertsMarkdown() {
+		final TextContentFile post = new TestTextContentFile("*hello*", "post", "md");
+		final TextContentFile notes = new TestTextContentFile("*hello*", "notes", "md", "txt");
+		final TextContentFile plain = new TestTextContentFile("*hello*", "plain", "txt");
+
+		final ContentDirectory root = new ContentDirectory("root");
+		root.addChild(post);
+		root.addChild(notes);
+		root.addChild(plain);
+
+		new MarkdownProcessor().process(root);
+
+		assertThat(post.getName(), is("post.html"));
+		assertThat(post.getText(), is("<p><em>hello</em></p>"));
+		assertThat(notes.getName(), is("notes.html.txt"));
+		assertThat(notes.getText(), is("<p><em>hello</em></p>"));
+		assertThat(plain.getName(), is("plain.txt"));
+		assertThat(plain.getText(), is("*hello*"));
+	}
+
+	@Test
+	public void testConcurrentConversionMatchesSequentialConversion() {
+		final ContentDirectory sequentialRoot = new ContentDirectory("root");
+		final ContentDirectory concurrentRoot = new ContentDirectory("root");
+		for (int i = 0; i < 20; i++) {
+			final String text = "# Post " + i + "\n\nSome *text* with a [link](http://example.com/" + i + ").";
+			sequentialRoot.addChild(new TestTextContentFile(text, "post" + i, "md"));
+			concurrentRoot.addChild(new TestTextContentFile(text, "post" + i, "md"));
+		}
+
+		new MarkdownProcessor().process(sequentialRoot);
+		new MarkdownProcessor(new MarkdownProcessor.Options(4)).process(concurrentRoot);
+
+		for (int i = 0; i < 20; i++) {
+			final TextContentFile sequential = (TextContentFile) sequentialRoot.getPath("post" + i + ".html", false);
+			final TextContentFile concurrent = (TextContentFile) concurrentRoot.getPath("post" + i + ".html", false);
+			assertThat(concurrent.getText(), is(sequential.getText()));
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.vdxp.ssg.processor;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.TestTextContentFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class PrecompressorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String page = Strings.repeat("<p>Hello, compressed world</p>\n", 100);
+
+	@Test
+	public void testCompressesTextOutputs() throws IOException {
+		final File root = new File(folder.getRoot(), "target");
+		write(root, makeTree(page, "short"));
+
+		assertThat(decompress(new File(root, "index.html.gz")), is(page));
+		assertThat(new File(root, "index.html.gz").length() < page.length() / 10, is(true));
+		assertThat(new File(root, "notes.txt.gz").exists(), is(false));
+		/* Below the minimum size */
+		assertThat(new File(root, "small.css.gz").exists(), is(false));
+	}
+
+	@Test
+	public void testLeavesUpToDateCopiesAlone() throws IOException {
+		final File root = new File(folder.getRoot(), "target");
+		final File compressed = new File(root, "index.html.gz");
+		write(root, makeTree(page, "short"));
+		compressed.setLastModified(1000000000000L);
+
+		write(root, makeTree(page, "short"));
+		assertThat(compressed.lastModified(), is(1000000000000L));
+
+		write(root, makeTree(page + "more\n", "short"));
+		assertThat(decompress(compressed), is(page + "more\n"));
+	}
+
+	@Test
+	public void testKeepsCopiesWhenPruningAndSwapping() throws IOException {
+		final File root = new File(folder.getRoot(), "target");
+		write(root, makeTree(page, page));
+		assertThat(decompress(new File(root, "small.css.gz")), is(page));
+
+		/* A file that shrinks below the minimum size must not keep its old compressed copy */
+		write(root, makeTree(page, "short"));
+		assertThat(new File(root, "small.css.gz").exists(), is(false));
+		assertThat(decompress(new File(root, "index.html.gz")), is(page));
+
+		new FileOutputProcessor(new FileOutputProcessor.Options(false, true, false, true, new Precompressor.Options(2)))
+				.writeContentRoot(makeTree(page, page));
+		assertThat(decompress(new File(root, "index.html.gz")), is(page));
+		assertThat(decompress(new File(root, "small.css.gz")), is(page));
+	}
+
+	@Test
+	public void testSkipsOtherTypesAndSmallFiles() throws Exception {
+		final Precompressor precompressor = new Precompressor(new Precompressor.Options(1, 6, 100));
+		try {
+			assertThat(precompressor.accepts(new File("a/b.HTML")), is(true));
+			assertThat(precompressor.accepts(new File("a/b.png")), is(false));
+			assertThat(precompressor.accepts(new File("a/html")), is(false));
+
+			final File file = folder.newFile("tiny.js");
+			Files.write("x", file, StandardCharsets.UTF_8);
+			assertThat(precompressor.submit(file, file, null).get(), is(nullValue()));
+		} finally {
+			precompressor.close();
+		}
+	}
+
+	private ContentDirectory makeTree(final String indexText, final String cssText) {
+		final ContentDirectory root = new ContentDirectory(new File(folder.getRoot(), "target").getPath());
+		root.addChild(new TestTextContentFile(indexText, "index", "html"));
+		root.addChild(new TestTextContentFile(cssText, "small", "css"));
+		root.addChild(new TestTextContentFile(page, "notes", "txt"));
+		return root;
+	}
+
+	private static void write(final File root, final ContentDirectory tree) {
+		new FileOutputProcessor(new FileOutputProcessor.Options(false, true, true, false, new Precompressor.Options(2)))
+				.writeContentRoot(tree);
+		assertThat(root.isDirectory(), is(true));
+	}
+
+	private static String decompress(final File file) throws IOException {
+		final InputStream input = new GZIPInputStream(new FileInputStream(file));
+		try {
+			return new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8);
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package com.vdxp.ssg.processor;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.TestTextContentFile;
+import com.vdxp.ssg.content.TextContentFile;
+import com.vdxp.ssg.content.Utf8Text;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SplitReadMoreProcessorTest {
+
+	@Test
+	public void testPutsTheSnippetAsAString() {
+		final ContentDirectory blog = new ContentDirectory("blog");
+		final TextContentFile post = new TestTextContentFile("dummy", "post", "html");
+		post.setText(Utf8Text.encode("<p>Caf\u00e9 intro</p><!--more--><p>Rest</p>"));
+		final TextContentFile spacedPost = new TestTextContentFile("<p>Intro</p><!-- more --><p>Rest</p>", "spaced", "html");
+		final TextContentFile shortPost = new TestTextContentFile("<p>All of it</p>", "short", "html");
+		blog.addChild(post);
+		blog.addChild(spacedPost);
+		blog.addChild(shortPost);
+
+		new SplitReadMoreProcessor().process(blog);
+
+		assertThat(post.getData("snippet", String.class), is("<p>Caf\u00e9 intro</p>"));
+		assertThat(spacedPost.getData("snippet", String.class), is("<p>Intro</p>"));
+		assertThat(shortPost.getData().get("snippet"), is(nullValue()));
+	}
+}
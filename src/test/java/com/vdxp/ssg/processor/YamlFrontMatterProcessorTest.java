@@ -0,0 +1,66 @@
+package com.vdxp.ssg.processor;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import com.vdxp.ssg.content.TestTextContentFile;
+import com.vdxp.ssg.content.TextContentFile;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class YamlFrontMatterProcessorTest {
+
+	@Test
+	public void testConcurrentFrontMatterMatchesSequentialFrontMatter() {
+		final ContentDirectory sequentialRoot = new ContentDirectory("root");
+		final ContentDirectory concurrentRoot = new ContentDirectory("root");
+		for (int i = 0; i < 20; i++) {
+			final String text = i % 3 == 0 ? "Post " + i : "---\ntitle: Post " + i + "\n---\nText of post " + i;
+			sequentialRoot.addChild(new TestTextContentFile(text, "post" + i, "md"));
+			concurrentRoot.addChild(new TestTextContentFile(text, "post" + i, "md"));
+		}
+
+		new YamlFrontMatterProcessor().process(sequentialRoot);
+		new YamlFrontMatterProcessor(new YamlFrontMatterProcessor.Options(4)).process(concurrentRoot);
+
+		for (int i = 0; i < 20; i++) {
+			final TextContentFile sequential = (TextContentFile) sequentialRoot.getPath("post" + i + ".md", false);
+			final TextContentFile concurrent = (TextContentFile) concurrentRoot.getPath("post" + i + ".md", false);
+			assertThat(concurrent.getText(), is(sequential.getText()));
+			assertThat(concurrent.getData().get("title"), is(sequential.getData().get("title")));
+		}
+		assertThat(((TextContentFile) concurrentRoot.getPath("post1.md", false)).getText(), is("Text of post 1"));
+		assertThat(concurrentRoot.getPath("post1.md", false).getData().get("title"), is((Object) "Post 1"));
+	}
+
+	@Test
+	public void testFrontMatterIsParsedOnAnExecutorItIsAlreadyRunningOn() throws Exception {
+		final ContentDirectory root = new ContentDirectory("root");
+		for (int i = 0; i < 20; i++) {
+			root.addChild(new TestTextContentFile("---\ntitle: Post " + i + "\n---\nText of post " + i, "post" + i, "md"));
+		}
+
+		/* The only thread of the shared executor is the one running the processor */
+		final ExecutorService executor = Executors.newFixedThreadPool(1);
+		try {
+			executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					new YamlFrontMatterProcessor(new YamlFrontMatterProcessor.Options(4, null, executor)).process(root);
+					return null;
+				}
+			}).get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		for (int i = 0; i < 20; i++) {
+			assertThat(root.getPath("post" + i + ".md", false).getData().get("title"), is((Object) ("Post " + i)));
+		}
+	}
+}
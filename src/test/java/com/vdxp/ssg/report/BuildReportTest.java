@@ -0,0 +1,60 @@
+package com.vdxp.ssg.report;
+
+import com.vdxp.ssg.content.ContentDirectory;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BuildReportTest {
+
+	@Test
+	public void testKeepsOnlyTheSlowestPages() {
+		final BuildReport report = new BuildReport(new BuildReport.Options(2));
+		report.recordPage("markdown", "a", 30);
+		report.recordPage("markdown", "b", 10);
+		report.recordPage("layouts", "c", 50);
+		report.recordPage("layouts", "d", 20);
+
+		final List<PageRecord> pages = report.getSlowestPages();
+		assertThat(pages.size(), is(2));
+		assertThat(pages.get(0).page, is("c"));
+		assertThat(pages.get(1).page, is("a"));
+	}
+
+	@Test
+	public void testNamesPagesByTheirPath() {
+		final ContentDirectory root = new ContentDirectory("target");
+		final ContentDirectory blog = new ContentDirectory("blog");
+		root.addChild(blog);
+
+		final BuildReport report = new BuildReport();
+		report.recordPage("layouts", blog, 1);
+
+		assertThat(report.getSlowestPages().get(0).page, is("target/blog"));
+	}
+
+	@Test
+	public void testWritesStagesAndPagesAsJson() throws IOException {
+		final BuildReport report = new BuildReport();
+		final StageTimer timer = report.startStage("read \"site\"");
+		IoStatistics.addBytesRead(100);
+		final StageRecord stage = timer.stop(7);
+		report.recordPage("markdown", "site/index.md", 1234);
+
+		assertThat(stage.nodes, is(7L));
+		assertThat(stage.bytesRead >= 100, is(true));
+
+		final StringWriter writer = new StringWriter();
+		report.writeJson(writer);
+		final String json = writer.toString();
+		assertThat(json, containsString("\"name\": \"read \\\"site\\\"\""));
+		assertThat(json, containsString("\"nodes\": 7"));
+		assertThat(json, containsString("{\"stage\": \"markdown\", \"page\": \"site/index.md\", \"timeNanos\": 1234}"));
+	}
+}
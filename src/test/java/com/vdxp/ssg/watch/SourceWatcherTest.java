@@ -0,0 +1,121 @@
+package com.vdxp.ssg.watch;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class SourceWatcherTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final BlockingQueue<Set<Path>> batches = new LinkedBlockingQueue<Set<Path>>();
+	private File root;
+	private Thread watcherThread;
+
+	@Test
+	public void testReportsChangesInOneBatch() throws Exception {
+		write(new File(root, "a.md"), "a");
+		write(new File(root, "b.md"), "b");
+
+		final Set<Path> changedPaths = takeBatchWith(new File(root, "b.md"));
+		assertThat(changedPaths, hasItem(new File(root, "a.md").toPath()));
+	}
+
+	@Test
+	public void testWatchesNewDirectories() throws Exception {
+		final File directory = new File(root, "new");
+		directory.mkdir();
+		takeBatchWith(directory);
+
+		write(new File(directory, "c.md"), "c");
+		takeBatchWith(new File(directory, "c.md"));
+	}
+
+	@Test
+	public void testReportsSteadyChangesAfterTheMaximumDelay() throws Exception {
+		/* Writes come faster than the debounce interval, so the roots are never quiet */
+		final File file = new File(root, "generated.md");
+		final long start = System.nanoTime();
+		Set<Path> changedPaths = null;
+		for (int i = 0; changedPaths == null && i < 100; i++) {
+			write(file, Integer.toString(i));
+			changedPaths = batches.poll(50, TimeUnit.MILLISECONDS);
+		}
+
+		assertThat(changedPaths, is(notNullValue()));
+		assertThat(changedPaths, hasItem(file.toPath()));
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 3000, is(true));
+	}
+
+	@Before
+	public void startWatching() throws Exception {
+		root = folder.newFolder("site");
+		watcherThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					new SourceWatcher(new SourceWatcher.Listener() {
+						@Override
+						public void sourcesChanged(final Set<Path> changedPaths) {
+							batches.add(changedPaths);
+						}
+					}, ImmutableList.of(root.getPath()), 200, 1000).watch();
+				} catch (final IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		watcherThread.start();
+
+		/* The watcher registers its directories on its own thread, then waits for the first change */
+		for (int i = 0; i < 1000 && watcherThread.getState() != Thread.State.WAITING; i++) {
+			Thread.sleep(10);
+		}
+		final File probe = new File(root, "probe");
+		write(probe, "probe");
+		takeBatchWith(probe);
+		probe.delete();
+		takeBatchWith(probe);
+		batches.clear();
+	}
+
+	@After
+	public void stopWatching() throws InterruptedException {
+		watcherThread.interrupt();
+		watcherThread.join(10000);
+	}
+
+	/** Waits for the batch that reports {@code file}, skipping any earlier ones. */
+	private Set<Path> takeBatchWith(final File file) throws InterruptedException {
+		while (true) {
+			final Set<Path> changedPaths = batches.poll(10, TimeUnit.SECONDS);
+			assertThat(changedPaths, is(notNullValue()));
+			if (changedPaths.contains(file.toPath())) {
+				return changedPaths;
+			}
+		}
+	}
+
+	private static void write(final File file, final String text) throws IOException {
+		Files.write(text, file, Charsets.UTF_8);
+	}
+}